@@ -0,0 +1,3 @@
+#!/bin/bash
+# Lets the replica service stream WAL from this server (runs on first initialisation only)
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
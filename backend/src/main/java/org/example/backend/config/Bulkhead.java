@@ -0,0 +1,15 @@
+package org.example.backend.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Assigns a controller, or one of its handler methods, to a {@link Workload}.
+ * A method annotation takes precedence over the one on its class; requests
+ * without either run outside of any bulkhead on the shared default pool.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Bulkhead {
+    Workload value();
+}
@@ -0,0 +1,141 @@
+package org.example.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits requests of {@link Bulkhead}-annotated handlers into their
+ * workload's compartment: at most {@code max-concurrent} run at once, up to
+ * {@code max-queued} more wait for at most {@code queue-timeout-ms}, and the
+ * rest are turned away with 503 straight away. Admitted requests take their
+ * connections from the workload's pool.
+ *
+ * Compartments bound requests running on the servlet container's threads
+ * rather than handing them to per-workload executors, so the security
+ * context and routing state of the request thread stay in place. A request
+ * that goes async (e.g. a live dashboard stream) leaves its compartment once
+ * the handler returns, rather than holding a slot for the whole stream, and
+ * the dispatch that completes it (e.g. when the stream times out) is let
+ * through without taking one again.
+ */
+@Component
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ADMITTED = BulkheadInterceptor.class.getName() + ".admitted";
+
+    private final Map<Workload, Compartment> compartments = new EnumMap<>(Workload.class);
+
+    private static final class Compartment {
+        final Semaphore permits;
+        final AtomicInteger queued = new AtomicInteger();
+        final int maxQueued;
+        final long queueTimeoutMs;
+        final Counter rejected;
+
+        Compartment(int maxConcurrent, int maxQueued, long queueTimeoutMs, Counter rejected) {
+            this.permits = new Semaphore(maxConcurrent);
+            this.maxQueued = maxQueued;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.rejected = rejected;
+        }
+    }
+
+    public BulkheadInterceptor(Environment environment, MeterRegistry meterRegistry) {
+        for (Workload workload : Workload.values()) {
+            int maxConcurrent = workload.maxConcurrent(environment);
+            Compartment compartment = new Compartment(maxConcurrent, workload.maxQueued(environment),
+                    workload.queueTimeoutMs(environment),
+                    meterRegistry.counter("form.bulkhead.rejected", "workload", workload.key()));
+            Gauge.builder("form.bulkhead.active", compartment, c -> maxConcurrent - c.permits.availablePermits())
+                    .tag("workload", workload.key()).register(meterRegistry);
+            Gauge.builder("form.bulkhead.queued", compartment, c -> c.queued.get())
+                    .tag("workload", workload.key()).register(meterRegistry);
+            compartments.put(workload, compartment);
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        // The response of an async dispatch may already be committed, so it can be neither queued nor turned away
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Workload workload = workloadOf(handler);
+        if (workload == null) {
+            return true;
+        }
+        Compartment compartment = compartments.get(workload);
+        if (!admit(compartment)) {
+            compartment.rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.getWriter().write("Too many " + workload.key() + " requests in progress, please retry");
+            return false;
+        }
+        request.setAttribute(ADMITTED, workload);
+        DataSourceRouting.enter(workload);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) instanceof Workload workload) {
+            request.removeAttribute(ADMITTED);
+            DataSourceRouting.leave();
+            compartments.get(workload).permits.release();
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        afterCompletion(request, response, handler, null);
+    }
+
+    private static boolean admit(Compartment compartment) {
+        if (compartment.permits.tryAcquire()) {
+            return true;
+        }
+        if (compartment.queued.incrementAndGet() > compartment.maxQueued) {
+            compartment.queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return compartment.permits.tryAcquire(compartment.queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            compartment.queued.decrementAndGet();
+        }
+    }
+
+    private static Workload workloadOf(Object handler) {
+        if (!(handler instanceof HandlerMethod method)) {
+            return null;
+        }
+        Bulkhead bulkhead = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), Bulkhead.class);
+        if (bulkhead == null) {
+            bulkhead = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), Bulkhead.class);
+        }
+        return bulkhead != null ? bulkhead.value() : null;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured DataSource. The default pool is built from the
+ * usual {@code spring.datasource.*} properties; next to it every
+ * {@link Workload} gets a pool of its own on the same database, whose
+ * connections carry the workload's {@code statement_timeout}. When read
+ * replicas are configured (see {@link ReadReplicaConfig}) they sit in front
+ * of the workload pools.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public WorkloadRoutingDataSource workloadDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                                       DataSourceProperties properties,
+                                                       Environment environment,
+                                                       MeterRegistry meterRegistry) {
+        Map<Workload, HikariDataSource> pools = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName(workload.key());
+            pool.setJdbcUrl(properties.determineUrl());
+            pool.setUsername(properties.determineUsername());
+            pool.setPassword(properties.determinePassword());
+            pool.setMaximumPoolSize(workload.poolSize(environment));
+            pool.setConnectionTimeout(workload.connectionTimeoutMs(environment));
+            pool.setConnectionInitSql("SET statement_timeout = " + workload.statementTimeoutMs(environment));
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.put(workload, pool);
+        }
+        return new WorkloadRoutingDataSource(primary, pools, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(WorkloadRoutingDataSource workloadDataSource,
+                                 ObjectProvider<ReplicaRoutingDataSource> replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        DataSource target = replicaDataSource.getIfAvailable();
+        dataSource.setTargetDataSource(target != null ? target : workloadDataSource);
+        // Known up front, so no connection is opened just to find them out
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+}
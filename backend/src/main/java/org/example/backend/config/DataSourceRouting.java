@@ -0,0 +1,73 @@
+package org.example.backend.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread routing state. Read-only transactions go to a replica unless
+ * the current thread is pinned to the primary, e.g. for the rest of a request
+ * after its user wrote something (read-your-writes), or for loads whose
+ * result is cached and must never be stale. Primary connections come from
+ * the pool of the thread's current {@link Workload}.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+    private static final ThreadLocal<Workload> WORKLOAD = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+
+    public static void pinToPrimary() {
+        PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void release() {
+        PRIMARY.remove();
+    }
+
+    /** Runs {@code action} with every connection it opens taken from the primary. */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            } else {
+                PRIMARY.set(previous);
+            }
+        }
+    }
+
+    public static Workload currentWorkload() {
+        return WORKLOAD.get();
+    }
+
+    public static void enter(Workload workload) {
+        WORKLOAD.set(workload);
+    }
+
+    public static void leave() {
+        WORKLOAD.remove();
+    }
+
+    /** Runs {@code action} with the connections it opens taken from the pool of {@code workload}. */
+    public static <T> T in(Workload workload, Supplier<T> action) {
+        Workload previous = WORKLOAD.get();
+        WORKLOAD.set(workload);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                WORKLOAD.remove();
+            } else {
+                WORKLOAD.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, enabled by {@code form.datasource.replica-urls}: read-only
+ * transactions are routed to them by {@link ReplicaRoutingDataSource}, all
+ * other work goes to the primary's workload pools.
+ */
+@Configuration
+@ConditionalOnExpression("!'${form.datasource.replica-urls:}'.trim().isEmpty()")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(
+            @Qualifier("workloadDataSource") DataSource primary,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${form.datasource.replica-urls}") String replicaUrls,
+            @Value("${form.datasource.replica-username:}") String username,
+            @Value("${form.datasource.replica-password:}") String password,
+            @Value("${form.datasource.replica-pool-size:10}") int poolSize,
+            @Value("${form.datasource.replica-statement-timeout-ms:60000}") long statementTimeoutMs,
+            @Value("${form.datasource.replica-max-lag-ms:1000}") long maxLagMs) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replica.setConnectionInitSql("SET statement_timeout = " + statementTimeoutMs);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxLagMs, meterRegistry);
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.backend.config;
+
+import org.example.backend.model.CustomUserDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a user's reads on the primary for a while after they changed
+ * something, so that a submission or form edit is visible on their next page
+ * even when the replicas have not replayed it yet. Requests that write are
+ * pinned to the primary as a whole.
+ */
+@Component
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final long windowMs;
+    private final Map<Long, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesInterceptor(@Value("${form.datasource.read-your-writes-ms:5000}") long windowMs,
+                                     @Value("${form.datasource.replica-max-lag-ms:1000}") long maxLagMs,
+                                     @Value("${form.datasource.replica-lag-check-ms:1000}") long lagCheckMs) {
+        // A replica that passed its last lag check may have fallen behind by one more interval since
+        this.windowMs = Math.max(windowMs, maxLagMs + lagCheckMs);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Long userId = currentUserId();
+        if (!SAFE_METHODS.contains(request.getMethod()) || (userId != null && wroteRecently(userId))) {
+            DataSourceRouting.pinToPrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        DataSourceRouting.release();
+        Long userId = currentUserId();
+        if (userId != null && !SAFE_METHODS.contains(request.getMethod())) {
+            lastWrites.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    // Async requests continue on other threads; the pin belongs to this one
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        DataSourceRouting.release();
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void forgetOldWrites() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        lastWrites.values().removeIf(time -> time < cutoff);
+    }
+
+    private boolean wroteRecently(Long userId) {
+        Long lastWrite = lastWrites.get(userId);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < windowMs;
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetail userDetail) {
+            return userDetail.getUser().getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends connections of read-only transactions to a read replica, round
+ * robin, and everything else to the primary. A replica is only used while
+ * its last measured replay lag is within {@code maxLagMs}; when none is, reads
+ * fall back to the primary. Must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so the routing decision is made once the transaction's read-only flag is set.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+
+    // Streaming standbys that replayed all they received are not behind at all
+    private static final String LAG_SQL =
+            "SELECT pg_is_in_recovery(), " +
+            "CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+
+    private final List<HikariDataSource> replicas;
+    private final List<JdbcTemplate> lagQueries;
+    private final long maxLagMs;
+
+    // Last measured lag per replica; Long.MAX_VALUE while unknown or unreachable
+    private final AtomicLongArray lags;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+    private final Counter fallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, long maxLagMs,
+                                    MeterRegistry meterRegistry) {
+        this.replicas = replicas;
+        this.lagQueries = replicas.stream().map(JdbcTemplate::new).toList();
+        this.maxLagMs = maxLagMs;
+        this.lags = new AtomicLongArray(replicas.size());
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(replicaKey(i), replicas.get(i));
+            lags.set(i, Long.MAX_VALUE);
+            int index = i;
+            Gauge.builder("form.datasource.replica.lag", lags, l -> l.get(index) == Long.MAX_VALUE ? Double.NaN : l.get(index))
+                    .tag("replica", replicas.get(i).getPoolName())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.primaryConnections = meterRegistry.counter("form.datasource.connections", "target", PRIMARY);
+        this.replicaConnections = meterRegistry.counter("form.datasource.connections", "target", "replica");
+        this.fallbacks = meterRegistry.counter("form.datasource.replica.fallbacks");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkLag();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || DataSourceRouting.isPinnedToPrimary()) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            int replica = (start + i) % count;
+            if (lags.get(replica) <= maxLagMs) {
+                replicaConnections.increment();
+                return replicaKey(replica);
+            }
+        }
+        fallbacks.increment();
+        primaryConnections.increment();
+        return PRIMARY;
+    }
+
+    @Scheduled(fixedDelayString = "${form.datasource.replica-lag-check-ms:1000}")
+    public void checkLag() {
+        for (int i = 0; i < replicas.size(); i++) {
+            long lag;
+            try {
+                lag = lagQueries.get(i).queryForObject(LAG_SQL, (rs, rowNum) -> {
+                    // A server that is not a standby never receives the primary's writes
+                    if (!rs.getBoolean(1)) {
+                        return Long.MAX_VALUE;
+                    }
+                    double millis = rs.getDouble(2);
+                    return rs.wasNull() ? Long.MAX_VALUE : Math.max(0, (long) millis);
+                });
+            } catch (RuntimeException e) {
+                lag = Long.MAX_VALUE;
+            }
+            long previous = lags.getAndSet(i, lag);
+            if ((previous <= maxLagMs) != (lag <= maxLagMs)) {
+                if (lag <= maxLagMs) {
+                    log.info("Read replica {} is in use again", replicas.get(i).getPoolName());
+                } else {
+                    log.warn("Read replica {} is behind or unreachable, reading from primary", replicas.get(i).getPoolName());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    private static String replicaKey(int index) {
+        return "replica-" + index;
+    }
+}
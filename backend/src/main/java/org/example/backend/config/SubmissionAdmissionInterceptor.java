@@ -0,0 +1,133 @@
+package org.example.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.CustomUserDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Rate limits response submissions per user, per form and overall with
+ * {@link TokenBucketTable}s, before the request reaches its bulkhead or the
+ * database. A request takes a token from each of its buckets; when one of
+ * them is empty the tokens already taken are given back and the request is
+ * answered with 429 and a {@code Retry-After}.
+ *
+ * The global limit is split over a few padded stripes picked by thread, so
+ * concurrent submissions do not all CAS the same word.
+ */
+@Component
+public class SubmissionAdmissionInterceptor implements HandlerInterceptor {
+
+    private final boolean enabled;
+    private final TokenBucketTable userBuckets;
+    private final TokenBucketTable formBuckets;
+    private final TokenBucketTable globalBuckets;
+
+    private final Counter admitted;
+    private final Counter rejectedByUser;
+    private final Counter rejectedByForm;
+    private final Counter rejectedGlobally;
+
+    public SubmissionAdmissionInterceptor(MeterRegistry meterRegistry,
+                                          @Value("${form.submit.admission.enabled:true}") boolean enabled,
+                                          @Value("${form.submit.admission.slots:65536}") int slots,
+                                          @Value("${form.submit.admission.user.rate-per-second:2}") long userRate,
+                                          @Value("${form.submit.admission.user.burst:20}") long userBurst,
+                                          @Value("${form.submit.admission.form.rate-per-second:200}") long formRate,
+                                          @Value("${form.submit.admission.form.burst:1000}") long formBurst,
+                                          @Value("${form.submit.admission.global.rate-per-second:2000}") long globalRate,
+                                          @Value("${form.submit.admission.global.burst:5000}") long globalBurst,
+                                          @Value("${form.submit.admission.global.stripes:16}") int stripes) {
+        this.enabled = enabled;
+        this.userBuckets = new TokenBucketTable(slots, false, userRate, userBurst);
+        this.formBuckets = new TokenBucketTable(slots, false, formRate, formBurst);
+        this.globalBuckets = new TokenBucketTable(stripes, true, globalRate / stripes, globalBurst / stripes);
+
+        this.admitted = meterRegistry.counter("form.submit.admission.admitted");
+        this.rejectedByUser = meterRegistry.counter("form.submit.admission.rejected", "limit", "user");
+        this.rejectedByForm = meterRegistry.counter("form.submit.admission.rejected", "limit", "form");
+        this.rejectedGlobally = meterRegistry.counter("form.submit.admission.rejected", "limit", "global");
+        Gauge.builder("form.submit.admission.active.buckets", userBuckets, TokenBucketTable::activeBuckets)
+                .tag("limit", "user").register(meterRegistry);
+        Gauge.builder("form.submit.admission.active.buckets", formBuckets, TokenBucketTable::activeBuckets)
+                .tag("limit", "form").register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!enabled) {
+            return true;
+        }
+        Long formId = formId(request);
+        Long userId = currentUserId();
+        long stripe = Thread.currentThread().getId();
+
+        long wait = userId != null ? userBuckets.tryAcquire(userId) : 0;
+        if (wait > 0) {
+            rejectedByUser.increment();
+            return reject(response, wait);
+        }
+        wait = formId != null ? formBuckets.tryAcquire(formId) : 0;
+        if (wait > 0) {
+            if (userId != null) {
+                userBuckets.release(userId);
+            }
+            rejectedByForm.increment();
+            return reject(response, wait);
+        }
+        wait = globalBuckets.tryAcquire(stripe);
+        if (wait > 0) {
+            if (userId != null) {
+                userBuckets.release(userId);
+            }
+            if (formId != null) {
+                formBuckets.release(formId);
+            }
+            rejectedGlobally.increment();
+            return reject(response, wait);
+        }
+        admitted.increment();
+        return true;
+    }
+
+    private static boolean reject(HttpServletResponse response, long waitMillis) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitMillis + 999) / 1000)));
+        response.getWriter().write("Too many submissions, please retry later");
+        return false;
+    }
+
+    private static Long formId(HttpServletRequest request) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map<?, ?> map && map.get("formId") instanceof String formId) {
+            try {
+                return Long.parseLong(formId);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetail userDetail) {
+            return userDetail.getUser().getId();
+        }
+        return null;
+    }
+}
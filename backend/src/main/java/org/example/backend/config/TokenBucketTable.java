@@ -0,0 +1,117 @@
+package org.example.backend.config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of token buckets updated with a single CAS each, so taking
+ * a token never locks and never allocates. Keys are hashed onto the slots, so
+ * memory does not grow with the number of users or forms; keys that share a
+ * slot share its bucket, which can only make their limit stricter.
+ *
+ * Each slot packs the time of its last update (milliseconds since the table
+ * was created, upper 40 bits) and how far the bucket is below full (in
+ * thousandths of a token, lower 24 bits). A zeroed slot is a full bucket.
+ */
+public class TokenBucketTable {
+
+    private static final int DEFICIT_BITS = 24;
+    private static final long DEFICIT_MASK = (1L << DEFICIT_BITS) - 1;
+    private static final long TOKEN = 1000;
+
+    // Slots are spaced a cache line apart when there are few of them and they are all hot
+    private final int spacing;
+    private final int mask;
+    private final AtomicLongArray slots;
+    private final long ratePerSecond;
+    private final long capacity;
+    private final long epochNanos = System.nanoTime();
+
+    /**
+     * @param slots         number of buckets, rounded up to a power of two
+     * @param padded        whether to keep buckets on separate cache lines
+     * @param ratePerSecond tokens added per second
+     * @param burst         bucket size in tokens, at most 16,000
+     */
+    public TokenBucketTable(int slots, boolean padded, long ratePerSecond, long burst) {
+        if (burst * TOKEN > DEFICIT_MASK) {
+            throw new IllegalArgumentException("Burst too large: " + burst);
+        }
+        int size = slots <= 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.spacing = padded ? 8 : 1;
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size * spacing);
+        this.ratePerSecond = Math.max(1, ratePerSecond);
+        this.capacity = Math.max(1, burst) * TOKEN;
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}. Returns 0 if one was
+     * available, otherwise the milliseconds until one will be.
+     */
+    public long tryAcquire(long key) {
+        int index = index(key);
+        long now = nowMillis();
+        while (true) {
+            long state = slots.get(index);
+            long deficit = refilled(state, now) + TOKEN;
+            if (deficit > capacity) {
+                // Thousandths of a token per millisecond equal tokens per second
+                return (deficit - capacity + ratePerSecond - 1) / ratePerSecond;
+            }
+            long updated = (Math.max(now, state >>> DEFICIT_BITS) << DEFICIT_BITS) | deficit;
+            if (slots.compareAndSet(index, state, updated)) {
+                return 0;
+            }
+        }
+    }
+
+    /** Gives back a token taken by {@link #tryAcquire}, e.g. when another limit rejected the request. */
+    public void release(long key) {
+        int index = index(key);
+        while (true) {
+            long state = slots.get(index);
+            long deficit = state & DEFICIT_MASK;
+            if (deficit == 0) {
+                return;
+            }
+            long updated = (state & ~DEFICIT_MASK) | Math.max(0, deficit - TOKEN);
+            if (slots.compareAndSet(index, state, updated)) {
+                return;
+            }
+        }
+    }
+
+    /** Number of buckets that are currently not full; a snapshot for metrics. */
+    public int activeBuckets() {
+        long now = nowMillis();
+        int active = 0;
+        for (int i = 0; i < slots.length(); i += spacing) {
+            if (refilled(slots.get(i), now) > 0) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private long refilled(long state, long now) {
+        long elapsed = Math.max(0, now - (state >>> DEFICIT_BITS));
+        long deficit = state & DEFICIT_MASK;
+        // Anything idle for longer than a full refill is simply full
+        return elapsed >= capacity ? 0 : Math.max(0, deficit - elapsed * ratePerSecond);
+    }
+
+    private int index(long key) {
+        // Murmur3 finalizer, so sequential ids spread over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return ((int) h & mask) * spacing;
+    }
+
+    private long nowMillis() {
+        return (System.nanoTime() - epochNanos) / 1_000_000;
+    }
+}
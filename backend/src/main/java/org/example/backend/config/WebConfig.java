@@ -0,0 +1,28 @@
+package org.example.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ReadYourWritesInterceptor readYourWritesInterceptor;
+    private final BulkheadInterceptor bulkheadInterceptor;
+    private final SubmissionAdmissionInterceptor submissionAdmissionInterceptor;
+
+    public WebConfig(ReadYourWritesInterceptor readYourWritesInterceptor, BulkheadInterceptor bulkheadInterceptor,
+                     SubmissionAdmissionInterceptor submissionAdmissionInterceptor) {
+        this.readYourWritesInterceptor = readYourWritesInterceptor;
+        this.bulkheadInterceptor = bulkheadInterceptor;
+        this.submissionAdmissionInterceptor = submissionAdmissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Rate limits first, so rejected submissions never occupy a bulkhead slot
+        registry.addInterceptor(submissionAdmissionInterceptor).addPathPatterns("/api/form/*/submit");
+        registry.addInterceptor(bulkheadInterceptor).addPathPatterns("/api/**");
+        registry.addInterceptor(readYourWritesInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.backend.config;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Request workloads isolated from each other by {@link BulkheadInterceptor}
+ * and {@link WorkloadRoutingDataSource}: each has its own connection pool,
+ * statement timeout and limit on concurrent requests, so a burst of reports
+ * cannot take the connections and threads that submissions need. Every
+ * setting can be overridden with {@code form.bulkhead.<workload>.<setting>}.
+ */
+public enum Workload {
+    /** Response submissions: short statements with a latency target. */
+    INGESTION(10, 2000, 5000, 64, 256, 1000),
+    /** Form definitions, listings and sharing. */
+    DEFINITION(5, 5000, 10000, 32, 64, 2000),
+    /** Results, reports and exports: few, long-running statements. */
+    ANALYTICS(5, 10000, 60000, 8, 16, 5000);
+
+    private final long poolSize;
+    private final long connectionTimeoutMs;
+    private final long statementTimeoutMs;
+    private final long maxConcurrent;
+    private final long maxQueued;
+    private final long queueTimeoutMs;
+
+    Workload(long poolSize, long connectionTimeoutMs, long statementTimeoutMs,
+             long maxConcurrent, long maxQueued, long queueTimeoutMs) {
+        this.poolSize = poolSize;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.statementTimeoutMs = statementTimeoutMs;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    public int poolSize(Environment environment) {
+        return (int) setting(environment, "pool-size", poolSize);
+    }
+
+    public long connectionTimeoutMs(Environment environment) {
+        return setting(environment, "connection-timeout-ms", connectionTimeoutMs);
+    }
+
+    public long statementTimeoutMs(Environment environment) {
+        return setting(environment, "statement-timeout-ms", statementTimeoutMs);
+    }
+
+    public int maxConcurrent(Environment environment) {
+        return (int) setting(environment, "max-concurrent", maxConcurrent);
+    }
+
+    public int maxQueued(Environment environment) {
+        return (int) setting(environment, "max-queued", maxQueued);
+    }
+
+    public long queueTimeoutMs(Environment environment) {
+        return setting(environment, "queue-timeout-ms", queueTimeoutMs);
+    }
+
+    private long setting(Environment environment, String name, long defaultValue) {
+        return environment.getProperty("form.bulkhead." + key() + "." + name, Long.class, defaultValue);
+    }
+}
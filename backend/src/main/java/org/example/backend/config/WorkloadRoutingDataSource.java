@@ -0,0 +1,56 @@
+package org.example.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out primary connections from the pool of the current thread's
+ * {@link Workload} (see {@link DataSourceRouting#currentWorkload()}), or from
+ * the default pool for work outside of any workload, such as scheduled jobs
+ * and schema migrations.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private final Map<Workload, HikariDataSource> pools;
+    private final Map<Workload, Counter> connections = new EnumMap<>(Workload.class);
+    private final Counter defaultConnections;
+
+    public WorkloadRoutingDataSource(DataSource defaultPool, Map<Workload, HikariDataSource> pools,
+                                     MeterRegistry meterRegistry) {
+        this.pools = pools;
+        Map<Object, Object> targets = new HashMap<>(pools);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(defaultPool);
+
+        for (Workload workload : pools.keySet()) {
+            connections.put(workload, meterRegistry.counter("form.datasource.workload.connections",
+                    "workload", workload.key()));
+        }
+        this.defaultConnections = meterRegistry.counter("form.datasource.workload.connections", "workload", "default");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Workload workload = DataSourceRouting.currentWorkload();
+        Counter counter = workload != null ? connections.get(workload) : null;
+        if (counter == null) {
+            defaultConnections.increment();
+            return null;
+        }
+        counter.increment();
+        return workload;
+    }
+
+    @Override
+    public void destroy() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.backend.controller;
 
+import org.example.backend.dto.PagedResponse;
+import org.example.backend.dto.UserSummary;
 import org.example.backend.model.CustomUserDetail;
 import org.example.backend.model.User;
 import org.example.backend.service.CustomUserDetailsService;
@@ -38,4 +40,15 @@ public class ApiController {
         List<Map<String, Object>> userDetailsList = userService.getAllUsersId();
         return ResponseEntity.ok(userDetailsList);
     }
+
+    @GetMapping("/users/search")
+    public ResponseEntity<PagedResponse<UserSummary>> searchUsers(@RequestParam(defaultValue = "") String q,
+                                                                  @RequestParam(defaultValue = "0") int page,
+                                                                  @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(userService.searchUsers(q, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
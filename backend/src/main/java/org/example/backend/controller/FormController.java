@@ -1,34 +1,79 @@
 package org.example.backend.controller;
 
+import org.example.backend.config.Bulkhead;
+import org.example.backend.config.Workload;
 import org.example.backend.model.CustomUserDetail;
 import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.FormPayload;
+import org.example.backend.model.SubmissionValidator;
 import org.example.backend.model.User;
+import org.example.backend.service.ArchivedResponseStore;
+import org.example.backend.service.ArrowExportService;
+import org.example.backend.service.DraftService;
 import org.example.backend.service.FormDataService;
+import org.example.backend.service.FormListingService;
+import org.example.backend.service.FormPayloadService;
+import org.example.backend.service.LiveDashboardService;
 import org.example.backend.service.FormService;
 import org.example.backend.service.QueryService;
+import org.example.backend.service.ResponseCounters;
+import org.example.backend.service.ResponseSchemaMigrator;
+import org.example.backend.service.SubmissionIdempotency;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.example.backend.dto.DraftRequest;
+import org.example.backend.dto.FormChangeSet;
+import org.example.backend.dto.FormSummary;
+import org.example.backend.dto.OptionCounts;
+import org.example.backend.dto.PagedResponse;
 import org.example.backend.dto.ReportRequest;
+import org.example.backend.dto.SubmissionDraft;
+import org.example.backend.dto.SubmissionResult;
+import org.example.backend.dto.UserSummary;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
+@Bulkhead(Workload.DEFINITION)
 public class FormController {
 
+    private static final int ARCHIVED_RETRY_AFTER_SECONDS = 30;
+
     private final FormService formService;
     private final FormDataService  formDataService;
     private final QueryService queryService;
+    private final FormPayloadService formPayloadService;
+    private final FormListingService formListingService;
+    private final ArrowExportService arrowExportService;
+    private final DraftService draftService;
+    private final LiveDashboardService liveDashboardService;
 
     @Autowired
-    public FormController(FormService formService, FormDataService formDataService , QueryService queryService) {
+    public FormController(FormService formService, FormDataService formDataService , QueryService queryService,
+                          FormPayloadService formPayloadService, FormListingService formListingService,
+                          ArrowExportService arrowExportService, DraftService draftService,
+                          LiveDashboardService liveDashboardService) {
         this.formService = formService;
         this.formDataService = formDataService;
         this.queryService = queryService ;
+        this.formPayloadService = formPayloadService;
+        this.formListingService = formListingService;
+        this.arrowExportService = arrowExportService;
+        this.draftService = draftService;
+        this.liveDashboardService = liveDashboardService;
     }
 
     @PostMapping("/form")
@@ -53,15 +98,15 @@ public class FormController {
                                            @AuthenticationPrincipal CustomUserDetail userDetails) {
         User user = userDetails.getUser();
 
-        Form savedForm = formService.updateFormWithOwnershipCheck(formId, updatedForm, user);
-        if (savedForm == null) {
+        FormChangeSet changes = formService.updateFormWithOwnershipCheck(formId, updatedForm, user);
+        if (changes == null) {
             return ResponseEntity.notFound().build();
         }
 
-        // Update the form table with new structure (preserving existing data)
-        formDataService.updateFormTable(savedForm);
+        // Add columns for new questions only (existing data is preserved)
+        formDataService.applySchemaChanges(formId, changes);
 
-        return ResponseEntity.ok(savedForm);
+        return ResponseEntity.ok(changes.getForm());
     }
 
     @GetMapping("/forms")
@@ -85,6 +130,57 @@ public class FormController {
         return ResponseEntity.ok(activeForms);
     }
 
+    @GetMapping("/forms/summaries")
+    public ResponseEntity<PagedResponse<FormSummary>> getFormSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        return listSummaries(FormListingService.Filter.ALL, page, size, sort, direction, userDetails);
+    }
+
+    @GetMapping("/forms/templates/summaries")
+    public ResponseEntity<PagedResponse<FormSummary>> getTemplateFormSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        return listSummaries(FormListingService.Filter.TEMPLATES, page, size, sort, direction, userDetails);
+    }
+
+    @GetMapping("/forms/active/summaries")
+    public ResponseEntity<PagedResponse<FormSummary>> getActiveFormSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        return listSummaries(FormListingService.Filter.ACTIVE, page, size, sort, direction, userDetails);
+    }
+
+    @GetMapping("/forms/sharedWithMe/summaries")
+    public ResponseEntity<PagedResponse<FormSummary>> getSharedFormSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        return listSummaries(FormListingService.Filter.SHARED, page, size, sort, direction, userDetails);
+    }
+
+    private ResponseEntity<PagedResponse<FormSummary>> listSummaries(FormListingService.Filter filter,
+                                                                     int page, int size, String sort, String direction,
+                                                                     CustomUserDetail userDetails) {
+        User user = userDetails.getUser();
+        try {
+            return ResponseEntity.ok(formListingService.listForms(user, filter, page, size, sort, direction));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/form/{formId}/template")
     public ResponseEntity<Form> setFormAsTemplate(@PathVariable Long formId,
                                                   @AuthenticationPrincipal CustomUserDetail userDetails) {
@@ -97,23 +193,50 @@ public class FormController {
     }
 
     @GetMapping("/form/{formId}")
-    public ResponseEntity<Form> getFormById(@PathVariable Long formId,
-                                            @AuthenticationPrincipal CustomUserDetail userDetails) {
-        User user = userDetails.getUser();
-        Form form = formService.getFormById(formId);
+    public ResponseEntity<byte[]> getFormById(@PathVariable Long formId,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                              @AuthenticationPrincipal CustomUserDetail userDetails) {
+        FormDefinition form = formService.getFormDefinition(formId);
 
         if (form == null) {
             return ResponseEntity.notFound().build();
         }
+        if (!formService.canUserFillForm(form, userDetails.getUser())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        // Served from the pre-rendered payload of the cached version
+        FormPayload payload = formPayloadService.getPayload(form);
+        boolean gzipped = payload.hasGzipped() && FormPayloadService.acceptsGzip(acceptEncoding);
+        if (formPayloadService.matches(payload, ifNoneMatch)) {
+            formPayloadService.recordNotModified(payload);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(payload.getEtag(gzipped))
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
 
-        return ResponseEntity.ok(form);
+        formPayloadService.recordServed(payload, gzipped);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(payload.getEtag(gzipped))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzipped) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzipped());
+        }
+        return response.body(payload.getJson());
     }
 
     @GetMapping("/form/{formId}/results")
+    @Bulkhead(Workload.ANALYTICS)
     public ResponseEntity<List<Map<String, Object>>> getFormResultsById(@PathVariable Long formId,
                                                                         @AuthenticationPrincipal CustomUserDetail userDetails) {
         User user = userDetails.getUser();
-        Form form = formService.validateFormOwnershipAndGet(formId, user);
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
         if (form == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
@@ -121,28 +244,166 @@ public class FormController {
         return ResponseEntity.ok(formDataService.getFormData(formId));
     }
 
+    // Same responses as /results, as an Arrow IPC file for analysis tools
+    @GetMapping("/form/{formId}/export")
+    @Bulkhead(Workload.ANALYTICS)
+    public void exportFormResults(@PathVariable Long formId,
+                                  @AuthenticationPrincipal CustomUserDetail userDetails,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        User user = userDetails.getUser();
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
+        if (form == null) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+
+        arrowExportService.send(arrowExportService.export(form), request, response);
+    }
+
     @PostMapping("/form/{formId}/submit")
-    public ResponseEntity<String> submitFormData(
+    @Bulkhead(Workload.INGESTION)
+    public ResponseEntity<?> submitFormData(
             @PathVariable Long formId,
             @RequestBody Map<String, Object> formData,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal CustomUserDetail userDetails
     ) {
         System.out.println("Received form data for form ID: " + formId);
 
+        if (idempotencyKey != null
+                && (idempotencyKey.isBlank() || idempotencyKey.length() > SubmissionIdempotency.MAX_KEY_LENGTH)) {
+            return ResponseEntity.badRequest().body("Idempotency-Key must be 1 to "
+                    + SubmissionIdempotency.MAX_KEY_LENGTH + " characters");
+        }
         if (!formService.validateFormSubmission(formId)) {
             return ResponseEntity.notFound().build();
         }
+        if (!formService.canUserFillForm(formService.getFormDefinition(formId), userDetails.getUser())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("You do not have access to this form");
+        }
+
+        // Insert form data into the dynamic table, unless this is a retry of an earlier submission
+        SubmissionResult result;
+        try {
+            result = formDataService.submitFormData(formId, formData, userDetails.getUser().getId(), idempotencyKey);
+        } catch (SubmissionValidator.InvalidSubmissionException e) {
+            return invalidSubmission(e);
+        } catch (ResponseCounters.LimitReachedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (ResponseSchemaMigrator.SchemaChangePendingException e) {
+            return schemaChangePending(e);
+        } catch (ArchivedResponseStore.FormArchivedException e) {
+            return formArchived(e);
+        } catch (SubmissionIdempotency.IdempotencyKeyMismatchException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        }
+        draftService.discard(formId, userDetails.getUser().getId());
+        return ResponseEntity.ok()
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body("Form data submitted successfully!");
+    }
+
+    @GetMapping("/form/{formId}/draft")
+    @Bulkhead(Workload.INGESTION)
+    public ResponseEntity<SubmissionDraft> getDraft(@PathVariable Long formId,
+                                                    @AuthenticationPrincipal CustomUserDetail userDetails) {
+        HttpStatus denied = denyFilling(formId, userDetails.getUser());
+        if (denied != null) {
+            return ResponseEntity.status(denied).build();
+        }
+        SubmissionDraft draft = draftService.load(formId, userDetails.getUser().getId());
+        return draft != null ? ResponseEntity.ok(draft) : ResponseEntity.noContent().build();
+    }
+
+    @PutMapping("/form/{formId}/draft")
+    @Bulkhead(Workload.INGESTION)
+    public ResponseEntity<String> saveDraft(@PathVariable Long formId,
+                                            @RequestBody DraftRequest request,
+                                            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        HttpStatus denied = denyFilling(formId, userDetails.getUser());
+        if (denied != null) {
+            return ResponseEntity.status(denied).build();
+        }
+        try {
+            draftService.save(formId, userDetails.getUser().getId(), request.answers(), request.page(),
+                    request.flush());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.accepted().build();
+    }
 
-        // Insert form data into the dynamic table
-        formDataService.insertFormData(formId, formData, userDetails.getUser().getId());
+    @DeleteMapping("/form/{formId}/draft")
+    @Bulkhead(Workload.INGESTION)
+    public ResponseEntity<Void> discardDraft(@PathVariable Long formId,
+                                             @AuthenticationPrincipal CustomUserDetail userDetails) {
+        draftService.discard(formId, userDetails.getUser().getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/form/{formId}/draft/submit")
+    @Bulkhead(Workload.INGESTION)
+    public ResponseEntity<?> submitDraft(@PathVariable Long formId,
+                                              @AuthenticationPrincipal CustomUserDetail userDetails) {
+        HttpStatus denied = denyFilling(formId, userDetails.getUser());
+        if (denied != null) {
+            return ResponseEntity.status(denied).build();
+        }
+        Long userId = userDetails.getUser().getId();
+        SubmissionDraft draft = draftService.load(formId, userId);
+        if (draft == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No draft to submit");
+        }
+        // Promote the draft to a response; the draft goes once the response is in
+        try {
+            formDataService.submitFormData(formId, draft.answers(), userId, null);
+        } catch (SubmissionValidator.InvalidSubmissionException e) {
+            return invalidSubmission(e);
+        } catch (ResponseCounters.LimitReachedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (ResponseSchemaMigrator.SchemaChangePendingException e) {
+            return schemaChangePending(e);
+        } catch (ArchivedResponseStore.FormArchivedException e) {
+            return formArchived(e);
+        }
+        draftService.discard(formId, userId);
         return ResponseEntity.ok("Form data submitted successfully!");
     }
 
+    private static ResponseEntity<Map<String, Object>> invalidSubmission(
+            SubmissionValidator.InvalidSubmissionException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage(), "errors", e.getErrors()));
+    }
+
+    private static ResponseEntity<String> schemaChangePending(ResponseSchemaMigrator.SchemaChangePendingException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    // An open form is only still archived while its responses are being restored
+    private static ResponseEntity<String> formArchived(ArchivedResponseStore.FormArchivedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ARCHIVED_RETRY_AFTER_SECONDS))
+                .body(e.getMessage());
+    }
+
+    private HttpStatus denyFilling(Long formId, User user) {
+        if (!formService.validateFormSubmission(formId)) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (!formService.canUserFillForm(formService.getFormDefinition(formId), user)) {
+            return HttpStatus.FORBIDDEN;
+        }
+        return null;
+    }
+
     @GetMapping("/form/{formId}/fields")
     public ResponseEntity<List<Map<String, Object>>> getFormFields(@PathVariable Long formId,
                                                                    @AuthenticationPrincipal CustomUserDetail userDetails) {
         User user = userDetails.getUser();
-        Form form = formService.validateFormOwnershipAndGet(formId, user);
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
         if (form == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
@@ -150,12 +411,13 @@ public class FormController {
     }
 
     @PostMapping("/form/{formId}/query")
+    @Bulkhead(Workload.ANALYTICS)
     public ResponseEntity<List<Map<String, Object>>> runAggregatedQuery(
             @PathVariable Long formId,
             @RequestBody ReportRequest request,
             @AuthenticationPrincipal CustomUserDetail userDetails) {
         User user = userDetails.getUser();
-        Form form = formService.validateFormOwnershipAndGet(formId, user);
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
         if (form == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
@@ -164,11 +426,63 @@ public class FormController {
                 request.groupBy(),
                 request.target(),
                 request.func(),
-                request.chartType()
+                request.chartType(),
+                request.from(),
+                request.to()
         );
         return ResponseEntity.ok(results);
     }
 
+    @GetMapping("/form/{formId}/options")
+    @Bulkhead(Workload.ANALYTICS)
+    public ResponseEntity<OptionCounts> getOptionCounts(
+            @PathVariable Long formId,
+            @RequestParam String column,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        User user = userDetails.getUser();
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
+        if (form == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(queryService.optionCounts(form, column));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Server-sent events with the response count and, given a report, its rows whenever they change
+    @GetMapping(value = "/form/{formId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Bulkhead(Workload.ANALYTICS)
+    public ResponseEntity<SseEmitter> subscribeLive(
+            @PathVariable Long formId,
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) String target,
+            @RequestParam(required = false) String func,
+            @RequestParam(required = false) String chartType,
+            @AuthenticationPrincipal CustomUserDetail userDetails) {
+        User user = userDetails.getUser();
+        FormDefinition form = formService.validateFormOwnershipAndGetDefinition(formId, user);
+        if (form == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        ReportRequest report = null;
+        if (target != null || func != null) {
+            report = new ReportRequest(groupBy != null ? List.copyOf(groupBy) : List.of(), target, func, chartType,
+                    null, null);
+            try {
+                queryService.checkReport(form, report.groupBy(), target, func);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        SseEmitter emitter = liveDashboardService.subscribe(formId, report);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+
     @PutMapping("/form/{formId}/status")
     public ResponseEntity<Form> updateFormStatus(
             @PathVariable Long formId,
@@ -206,6 +520,23 @@ public class FormController {
         return ResponseEntity.ok(userDetailsList);
     }
 
+    @GetMapping("/form/{formId}/users")
+    public ResponseEntity<PagedResponse<UserSummary>> getFormUsers(@PathVariable Long formId,
+                                                                   @RequestParam(defaultValue = "0") int page,
+                                                                   @RequestParam(defaultValue = "50") int size,
+                                                                   @AuthenticationPrincipal CustomUserDetail userDetails) {
+        User user = userDetails.getUser();
+        try {
+            PagedResponse<UserSummary> users = formService.getFormUsersPage(formId, page, size, user);
+            if (users == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(users);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("/form/{formId}/addusers")
     public ResponseEntity<String> addUsersToForm(@PathVariable Long formId,
                                                  @RequestBody List<Long> userIds,
@@ -242,6 +573,18 @@ public class FormController {
         return ResponseEntity.ok("User removed from form");
     }
 
+    @PostMapping("/form/{formId}/removeusers")
+    public ResponseEntity<String> removeUsersFromForm(@PathVariable Long formId,
+                                                      @RequestBody List<Long> userIds,
+                                                      @AuthenticationPrincipal CustomUserDetail userDetails) {
+        User user = userDetails.getUser();
+        boolean success = formService.removeUsersFromForm(formId, userIds, user);
+        if (!success) {
+            return ResponseEntity.badRequest().body("None of the users were in allowed users");
+        }
+        return ResponseEntity.ok("Users removed from form");
+    }
+
     @GetMapping("/forms/sharedWithMe")
     public ResponseEntity<List<Form>> getFormsSharedWithMe(
             @AuthenticationPrincipal CustomUserDetail userDetails) {
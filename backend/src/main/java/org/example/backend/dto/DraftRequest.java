@@ -0,0 +1,13 @@
+package org.example.backend.dto;
+
+import java.util.Map;
+
+/**
+ * An autosave: the answers changed since the last one, the current page, and
+ * whether to write the draft through now (e.g. on a page change).
+ */
+public record DraftRequest(
+        Map<String, Object> answers,
+        Integer page,
+        boolean flush
+) {}
@@ -0,0 +1,52 @@
+package org.example.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import org.example.backend.model.Form;
+import org.example.backend.model.Question;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structural difference between a stored form and an update of it, as
+ * computed by {@link org.example.backend.service.FormDiffEngine}. Besides the
+ * ids of what changed it carries the questions that need a new response
+ * column, which are only known once the updated form has been saved.
+ */
+@Getter
+public class FormChangeSet {
+
+    @JsonIgnore
+    private Form form;
+
+    private final List<Long> removedPageIds = new ArrayList<>();
+    private final List<Long> reorderedPageIds = new ArrayList<>();
+    private int addedPageCount;
+
+    private final List<Long> removedQuestionIds = new ArrayList<>();
+    private final List<Long> changedQuestionIds = new ArrayList<>();
+    private final List<Long> retypedQuestionIds = new ArrayList<>();
+    private final List<Long> movedQuestionIds = new ArrayList<>();
+    private int addedQuestionCount;
+
+    // Questions that had no id before the update; populated after save
+    @JsonIgnore
+    private final List<Question> addedQuestions = new ArrayList<>();
+
+    public void setForm(Form form) {
+        this.form = form;
+    }
+
+    public void pageAdded() {
+        addedPageCount++;
+    }
+
+    public void questionAdded() {
+        addedQuestionCount++;
+    }
+
+    public boolean hasSchemaChanges() {
+        return !addedQuestions.isEmpty();
+    }
+}
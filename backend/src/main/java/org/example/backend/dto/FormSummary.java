@@ -0,0 +1,14 @@
+package org.example.backend.dto;
+
+public record FormSummary(
+        Long id,
+        String title,
+        String description,
+        boolean template,
+        boolean active,
+        boolean expired,
+        int pageCount,
+        int questionCount,
+        long responseCount,
+        Integer responseLimit
+) {}
@@ -0,0 +1,16 @@
+package org.example.backend.dto;
+
+import java.util.List;
+
+/**
+ * Per-option answer counts of a checkbox question. {@code cooccurrence[i][j]}
+ * is the number of responses that picked both {@code options[i]} and
+ * {@code options[j]}; the diagonal equals {@code counts}.
+ */
+public record OptionCounts(
+        String column,
+        long responses,
+        List<String> options,
+        long[] counts,
+        long[][] cooccurrence
+) {}
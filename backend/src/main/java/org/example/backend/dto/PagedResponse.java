@@ -0,0 +1,16 @@
+package org.example.backend.dto;
+
+import java.util.List;
+
+public record PagedResponse<T>(
+        List<T> content,
+        int page,
+        int size,
+        long totalElements,
+        int totalPages
+) {
+    public static <T> PagedResponse<T> of(List<T> content, int page, int size, long totalElements) {
+        int totalPages = size == 0 ? 0 : (int) ((totalElements + size - 1) / size);
+        return new PagedResponse<>(content, page, size, totalElements, totalPages);
+    }
+}
@@ -1,10 +1,13 @@
 package org.example.backend.dto;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 public record ReportRequest(
         List<String> groupBy,
         String target,
         String func,
-        String chartType
+        String chartType,
+        OffsetDateTime from,
+        OffsetDateTime to
 ) {}
@@ -0,0 +1,12 @@
+package org.example.backend.dto;
+
+import java.util.Map;
+
+/**
+ * A saved, not yet submitted response: answers keyed like a submission
+ * ({@code question_<id>}) and the page the user was on.
+ */
+public record SubmissionDraft(
+        Map<String, Object> answers,
+        Integer page
+) {}
@@ -0,0 +1,10 @@
+package org.example.backend.dto;
+
+/**
+ * Outcome of a response submission; {@code replayed} when an earlier
+ * submission with the same idempotency key already created the response.
+ */
+public record SubmissionResult(
+        long responseId,
+        boolean replayed
+) {}
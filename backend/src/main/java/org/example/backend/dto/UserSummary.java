@@ -0,0 +1,7 @@
+package org.example.backend.dto;
+
+public record UserSummary(
+        Long id,
+        String username,
+        String name
+) {}
@@ -0,0 +1,139 @@
+package org.example.backend.model;
+
+import java.util.*;
+
+/**
+ * Stable integer codes for the choices of choice questions. Answers to
+ * single-choice questions are stored as the code of the picked label, and
+ * answers to checkbox questions as a bitmask with bit {@code code} set for
+ * every picked label. A code, once handed out, always refers to the same
+ * answer: reordering choices keeps every code, a renamed choice is a new
+ * label with a new code, and removed choices keep theirs so that older
+ * answers still decode.
+ */
+public final class ChoiceCodes {
+
+    /** {@link Question#getEncoding()} of questions answered with choice codes. */
+    public static final String ENCODING = ResponseType.CHOICE_CODE.name();
+
+    /** {@link Question#getEncoding()} of checkbox questions answered with a bitmask. */
+    public static final String MASK_ENCODING = ResponseType.CHOICE_MASK.name();
+
+    /** Codes that fit a BIGINT mask without touching the sign bit. */
+    public static final int MAX_MASK_CODES = 63;
+
+    private static final Set<String> SINGLE_CHOICE_TYPES = Set.of("radio", "select", "multi", "multiple-choice", "dropdown");
+    private static final Set<String> MULTI_CHOICE_TYPES = Set.of("checkbox");
+
+    private ChoiceCodes() {
+    }
+
+    public static boolean isEncoded(Question question) {
+        return ENCODING.equals(question.getEncoding());
+    }
+
+    public static boolean isMask(Question question) {
+        return MASK_ENCODING.equals(question.getEncoding());
+    }
+
+    public static boolean hasCodes(Question question) {
+        return isEncoded(question) || isMask(question);
+    }
+
+    /**
+     * Picks the encoding of a question about to get its response column.
+     * Questions that already have one keep it, as the column type is fixed.
+     */
+    public static void assign(Question question) {
+        if (question.getEncoding() != null) {
+            return;
+        }
+        String type = question.getType() == null ? "" : question.getType().toLowerCase();
+        List<String> choices = question.getChoices();
+        if (choices == null || choices.isEmpty()) {
+            return;
+        }
+        if (SINGLE_CHOICE_TYPES.contains(type)) {
+            question.setEncoding(ENCODING);
+        } else if (MULTI_CHOICE_TYPES.contains(type) && new HashSet<>(choices).size() <= MAX_MASK_CODES) {
+            question.setEncoding(MASK_ENCODING);
+        } else {
+            return;
+        }
+        remap(question, choices);
+    }
+
+    /**
+     * Updates the code map of an encoded question whose choices are now
+     * {@code after}. Labels that were ever offered keep their code; a new
+     * label always gets the next free code, even in the place of a dropped
+     * one, since stored answers cannot tell a rename from a new choice.
+     *
+     * @throws IllegalArgumentException if a checkbox question would need more
+     *         codes than its mask has bits
+     */
+    public static void remap(Question question, List<String> after) {
+        if (!hasCodes(question) || after == null) {
+            return;
+        }
+        Map<Integer, String> codes = question.getChoiceCodes();
+        Set<String> known = new HashSet<>(codes.values());
+        int next = 0;
+        for (Integer code : codes.keySet()) {
+            next = Math.max(next, code + 1);
+        }
+
+        for (String label : after) {
+            if (label == null || !known.add(label)) {
+                continue;
+            }
+            if (isMask(question) && next >= MAX_MASK_CODES) {
+                throw new IllegalArgumentException("Question " + question.getText()
+                        + " cannot offer more than " + MAX_MASK_CODES + " different choices");
+            }
+            codes.put(next++, label);
+        }
+    }
+
+    /** Codes of the labels currently on offer. */
+    public static Map<String, Integer> currentCodes(Question question) {
+        Map<String, Integer> codes = new HashMap<>();
+        if (question.getChoices() == null) {
+            return codes;
+        }
+        Set<String> offered = new HashSet<>(question.getChoices());
+        for (Map.Entry<Integer, String> entry : question.getChoiceCodes().entrySet()) {
+            if (offered.contains(entry.getValue())) {
+                codes.put(entry.getValue(), entry.getKey());
+            }
+        }
+        return codes;
+    }
+
+    public static String labelOf(Question question, Object code) {
+        if (code == null) {
+            return null;
+        }
+        return question.getChoiceCodes().get(((Number) code).intValue());
+    }
+
+    /** Labels whose bits are set in a stored mask, in code order. */
+    public static List<String> labelsOf(Question question, Object mask) {
+        if (mask == null) {
+            return null;
+        }
+        long bits = ((Number) mask).longValue();
+        List<String> labels = new ArrayList<>(Long.bitCount(bits));
+        for (long rest = bits; rest != 0; rest &= rest - 1) {
+            labels.add(question.getChoiceCodes().get(Long.numberOfTrailingZeros(rest)));
+        }
+        return labels;
+    }
+
+    /** Codes in use by a question, in ascending order. */
+    public static List<Integer> codes(Question question) {
+        List<Integer> codes = new ArrayList<>(question.getChoiceCodes().keySet());
+        Collections.sort(codes);
+        return codes;
+    }
+}
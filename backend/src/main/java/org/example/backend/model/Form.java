@@ -1,5 +1,6 @@
 package org.example.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
@@ -7,14 +8,18 @@ import lombok.ToString;
 import lombok.EqualsAndHashCode;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Getter
 @Setter
 @ToString(exclude = {"owner", "pages", "allowedUsers"})
 @EqualsAndHashCode(exclude = {"owner", "pages", "allowedUsers"})
 @Entity
+@Table(indexes = @Index(name = "idx_form_owner_id", columnList = "owner_id"))
 public class Form {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -33,19 +38,44 @@ public class Form {
     @JoinColumn(name = "form_id")
     private List<Page> pages = new ArrayList<Page>();
 
+    // Owned by FormAccessService and served by /form/{id}/users; never part of the form payload
+    @JsonIgnore
     @ManyToMany
     @JoinTable(
         name = "form_allowed_users",
         joinColumns = @JoinColumn(name = "form_id"),
         inverseJoinColumns = @JoinColumn(name = "user_id")
     )
-    private List<User> allowedUsers = new ArrayList<>();
+    private Set<User> allowedUsers = new HashSet<>();
+
+    // Only the owner and allowed users may fill the form. Set by the first grant and kept when the
+    // last user is revoked; changed only through FormRepository.restrict, never by saving a loaded form.
+    @Column(updatable = false)
+    private Boolean restricted = false;
 
     //user can fill the form If and Only If the form is active and not expired
     private boolean isTemplate;
     private boolean isActive;
     private boolean isExpired;
 
+    // ResponseStore engine holding this form's responses; null means "TABLE".
+    // Changed only by FormArchiver through SQL, never by saving a loaded form.
+    @Column(updatable = false)
+    private String storageEngine;
+
+    // Response table partitioned by submission month (TABLE engine only); fixed at creation
+    private Boolean partitioned;
+
+    // Months of responses kept in a partitioned table; null keeps everything
+    private Integer retentionMonths;
+
+    // Submissions are refused once this many responses exist; null means no limit
+    private Integer responseLimit;
+
+    // Submissions are accepted from opensAt and until closesAt, when FormScheduler flips the flags above; null means no bound
+    private Instant opensAt;
+    private Instant closesAt;
+
 
     // Constructor
     public Form(String title, String description, List<Page> pages, User owner) {
@@ -57,6 +87,10 @@ public class Form {
     public Form() {}
 
 
+    public boolean hasMonthlyPartitions() {
+        return Boolean.TRUE.equals(partitioned);
+    }
+
     public void setPages(List<Page> pages) {
         this.pages.clear();
         if (pages != null) {
@@ -0,0 +1,203 @@
+package org.example.backend.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Immutable, fully initialized snapshot of a form as it is served to the
+ * fill, submit and report paths. Instances are shared between requests by
+ * {@link org.example.backend.service.FormDefinitionCache}, so neither the
+ * snapshot nor the detached {@link Form} it exposes may be modified.
+ */
+@Getter
+public class FormDefinition {
+
+    private final Long formId;
+    private final long version;
+    private final Form form;
+    private final Long ownerId;
+    private final boolean template;
+    private final boolean active;
+    private final boolean expired;
+    private final String storageEngine;
+    private final Integer responseLimit;
+    private final Instant opensAt;
+    private final Instant closesAt;
+
+    // Questions in page order, plus the lookups derived from them
+    private final List<Question> questions;
+    private final Map<Long, Question> questionsById;
+    private final Set<String> allowedColumns;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, ResponseType.Converter> converters;
+
+    // Checks of submissions, compiled from the questions
+    private final SubmissionValidator validator;
+
+    private final long estimatedBytes;
+
+    @Getter(AccessLevel.NONE)
+    private volatile FormPayload payload;
+
+    private FormDefinition(Form form, long version, List<Question> questions) {
+        this.formId = form.getId();
+        this.version = version;
+        this.form = form;
+        this.ownerId = form.getOwner() != null ? form.getOwner().getId() : null;
+        this.template = form.isTemplate();
+        this.active = form.isActive();
+        this.expired = form.isExpired();
+        this.storageEngine = form.getStorageEngine();
+        this.responseLimit = form.getResponseLimit();
+        this.opensAt = form.getOpensAt();
+        this.closesAt = form.getClosesAt();
+        this.questions = Collections.unmodifiableList(questions);
+
+        Map<Long, Question> byId = new HashMap<>();
+        Map<Long, ResponseType.Converter> compiled = new HashMap<>();
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("user_id");
+        for (Question q : questions) {
+            byId.put(q.getId(), q);
+            compiled.put(q.getId(), ResponseType.of(q).converter(q));
+            columns.add("question_" + q.getId());
+        }
+        this.questionsById = Collections.unmodifiableMap(byId);
+        this.converters = compiled;
+        this.validator = new SubmissionValidator(this.questions);
+        this.allowedColumns = Collections.unmodifiableSet(columns);
+        this.estimatedBytes = estimateBytes(form, questions);
+    }
+
+    /**
+     * Builds a snapshot from a managed form. Must be called while the
+     * persistence context is still open so that lazy collections can be
+     * copied into plain detached ones.
+     */
+    public static FormDefinition of(Form source, long version) {
+        Form copy = new Form();
+        copy.setId(source.getId());
+        copy.setTitle(source.getTitle());
+        copy.setDescription(source.getDescription());
+        copy.setOwner(source.getOwner());
+        copy.setTemplate(source.isTemplate());
+        copy.setActive(source.isActive());
+        copy.setExpired(source.isExpired());
+        copy.setStorageEngine(source.getStorageEngine());
+        copy.setPartitioned(source.getPartitioned());
+        copy.setRetentionMonths(source.getRetentionMonths());
+        copy.setResponseLimit(source.getResponseLimit());
+        copy.setOpensAt(source.getOpensAt());
+        copy.setClosesAt(source.getClosesAt());
+
+        // Fetch joins over the pages bag can repeat a page once per question row
+        Map<Long, Page> uniquePages = new LinkedHashMap<>();
+        for (Page page : source.getPages()) {
+            uniquePages.putIfAbsent(page.getId(), page);
+        }
+
+        List<Page> pages = new ArrayList<>();
+        List<Question> questions = new ArrayList<>();
+        for (Page page : uniquePages.values()) {
+            Page pageCopy = new Page();
+            pageCopy.setId(page.getId());
+            pageCopy.setPageIndex(page.getPageIndex());
+            pageCopy.setForm(copy);
+
+            Set<Question> questionCopies = new LinkedHashSet<>();
+            for (Question question : page.getQuestions()) {
+                Question q = copyQuestion(question);
+                q.setPage(pageCopy);
+                questionCopies.add(q);
+                questions.add(q);
+            }
+            pageCopy.setQuestions(questionCopies);
+            pages.add(pageCopy);
+        }
+        copy.setPages(pages);
+
+        return new FormDefinition(copy, version, questions);
+    }
+
+    private static Question copyQuestion(Question question) {
+        Question q = new Question();
+        q.setId(question.getId());
+        q.setText(question.getText());
+        q.setType(question.getType());
+        q.setDataType(question.getDataType());
+        q.setOptional(question.isOptional());
+        q.setMinValue(question.getMinValue());
+        q.setMaxValue(question.getMaxValue());
+        q.setChoices(question.getChoices() != null ? new ArrayList<>(question.getChoices()) : null);
+        q.setCreatedAtTs(question.getCreatedAtTs());
+        q.setEncoding(question.getEncoding());
+        q.setChoiceCodes(new HashMap<>(question.getChoiceCodes()));
+        return q;
+    }
+
+    public Question getQuestion(Long questionId) {
+        return questionsById.get(questionId);
+    }
+
+    /** Converter of a question's answers to its column type, built once per version. */
+    public ResponseType.Converter getConverter(Long questionId) {
+        return converters.get(questionId);
+    }
+
+    /**
+     * Returns the rendered payload of this version, rendering it on first use.
+     * Concurrent first calls may render twice; the results are identical.
+     */
+    public FormPayload getPayload(Function<FormDefinition, FormPayload> renderer) {
+        FormPayload rendered = payload;
+        if (rendered == null) {
+            rendered = renderer.apply(this);
+            payload = rendered;
+        }
+        return rendered;
+    }
+
+    /** Whether {@code other} holds the same settings, pages and questions, whatever its version. */
+    public boolean sameContentAs(FormDefinition other) {
+        return content().equals(other.content());
+    }
+
+    private List<Object> content() {
+        List<Object> content = new ArrayList<>(Arrays.asList(form.getTitle(), form.getDescription(), ownerId,
+                template, active, expired, storageEngine, form.getPartitioned(), form.getRetentionMonths(),
+                responseLimit, opensAt, closesAt));
+        for (Question q : questions) {
+            content.addAll(Arrays.asList(q.getPage().getId(), q.getPage().getPageIndex(), q.getId(), q.getText(),
+                    q.getType(), q.getDataType(), q.isOptional(), q.getMinValue(), q.getMaxValue(), q.getChoices(),
+                    q.getEncoding(), q.getChoiceCodes()));
+        }
+        return content;
+    }
+
+    // Rough retained size, used to keep the cache within its byte budget.
+    // Doubled for questions to leave room for the rendered payload.
+    private static long estimateBytes(Form form, List<Question> questions) {
+        long bytes = 256 + length(form.getTitle()) + length(form.getDescription());
+        for (Question q : questions) {
+            bytes += 2 * (192 + length(q.getText()) + length(q.getType()) + length(q.getDataType()));
+            if (q.getChoices() != null) {
+                for (String choice : q.getChoices()) {
+                    bytes += 2 * (48 + length(choice));
+                }
+            }
+            for (String label : q.getChoiceCodes().values()) {
+                bytes += 64 + length(label);
+            }
+        }
+        return bytes;
+    }
+
+    private static long length(String s) {
+        return s == null ? 0 : 2L * s.length();
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.backend.model;
+
+import lombok.Getter;
+
+/**
+ * Pre-rendered JSON of one {@link FormDefinition} version, optionally with a
+ * gzipped copy, and the strong ETag derived from its content. The gzipped
+ * bytes are a different representation, so they get their own tag.
+ */
+@Getter
+public class FormPayload {
+
+    private final byte[] json;
+    private final byte[] gzipped;   // null when the payload is too small to be worth compressing
+    private final String etag;
+
+    public FormPayload(byte[] json, byte[] gzipped, String etag) {
+        this.json = json;
+        this.gzipped = gzipped;
+        this.etag = etag;
+    }
+
+    public boolean hasGzipped() {
+        return gzipped != null;
+    }
+
+    /** Tag of the representation sent; the gzip one is the identity tag with a {@code -gzip} suffix. */
+    public String getEtag(boolean gzip) {
+        return gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 @ToString(exclude = {"form", "questions"})
 @EqualsAndHashCode(exclude = {"form", "questions"})
 @Entity
+@Table(indexes = @Index(name = "idx_page_form_id", columnList = "form_id"))
 public class Page {
 
     @Id
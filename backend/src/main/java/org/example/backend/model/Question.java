@@ -11,6 +11,8 @@ import lombok.ToString;
 import lombok.EqualsAndHashCode;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 
 @Getter
@@ -18,6 +20,7 @@ import java.util.ArrayList;
 @ToString(exclude = "page")
 @EqualsAndHashCode(exclude = "page")
 @Entity
+@Table(indexes = @Index(name = "idx_question_page_id", columnList = "page_id"))
 public class Question {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,6 +32,10 @@ public class Question {
     private String dataType;
     private boolean optional;
 
+    // Optional inclusive bounds on numeric answers
+    private Double minValue;
+    private Double maxValue;
+
     @ElementCollection
     @CollectionTable(name = "question_choices", joinColumns = @JoinColumn(name = "question_id"))
     @Column(name = "choice_value")
@@ -43,6 +50,18 @@ public class Question {
     @JsonIgnore // Ignore this field in JSON serialization/deserialization
     private List<String> options = new ArrayList<>();
 
+    // ResponseType of the response column, fixed once the column exists
+    @JsonIgnore
+    private String encoding;
+
+    // Stable code of every choice label ever offered, see ChoiceCodes
+    @ElementCollection
+    @CollectionTable(name = "question_choice_codes", joinColumns = @JoinColumn(name = "question_id"))
+    @MapKeyColumn(name = "code")
+    @Column(name = "label")
+    @JsonIgnore
+    private Map<Integer, String> choiceCodes = new HashMap<>();
+
     @Column(name = "created_at_ts")
     @JsonProperty("created_at")
     private Long createdAtTs;
@@ -63,4 +82,12 @@ public class Question {
     public Question() {
 
     }
+
+    @PrePersist
+    void assignEncoding() {
+        ChoiceCodes.assign(this);
+        if (encoding == null) {
+            encoding = ResponseType.forDataType(dataType).name();
+        }
+    }
 }
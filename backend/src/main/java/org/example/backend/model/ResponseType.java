@@ -0,0 +1,172 @@
+package org.example.backend.model;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Physical type of a question's response column and the conversion of
+ * submitted values to it. A question's type is recorded in
+ * {@link Question#getEncoding()} when it is first persisted, so edits to its
+ * data type never change the type of an existing column. Questions persisted
+ * before types were recorded map their data type as they always did.
+ */
+public enum ResponseType {
+    SHORT_TEXT("VARCHAR(255)"),
+    TEXT("TEXT"),
+    INTEGER("BIGINT"),
+    DECIMAL("NUMERIC"),
+    BOOLEAN("BOOLEAN"),
+    DATE("DATE"),
+    TIMESTAMP("TIMESTAMPTZ"),
+    EMAIL("VARCHAR(320)"),
+    CHOICE_CODE("SMALLINT"),
+    CHOICE_MASK("BIGINT");
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private final String sqlType;
+
+    ResponseType(String sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    public String sqlType() {
+        return sqlType;
+    }
+
+    public boolean isNumeric() {
+        return this == INTEGER || this == DECIMAL;
+    }
+
+    /** Converts one submitted answer; throws {@link IllegalArgumentException} if it does not fit. */
+    @FunctionalInterface
+    public interface Converter {
+        Object convert(Object value);
+    }
+
+    public static ResponseType of(Question question) {
+        if (question.getEncoding() != null) {
+            return valueOf(question.getEncoding());
+        }
+        // Mapping used before column types were recorded
+        String dataType = question.getDataType() == null ? "" : question.getDataType().toUpperCase();
+        return switch (dataType) {
+            case "LONG_TEXT" -> TEXT;
+            case "NUMBER" -> DECIMAL;
+            case "BOOLEAN" -> BOOLEAN;
+            default -> SHORT_TEXT;
+        };
+    }
+
+    /** Type of a new column for the given question data type. */
+    public static ResponseType forDataType(String dataType) {
+        return switch (dataType == null ? "" : dataType.toUpperCase()) {
+            case "LONG_TEXT" -> TEXT;
+            case "INTEGER", "INT" -> INTEGER;
+            case "NUMBER", "DECIMAL" -> DECIMAL;
+            case "BOOL", "BOOLEAN" -> BOOLEAN;
+            case "DATE" -> DATE;
+            case "TIMESTAMP", "DATETIME", "DATE_TIME" -> TIMESTAMP;
+            case "EMAIL" -> EMAIL;
+            default -> SHORT_TEXT;
+        };
+    }
+
+    /**
+     * Builds the converter for a question. Choice lookups are resolved here,
+     * so converters should be built once per form version and reused.
+     */
+    public Converter converter(Question question) {
+        String name = question.getText();
+        return switch (this) {
+            case SHORT_TEXT, TEXT -> Object::toString;
+            case INTEGER -> value -> {
+                try {
+                    return value instanceof Number n ? new BigDecimal(n.toString()).longValueExact()
+                            : new BigDecimal(value.toString().trim()).longValueExact();
+                } catch (ArithmeticException | NumberFormatException e) {
+                    throw invalid(name, value, "a whole number");
+                }
+            };
+            case DECIMAL -> value -> {
+                try {
+                    return new BigDecimal(value.toString().trim());
+                } catch (NumberFormatException e) {
+                    throw invalid(name, value, "a number");
+                }
+            };
+            case BOOLEAN -> value -> {
+                if (value instanceof Boolean b) {
+                    return b;
+                }
+                return switch (value.toString().trim().toLowerCase()) {
+                    case "true", "yes", "1", "on" -> true;
+                    case "false", "no", "0", "off" -> false;
+                    default -> throw invalid(name, value, "true or false");
+                };
+            };
+            case DATE -> value -> {
+                String s = value.toString().trim();
+                try {
+                    return s.length() > 10 ? OffsetDateTime.parse(s).toLocalDate() : LocalDate.parse(s);
+                } catch (DateTimeParseException e) {
+                    throw invalid(name, value, "a date (yyyy-mm-dd)");
+                }
+            };
+            case TIMESTAMP -> value -> {
+                if (value instanceof Number n) {
+                    return Instant.ofEpochMilli(n.longValue()).atOffset(ZoneOffset.UTC);
+                }
+                String s = value.toString().trim();
+                try {
+                    return OffsetDateTime.parse(s);
+                } catch (DateTimeParseException e) {
+                    try {
+                        return LocalDateTime.parse(s).atOffset(ZoneOffset.UTC);
+                    } catch (DateTimeParseException e2) {
+                        throw invalid(name, value, "an ISO-8601 date and time");
+                    }
+                }
+            };
+            case EMAIL -> value -> {
+                String s = value.toString().trim().toLowerCase(Locale.ROOT);
+                if (!EMAIL_PATTERN.matcher(s).matches()) {
+                    throw invalid(name, value, "an email address");
+                }
+                return s;
+            };
+            case CHOICE_CODE -> {
+                Map<String, Integer> codes = ChoiceCodes.currentCodes(question);
+                yield value -> {
+                    Integer code = codes.get(value.toString());
+                    if (code == null) {
+                        throw invalid(name, value, "one of the choices");
+                    }
+                    return code;
+                };
+            }
+            case CHOICE_MASK -> {
+                Map<String, Integer> codes = ChoiceCodes.currentCodes(question);
+                yield value -> {
+                    Collection<?> labels = value instanceof Collection<?> c ? c : List.of(value);
+                    long mask = 0;
+                    for (Object label : labels) {
+                        Integer code = label == null ? null : codes.get(label.toString());
+                        if (code == null) {
+                            throw invalid(name, value, "a list of the choices");
+                        }
+                        mask |= 1L << code;
+                    }
+                    return mask;
+                };
+            }
+        };
+    }
+
+    private static IllegalArgumentException invalid(String question, Object value, String expected) {
+        return new IllegalArgumentException("Answer to " + question + " must be " + expected + ", got: " + value);
+    }
+}
@@ -0,0 +1,340 @@
+package org.example.backend.model;
+
+import java.util.*;
+
+/**
+ * Checks of a submission against one form version, compiled from its
+ * questions into flat arrays: an opcode, column name and bounds per question,
+ * a bit mask of the required ones and a hash set per choice question. Built
+ * once per {@link FormDefinition} and shared by all submissions of it.
+ *
+ * A valid submission is checked without allocating; errors are collected for
+ * every field rather than stopping at the first. Keys that are not questions
+ * of this version are ignored, as they always were. Formats that cannot be
+ * checked cheaply (full ISO timestamps) are left to the column's
+ * {@link ResponseType.Converter}.
+ */
+public final class SubmissionValidator {
+
+    private static final byte TEXT = 0;
+    private static final byte INTEGER = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte DATE = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte EMAIL = 6;
+    private static final byte CHOICE = 7;
+    private static final byte CHOICES = 8;
+
+    /** A problem with one submitted field. */
+    public record FieldError(String field, String message) {
+    }
+
+    /** Thrown for a submission with at least one invalid field; carries all of them. */
+    public static class InvalidSubmissionException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        private final List<FieldError> errors;
+
+        public InvalidSubmissionException(List<FieldError> errors) {
+            super("Invalid submission: " + errors.size() + " field error(s)");
+            this.errors = List.copyOf(errors);
+        }
+
+        public List<FieldError> getErrors() {
+            return errors;
+        }
+    }
+
+    private final int size;
+    private final String[] columns;
+    private final String[] names;
+    private final byte[] ops;
+    private final int[] maxLengths;
+    private final double[] min;
+    private final double[] max;
+    private final long[] required;
+    private final Set<String>[] choices;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SubmissionValidator(List<Question> questions) {
+        this.size = questions.size();
+        this.columns = new String[size];
+        this.names = new String[size];
+        this.ops = new byte[size];
+        this.maxLengths = new int[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        this.required = new long[(size + 63) / 64];
+        this.choices = new Set[size];
+        for (int i = 0; i < size; i++) {
+            Question q = questions.get(i);
+            ResponseType type = ResponseType.of(q);
+            columns[i] = "question_" + q.getId();
+            names[i] = q.getText();
+            ops[i] = switch (type) {
+                case SHORT_TEXT, TEXT -> TEXT;
+                case INTEGER -> INTEGER;
+                case DECIMAL -> DECIMAL;
+                case BOOLEAN -> BOOLEAN;
+                case DATE -> DATE;
+                case TIMESTAMP -> TIMESTAMP;
+                case EMAIL -> EMAIL;
+                case CHOICE_CODE -> CHOICE;
+                case CHOICE_MASK -> CHOICES;
+            };
+            maxLengths[i] = switch (type) {
+                case SHORT_TEXT -> 255;
+                case EMAIL -> 320;
+                default -> Integer.MAX_VALUE;
+            };
+            min[i] = q.getMinValue() != null ? q.getMinValue() : Double.NEGATIVE_INFINITY;
+            max[i] = q.getMaxValue() != null ? q.getMaxValue() : Double.POSITIVE_INFINITY;
+            if (!q.isOptional()) {
+                required[i >>> 6] |= 1L << i;
+            }
+            if (type == ResponseType.CHOICE_CODE || type == ResponseType.CHOICE_MASK) {
+                choices[i] = new HashSet<>(ChoiceCodes.currentCodes(q).keySet());
+            }
+        }
+    }
+
+    /** All field errors of a submission; an empty list if it is valid. */
+    public List<FieldError> validate(Map<String, Object> formData) {
+        List<FieldError> errors = null;
+        for (int i = 0; i < size; i++) {
+            Object value = formData.get(columns[i]);
+            String error = isEmpty(value)
+                    ? ((required[i >>> 6] & (1L << i)) != 0 ? "Question " + names[i] + " is required" : null)
+                    : check(i, value);
+            if (error != null) {
+                errors = add(errors, columns[i], error);
+            }
+        }
+        return errors == null ? List.of() : errors;
+    }
+
+    private String check(int i, Object value) {
+        return switch (ops[i]) {
+            case TEXT -> value instanceof CharSequence s && s.length() > maxLengths[i]
+                    ? "Answer to " + names[i] + " must be at most " + maxLengths[i] + " characters" : null;
+            case EMAIL -> !(value instanceof String s) || s.length() > maxLengths[i] || !isEmail(s)
+                    ? "Answer to " + names[i] + " must be an email address" : null;
+            case INTEGER, DECIMAL -> checkNumber(i, value);
+            case BOOLEAN -> value instanceof Boolean || (value instanceof String s && isBoolean(s))
+                    ? null : "Answer to " + names[i] + " must be true or false";
+            case DATE -> !(value instanceof String s) || !isDate(s)
+                    ? "Answer to " + names[i] + " must be a date (yyyy-mm-dd)" : null;
+            case TIMESTAMP -> value instanceof Number || value instanceof String
+                    ? null : "Answer to " + names[i] + " must be an ISO-8601 date and time";
+            case CHOICE -> choices[i].contains(value.toString())
+                    ? null : "Answer to " + names[i] + " must be one of the choices";
+            case CHOICES -> checkChoices(i, value);
+            default -> null;
+        };
+    }
+
+    private String checkNumber(int i, Object value) {
+        boolean whole = ops[i] == INTEGER;
+        double v;
+        if (value instanceof Number n) {
+            v = n.doubleValue();
+            if (whole && v != Math.rint(v)) {
+                v = Double.NaN;
+            }
+        } else if (value instanceof String s) {
+            v = parseNumber(s, whole);
+        } else {
+            v = Double.NaN;
+        }
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            return "Answer to " + names[i] + " must be " + (whole ? "a whole number" : "a number");
+        }
+        if (v < min[i] || v > max[i]) {
+            return "Answer to " + names[i] + " must be between " + bound(min[i]) + " and " + bound(max[i]);
+        }
+        return null;
+    }
+
+    private String checkChoices(int i, Object value) {
+        if (value instanceof List<?> labels) {
+            for (int j = 0; j < labels.size(); j++) {
+                Object label = labels.get(j);
+                if (label == null || !choices[i].contains(label.toString())) {
+                    return "Answer to " + names[i] + " must be a list of the choices";
+                }
+            }
+            return null;
+        }
+        return choices[i].contains(value.toString()) ? null : "Answer to " + names[i] + " must be a list of the choices";
+    }
+
+    private static List<FieldError> add(List<FieldError> errors, String field, String message) {
+        if (errors == null) {
+            errors = new ArrayList<>();
+        }
+        errors.add(new FieldError(field, message));
+        return errors;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null
+                || (value instanceof String s && s.isBlank())
+                || (value instanceof Collection<?> c && c.isEmpty());
+    }
+
+    private static String bound(double bound) {
+        return Double.isInfinite(bound) ? (bound < 0 ? "-∞" : "∞")
+                : bound == Math.rint(bound) ? String.valueOf((long) bound) : String.valueOf(bound);
+    }
+
+    // The checks below scan the trimmed string in place, the way the converters would parse it
+
+    private static int start(String s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static int end(String s) {
+        int i = s.length();
+        while (i > 0 && s.charAt(i - 1) <= ' ') i--;
+        return i;
+    }
+
+    /**
+     * Decimal number with optional sign, fraction and exponent, as accepted by
+     * {@code new BigDecimal(..)}; NaN if it is not one, or for a fraction when
+     * {@code whole}. Precise enough for comparing against bounds.
+     */
+    static double parseNumber(String s, boolean whole) {
+        int i = start(s);
+        int end = end(s);
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i++) == '-';
+        }
+        double mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        // Whole-ness is decided on the digits, not the rounded double
+        int trailingZeros = 0;
+        boolean zero = true;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                trailingZeros = c == '0' ? trailingZeros + 1 : 0;
+                zero &= c == '0';
+                if (fraction) {
+                    scale--;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i++) == '-';
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            for (; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                exponent = Math.min(exponent * 10 + (s.charAt(i) - '0'), 10_000);
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return Double.NaN;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        if (whole && !zero && trailingZeros + scale < 0) {
+            return Double.NaN;
+        }
+        double v = scale == 0 ? mantissa : mantissa * Math.pow(10, scale);
+        return negative ? -v : v;
+    }
+
+    private static boolean isBoolean(String s) {
+        int from = start(s);
+        int length = end(s) - from;
+        return matches(s, from, length, "true") || matches(s, from, length, "yes")
+                || matches(s, from, length, "1") || matches(s, from, length, "on")
+                || matches(s, from, length, "false") || matches(s, from, length, "no")
+                || matches(s, from, length, "0") || matches(s, from, length, "off");
+    }
+
+    private static boolean matches(String s, int from, int length, String word) {
+        return length == word.length() && s.regionMatches(true, from, word, 0, length);
+    }
+
+    /** {@code ^[^@\s]+@[^@\s]+\.[^@\s]+$} over the trimmed string, as checked by the converter. */
+    private static boolean isEmail(String s) {
+        int from = start(s);
+        int end = end(s);
+        int at = -1;
+        int lastDot = -1;
+        for (int i = from; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (Character.isWhitespace(c)) {
+                return false;
+            } else if (c == '.' && at >= 0) {
+                lastDot = i;
+            }
+        }
+        return at > from && lastDot > at + 1 && lastDot < end - 1;
+    }
+
+    /** yyyy-mm-dd with a real day of month; longer values are ISO timestamps left to the converter. */
+    private static boolean isDate(String s) {
+        int from = start(s);
+        int length = end(s) - from;
+        if (length > 10) {
+            return true;
+        }
+        if (length != 10 || s.charAt(from + 4) != '-' || s.charAt(from + 7) != '-') {
+            return false;
+        }
+        int year = digits(s, from, 4);
+        int month = digits(s, from + 5, 2);
+        int day = digits(s, from + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        int days = switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return day <= days;
+    }
+
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -1,11 +1,16 @@
 package org.example.backend.repository;
 
+import org.example.backend.dto.UserSummary;
 import org.example.backend.model.Form;
 import org.example.backend.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,4 +42,40 @@ public interface FormRepository extends JpaRepository<Form, Long> {
 
     @Query("SELECT u FROM Form f JOIN f.allowedUsers u WHERE f.id = :formId")
     List<User> getAllowedUsersByFormId(@Param("formId") Long formId);
+
+    @Query(value = "SELECT user_id FROM form_allowed_users WHERE form_id = :formId", nativeQuery = true)
+    List<Long> findAllowedUserIds(@Param("formId") Long formId);
+
+    @Query(value = "SELECT COALESCE(restricted, false) FROM form WHERE id = :formId", nativeQuery = true)
+    Optional<Boolean> findRestrictedById(@Param("formId") Long formId);
+
+    @Query("SELECT f.owner.id FROM Form f WHERE f.id = :formId")
+    Optional<Long> findOwnerIdById(@Param("formId") Long formId);
+
+    @Query("SELECT new org.example.backend.dto.UserSummary(u.id, u.username, u.name) " +
+           "FROM Form f JOIN f.allowedUsers u WHERE f.id = :formId")
+    List<UserSummary> findAllowedUserSummaries(@Param("formId") Long formId);
+
+    @Query(value = "SELECT new org.example.backend.dto.UserSummary(u.id, u.username, u.name) " +
+                   "FROM Form f JOIN f.allowedUsers u WHERE f.id = :formId",
+           countQuery = "SELECT count(u) FROM Form f JOIN f.allowedUsers u WHERE f.id = :formId")
+    Page<UserSummary> findAllowedUserSummaries(@Param("formId") Long formId, Pageable pageable);
+
+    // Sharing deltas go straight to the join table instead of rewriting the
+    // whole collection; ux_form_allowed_users (schema.sql) makes grants idempotent.
+    @Modifying
+    @Query(value = "INSERT INTO form_allowed_users (form_id, user_id) " +
+                   "SELECT :formId, u.id FROM users u WHERE u.id IN (:userIds) " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int grantAccess(@Param("formId") Long formId, @Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @Query(value = "UPDATE form SET restricted = true WHERE id = :formId AND restricted IS NOT TRUE",
+           nativeQuery = true)
+    int restrict(@Param("formId") Long formId);
+
+    @Modifying
+    @Query(value = "DELETE FROM form_allowed_users WHERE form_id = :formId AND user_id IN (:userIds)",
+           nativeQuery = true)
+    int revokeAccess(@Param("formId") Long formId, @Param("userIds") Collection<Long> userIds);
 }
@@ -1,11 +1,36 @@
 // src/main/java/org/example/backend/repository/UserRepository.java
 package org.example.backend.repository;
 
+import org.example.backend.dto.UserSummary;
 import org.example.backend.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    @Query("SELECT new org.example.backend.dto.UserSummary(u.id, u.username, u.name) FROM User u")
+    List<UserSummary> findAllSummaries();
+
+    // Served by the lower(username) text_pattern_ops index (see schema.sql)
+    @Query(value = "SELECT new org.example.backend.dto.UserSummary(u.id, u.username, u.name) FROM User u " +
+                   "WHERE lower(u.username) LIKE concat(:prefix, '%') ESCAPE '!'",
+           countQuery = "SELECT count(u) FROM User u " +
+                        "WHERE lower(u.username) LIKE concat(:prefix, '%') ESCAPE '!'")
+    Page<UserSummary> searchByUsernamePrefix(@Param("prefix") String prefix, Pageable pageable);
+
+    // Served by the pg_trgm GIN indexes on lower(username) and lower(name) (see schema.sql)
+    @Query(value = "SELECT new org.example.backend.dto.UserSummary(u.id, u.username, u.name) FROM User u " +
+                   "WHERE lower(u.username) LIKE concat('%', :term, '%') ESCAPE '!' " +
+                   "OR lower(u.name) LIKE concat('%', :term, '%') ESCAPE '!'",
+           countQuery = "SELECT count(u) FROM User u " +
+                        "WHERE lower(u.username) LIKE concat('%', :term, '%') ESCAPE '!' " +
+                        "OR lower(u.name) LIKE concat('%', :term, '%') ESCAPE '!'")
+    Page<UserSummary> searchByUsernameOrName(@Param("term") String term, Pageable pageable);
 }
@@ -71,6 +71,7 @@ public class SecurityConfig {
         config.setAllowedOrigins(List.of("http://localhost:5173", "https://form.darkube.app"));
         config.setAllowedMethods(List.of("GET","POST","PUT","DELETE","OPTIONS"));
         config.setAllowedHeaders(List.of("*"));
+        config.setExposedHeaders(List.of("ETag", "Idempotent-Replayed", "Retry-After"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
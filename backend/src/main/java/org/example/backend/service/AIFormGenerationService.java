@@ -140,7 +140,7 @@ public class AIFormGenerationService {
                     {
                       "text": "Question text",
                       "type": "text|email|tel|textarea|radio|checkbox|select|date|number",
-                      "dataType": "SHORT_TEXT|LONG_TEXT|NUMBER|EMAIL|DATE|BOOL",
+                      "dataType": "SHORT_TEXT|LONG_TEXT|NUMBER|INTEGER|EMAIL|DATE|BOOL",
                       "optional": true|false,
                       "choices": ["option1", "option2"] // only for radio/checkbox/select
                     }
@@ -151,7 +151,7 @@ public class AIFormGenerationService {
             
             Rules:
             - Use standard HTML input types: text, email, tel, textarea, radio, checkbox, select, date, number
-            - For dataType: SHORT_TEXT, LONG_TEXT, NUMBER, EMAIL, DATE, BOOL
+            - For dataType: SHORT_TEXT, LONG_TEXT, NUMBER, INTEGER, EMAIL, DATE, BOOL
             - Use "choices" for radio/checkbox/select options
             - Use "optional" instead of "required" (optional: true means not required)
             - Create logical pages (max 5 questions per page)
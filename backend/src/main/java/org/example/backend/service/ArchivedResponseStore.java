@@ -0,0 +1,228 @@
+package org.example.backend.service;
+
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only engine for forms whose responses {@link FormArchiver} moved out
+ * of the database into a {@link ResponseArchive} file. Reads go through the
+ * file's memory mapping; aggregates run in memory on a columnar snapshot of
+ * the file, so archived forms keep working in results and reports.
+ *
+ * The files are local to the instance that archived the form: other
+ * instances cannot read its responses, and fail with an
+ * {@link UncheckedIOException}, unless {@code form.archive.dir} is shared
+ * storage mounted on all of them.
+ */
+@Component
+public class ArchivedResponseStore implements ResponseStore {
+
+    public static final String ENGINE = "ARCHIVE";
+
+    /** Thrown for a submission to a form whose responses are archived, e.g. while they are being restored. */
+    public static class FormArchivedException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public FormArchivedException(Long formId) {
+            super("Form " + formId + " is archived and does not accept responses");
+        }
+    }
+
+    // Marks a group whose target values were all NULL
+    private static final String NONE = "\u0000";
+
+    private final Path directory;
+    private final Map<Long, ResponseArchive.Reader> readers = new ConcurrentHashMap<>();
+
+    // Lazy: the engine resolves stores through the registry that holds this one
+    @Lazy
+    @Autowired
+    private ColumnarAnalyticsEngine columnarEngine;
+
+    public ArchivedResponseStore(@Value("${form.archive.dir:archive}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @Override
+    public String engine() {
+        return ENGINE;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Path archivePath(Long formId) {
+        return directory.resolve(TablePerFormResponseStore.tableName(formId) + ".frma");
+    }
+
+    /** Forgets the mapping of a form's archive, e.g. before it is replaced or deleted. */
+    public void release(Long formId) {
+        readers.remove(formId);
+    }
+
+    public ResponseArchive.Reader reader(Long formId) {
+        return readers.computeIfAbsent(formId, id -> {
+            try {
+                return ResponseArchive.open(archivePath(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open archive of form " + id + " in " + directory.toAbsolutePath()
+                        + "; archives are only readable where form.archive.dir holds them", e);
+            }
+        });
+    }
+
+    public boolean exists(Long formId) {
+        return Files.exists(archivePath(formId));
+    }
+
+    @Override
+    public void createSchema(Form form) {
+        throw new IllegalStateException("Form " + form.getId() + " is archived");
+    }
+
+    @Override
+    public CompletableFuture<Void> addColumns(Long formId, Map<String, String> columns) {
+        // New questions simply read as NULL from the archive
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public long insert(Long formId, Long userId, Map<String, Object> values) {
+        throw new FormArchivedException(formId);
+    }
+
+    @Override
+    public List<Map<String, Object>> findAll(Long formId) {
+        return reader(formId).readAll();
+    }
+
+    @Override
+    public List<Map<String, Object>> findAfter(Long formId, long afterId) {
+        ResponseArchive.Reader reader = reader(formId);
+        // Archives never grow, so refreshes of a loaded snapshot cost nothing
+        if (afterId >= reader.getMaxId()) {
+            return new ArrayList<>();
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        reader.forEachGroup(group -> {
+            for (Map<String, Object> row : group) {
+                Object id = row.get("id");
+                if (id instanceof Number n && n.longValue() > afterId) {
+                    rows.add(row);
+                }
+            }
+        });
+        return rows;
+    }
+
+    @Override
+    public void scan(Long formId, int batchSize, Consumer<List<Map<String, Object>>> batches) {
+        // Row groups are already bounded; only one of them is inflated at a time
+        reader(formId).forEachGroup(batches);
+    }
+
+    @Override
+    public Watermark watermark(Long formId) {
+        ResponseArchive.Reader reader = reader(formId);
+        return new Watermark(reader.getRowCount(), reader.getMaxId());
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(FormDefinition form, List<String> groupBy, String target, String op,
+                                               OffsetDateTime from, OffsetDateTime to) {
+        List<Map<String, Object>> rows = findAll(form.getFormId());
+        if (from != null || to != null) {
+            rows.removeIf(row -> !inRange(row.get("submitted_at"), from, to));
+        }
+        if (columnarEngine.supports(form, target, op)) {
+            ColumnarSnapshot snapshot = new ColumnarSnapshot(form);
+            snapshot.append(rows);
+            return columnarEngine.aggregate(snapshot, groupBy, target, op);
+        }
+        return minMaxByLabel(form, rows, groupBy, target, op);
+    }
+
+    @Override
+    public Map<Long, Long> countMasks(FormDefinition form, String column) {
+        Map<Long, Long> counts = new HashMap<>();
+        reader(form.getFormId()).forEachGroup(group -> {
+            for (Map<String, Object> row : group) {
+                if (row.get(column) instanceof Number mask) {
+                    counts.merge(mask.longValue(), 1L, Long::sum);
+                }
+            }
+        });
+        return counts;
+    }
+
+    private static boolean inRange(Object submittedAt, OffsetDateTime from, OffsetDateTime to) {
+        if (!(submittedAt instanceof OffsetDateTime time)) {
+            return false;
+        }
+        return (from == null || !time.isBefore(from)) && (to == null || time.isBefore(to));
+    }
+
+    // MIN/MAX over text-like columns, compared on decoded labels as SQL would
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Map<String, Object>> minMaxByLabel(FormDefinition form, List<Map<String, Object>> rows,
+                                                           List<String> groupBy, String target, String op) {
+        ResponseColumns.decodeRows(form, rows);
+        Map<List<Object>, Comparable> groups = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            List<Object> key = new ArrayList<>(groupBy.size());
+            for (String column : groupBy) {
+                key.add(row.get(column));
+            }
+            Object value = row.get(target);
+            Comparable candidate = value == null ? null
+                    : value instanceof Comparable c && !(value instanceof List) ? c : value.toString();
+            groups.merge(key, candidate == null ? NONE : candidate, (a, b) -> {
+                if (a == NONE) return b;
+                if (b == NONE) return a;
+                int cmp = a.compareTo(b);
+                return "MIN".equals(op) ? (cmp <= 0 ? a : b) : (cmp >= 0 ? a : b);
+            });
+        }
+        if (groupBy.isEmpty() && groups.isEmpty()) {
+            groups.put(List.of(), NONE);
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, Comparable> group : groups.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            if (!groupBy.isEmpty()) {
+                row.put("combined_selects", group.getKey().contains(null) ? null : joinLabels(group.getKey()));
+            }
+            row.put("result", group.getValue() == NONE ? null : group.getValue());
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static String joinLabels(List<Object> values) {
+        StringJoiner joiner = new StringJoiner("_");
+        for (Object value : values) {
+            joiner.add(value instanceof List<?> list
+                    ? list.stream().map(String::valueOf).collect(Collectors.joining(", ", "[", "]"))
+                    : value.toString());
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,338 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Question;
+import org.example.backend.model.ResponseType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Exports a form's responses as an Arrow IPC file for analysis tools
+ * (pyarrow, pandas, polars) that would otherwise re-parse the JSON results.
+ * Column types follow each question's {@link ResponseType}; choice answers
+ * are exported as their labels.
+ *
+ * Responses are streamed from the store's cursor one record batch at a time,
+ * so memory use is bounded by the batch size. The file is kept until the
+ * form's version or responses change and is sent with the container's
+ * sendfile support where available, otherwise with
+ * {@link FileChannel#transferTo}.
+ */
+@Service
+public class ArrowExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArrowExportService.class);
+
+    public static final String CONTENT_TYPE = "application/vnd.apache.arrow.file";
+
+    // Tomcat's sendfile request attributes (org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ResponseStoreRegistry responseStores;
+    private final Path directory;
+    private final int batchSize;
+    private final BufferAllocator allocator = new RootAllocator();
+
+    private final Map<Long, CachedExport> exports = new ConcurrentHashMap<>();
+    private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+
+    private final Timer exportTimer;
+    private final DistributionSummary exportBytes;
+    private final DistributionSummary exportRows;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    private record CachedExport(Path file, long version, ResponseStore.Watermark watermark, Path superseded) {
+    }
+
+    public ArrowExportService(ResponseStoreRegistry responseStores,
+                              MeterRegistry meterRegistry,
+                              @Value("${form.export.dir:exports}") String directory,
+                              @Value("${form.export.batch-size:8192}") int batchSize) {
+        this.responseStores = responseStores;
+        this.directory = Paths.get(directory);
+        this.batchSize = batchSize;
+
+        this.exportTimer = meterRegistry.timer("form.export.duration", "format", "arrow");
+        this.exportBytes = DistributionSummary.builder("form.export.bytes").tag("format", "arrow")
+                .baseUnit("bytes").register(meterRegistry);
+        this.exportRows = DistributionSummary.builder("form.export.rows").tag("format", "arrow")
+                .register(meterRegistry);
+        this.cacheHits = meterRegistry.counter("form.export.cache", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("form.export.cache", "result", "miss");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        // Exports of a previous run are not tracked and would never be reused
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".arrow")).forEach(ArrowExportService::deleteQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        allocator.close();
+    }
+
+    /** Path of an up-to-date export of the form's responses, writing one if needed. */
+    public Path export(FormDefinition form) {
+        Long formId = form.getFormId();
+        ResponseStore store = responseStores.forForm(form);
+        ResponseStore.Watermark watermark = store.watermark(formId);
+
+        CachedExport cached = exports.get(formId);
+        if (isCurrent(cached, form, watermark)) {
+            cacheHits.increment();
+            return cached.file();
+        }
+        synchronized (locks.computeIfAbsent(formId, id -> new Object())) {
+            cached = exports.get(formId);
+            if (isCurrent(cached, form, watermark)) {
+                cacheHits.increment();
+                return cached.file();
+            }
+            cacheMisses.increment();
+
+            Path file = directory.resolve(TablePerFormResponseStore.tableName(formId) + "_v" + form.getVersion()
+                    + "_" + watermark.maxId() + "_" + watermark.rows() + ".arrow");
+            long started = System.nanoTime();
+            long rows = write(form, store, file);
+            exportTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            exportRows.record(rows);
+            try {
+                exportBytes.record(Files.size(file));
+            } catch (IOException ignored) {
+                // Size is only reported
+            }
+
+            // The file this one replaces may still be in flight to a client; the one before it is not
+            if (cached != null) {
+                deleteQuietly(cached.superseded());
+            }
+            exports.put(formId, new CachedExport(file, form.getVersion(), watermark,
+                    cached != null ? cached.file() : null));
+            log.info("Exported {} responses of form {} to {}", rows, formId, file);
+            return file;
+        }
+    }
+
+    /** Writes an export file to the response, without copying it through the JVM heap. */
+    public void send(Path file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = Files.size(file);
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLengthLong(size);
+        response.setHeader("Content-Disposition", "attachment; filename=\""
+                + file.getFileName().toString().replaceFirst("_v.*", "") + ".arrow\"");
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The connector sends the file with sendfile(2) once the request returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static boolean isCurrent(CachedExport cached, FormDefinition form, ResponseStore.Watermark watermark) {
+        return cached != null && cached.version() == form.getVersion() && cached.watermark().equals(watermark)
+                && Files.exists(cached.file());
+    }
+
+    private long write(FormDefinition form, ResponseStore store, Path file) {
+        Schema schema = schema(form);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long[] rows = new long[1];
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+             FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             ArrowFileWriter writer = new ArrowFileWriter(root, null, channel, schema.getCustomMetadata())) {
+            writer.start();
+            store.scan(form.getFormId(), batchSize, batch -> {
+                ResponseColumns.decodeRows(form, batch);
+                root.allocateNew();
+                for (FieldVector vector : root.getFieldVectors()) {
+                    String column = vector.getName();
+                    for (int i = 0; i < batch.size(); i++) {
+                        Object value = batch.get(i).get(column);
+                        if (value != null) {
+                            set(vector, i, value);
+                        }
+                    }
+                }
+                root.setRowCount(batch.size());
+                try {
+                    writer.writeBatch();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0] += batch.size();
+            });
+            writer.end();
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e instanceof IOException io ? new UncheckedIOException("Failed to export form " + form.getFormId(), io)
+                    : (RuntimeException) e;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new UncheckedIOException("Failed to export form " + form.getFormId(), e);
+        }
+        return rows[0];
+    }
+
+    private static Schema schema(FormDefinition form) {
+        List<Field> fields = new ArrayList<>();
+        fields.add(Field.nullable("id", new ArrowType.Int(64, true)));
+        fields.add(Field.nullable("user_id", new ArrowType.Int(64, true)));
+        fields.add(Field.nullable("submitted_at", timestampType()));
+        for (Question question : form.getQuestions()) {
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put("question", question.getText() == null ? "" : question.getText());
+            if (question.getDataType() != null) {
+                metadata.put("data_type", question.getDataType());
+            }
+            String column = ResponseColumns.columnName(question);
+            ResponseType type = ResponseType.of(question);
+            if (type == ResponseType.CHOICE_MASK) {
+                Field item = Field.nullable("item", ArrowType.Utf8.INSTANCE);
+                fields.add(new Field(column, new FieldType(true, ArrowType.List.INSTANCE, null, metadata), List.of(item)));
+            } else {
+                fields.add(new Field(column, new FieldType(true, arrowType(type), null, metadata), null));
+            }
+        }
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("form_id", String.valueOf(form.getFormId()));
+        metadata.put("form_version", String.valueOf(form.getVersion()));
+        return new Schema(fields, metadata);
+    }
+
+    private static ArrowType arrowType(ResponseType type) {
+        return switch (type) {
+            case INTEGER -> new ArrowType.Int(64, true);
+            // NUMERIC has no fixed scale; analysis tools want floats anyway
+            case DECIMAL -> new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case BOOLEAN -> ArrowType.Bool.INSTANCE;
+            case DATE -> new ArrowType.Date(DateUnit.DAY);
+            case TIMESTAMP -> timestampType();
+            default -> ArrowType.Utf8.INSTANCE;
+        };
+    }
+
+    private static ArrowType timestampType() {
+        return new ArrowType.Timestamp(org.apache.arrow.vector.types.TimeUnit.MICROSECOND, "UTC");
+    }
+
+    // Values arrive typed from JDBC, or as JSON scalars from the JSONB engine
+    private static void set(FieldVector vector, int index, Object value) {
+        if (vector instanceof BigIntVector v) {
+            v.setSafe(index, value instanceof Number n ? n.longValue() : Long.parseLong(value.toString()));
+        } else if (vector instanceof Float8Vector v) {
+            v.setSafe(index, value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString()));
+        } else if (vector instanceof BitVector v) {
+            v.setSafe(index, Boolean.TRUE.equals(value) || "true".equalsIgnoreCase(value.toString()) ? 1 : 0);
+        } else if (vector instanceof DateDayVector v) {
+            v.setSafe(index, (int) toDate(value).toEpochDay());
+        } else if (vector instanceof TimeStampMicroTZVector v) {
+            Instant instant = toInstant(value);
+            v.setSafe(index, ChronoUnit.MICROS.between(Instant.EPOCH, instant));
+        } else if (vector instanceof ListVector v) {
+            VarCharVector items = (VarCharVector) v.getDataVector();
+            Collection<?> labels = value instanceof Collection<?> c ? c : List.of(value);
+            int offset = v.startNewValue(index);
+            int count = 0;
+            for (Object label : labels) {
+                items.setSafe(offset + count++, label.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            v.endValue(index, count);
+        } else if (vector instanceof VarCharVector v) {
+            v.setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static LocalDate toDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        return LocalDate.parse(value.toString().substring(0, 10));
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant();
+        }
+        if (value instanceof OffsetDateTime time) {
+            return time.toInstant();
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        if (value instanceof Number epochMillis) {
+            return Instant.ofEpochMilli(epochMillis.longValue());
+        }
+        return OffsetDateTime.parse(value.toString()).toInstant();
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file, e);
+        }
+    }
+}
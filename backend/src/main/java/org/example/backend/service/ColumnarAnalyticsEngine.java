@@ -0,0 +1,472 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.ResponseType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Answers report aggregates from {@link ColumnarSnapshot}s held in memory
+ * instead of sending every chart to PostgreSQL. Snapshots are refreshed with
+ * the rows stored since their last refresh, rebuilt when the form changes or
+ * after {@code rebuild-interval-ms} (to pick up rows whose ids committed out
+ * of order), and evicted least recently used first to stay within the byte
+ * budget. Results have the same shape as {@link ResponseStore#aggregate}.
+ */
+@Service
+public class ColumnarAnalyticsEngine {
+
+    private static final int ROWS_PER_TASK = 32_768;
+    private static final int LOAD_BATCH_SIZE = 8192;
+
+    private final ResponseStoreRegistry responseStores;
+    private final ForkJoinPool pool;
+    private final long maxBytes;
+    private final long refreshIntervalNanos;
+    private final long rebuildIntervalNanos;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final Timer refreshTimer;
+    private final Counter rowsLoaded;
+    private final Counter evictions;
+
+    public ColumnarAnalyticsEngine(ResponseStoreRegistry responseStores,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${form.analytics.max-bytes:268435456}") long maxBytes,
+                                   @Value("${form.analytics.refresh-interval-ms:2000}") long refreshIntervalMs,
+                                   @Value("${form.analytics.rebuild-interval-ms:600000}") long rebuildIntervalMs,
+                                   @Value("${form.analytics.parallelism:0}") int parallelism) {
+        this.responseStores = responseStores;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxBytes = maxBytes;
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+        this.rebuildIntervalNanos = TimeUnit.MILLISECONDS.toNanos(rebuildIntervalMs);
+
+        this.refreshTimer = meterRegistry.timer("form.analytics.refresh");
+        this.rowsLoaded = meterRegistry.counter("form.analytics.rows_loaded");
+        this.evictions = meterRegistry.counter("form.analytics.evictions");
+        Gauge.builder("form.analytics.bytes", this, e -> e.currentBytes).register(meterRegistry);
+        Gauge.builder("form.analytics.snapshots", this, e -> e.entries.size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Whether the aggregate can be answered here. COUNT works on any column;
+     * the other functions only on numeric ones, which leaves the database's
+     * text ordering and error reporting for the rest.
+     */
+    public boolean supports(FormDefinition form, String target, String op) {
+        if ("COUNT".equals(op)) {
+            return true;
+        }
+        if ("user_id".equals(target)) {
+            return true;
+        }
+        return ResponseType.of(ResponseColumns.question(form, target)).isNumeric();
+    }
+
+    /**
+     * Runs {@code op(target)} grouped by the given, already validated columns.
+     * Values have the types the SQL path returns: COUNT a Long, SUM and AVG a
+     * BigDecimal with PostgreSQL's scale, MIN and MAX the column's own type,
+     * and a single group-by column its typed value.
+     */
+    public List<Map<String, Object>> aggregate(FormDefinition form, List<String> groupBy, String target, String op) {
+        Entry entry = entryFor(form);
+        ReentrantReadWriteLock.ReadLock readLock = refresh(form, entry);
+        try {
+            return aggregate(entry.snapshot, groupBy, target, op);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /** Runs an aggregate over a snapshot the caller built and owns, without caching it. */
+    public List<Map<String, Object>> aggregate(ColumnarSnapshot snapshot, List<String> groupBy, String target, String op) {
+        ColumnarSnapshot.Column[] groupColumns = new ColumnarSnapshot.Column[groupBy.size()];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupColumns[i] = snapshot.column(groupBy.get(i));
+        }
+        ColumnarSnapshot.Column targetColumn = snapshot.column(target);
+        ColumnarSnapshot.NumericColumn numeric = null;
+        if (!"COUNT".equals(op)) {
+            if (!(targetColumn instanceof ColumnarSnapshot.NumericColumn n)) {
+                throw new IllegalArgumentException("Not a numeric column: " + target);
+            }
+            numeric = n;
+        }
+
+        Map<GroupKey, Accumulator> groups = pool.invoke(
+                new AggregateTask(groupColumns, targetColumn, numeric, 0, snapshot.getRowCount()));
+        return toRows(groups, groupColumns, numeric, op);
+    }
+
+    /** Drops a form's snapshot, e.g. once its responses are deleted. */
+    public synchronized void evict(Long formId) {
+        Entry removed = entries.remove(formId);
+        if (removed != null) {
+            currentBytes -= removed.bytes;
+        }
+    }
+
+    private synchronized Entry entryFor(FormDefinition form) {
+        Entry entry = entries.get(form.getFormId());
+        long now = System.nanoTime();
+        if (entry == null || entry.snapshot.getFormVersion() != form.getVersion()
+                || now - entry.createdNanos > rebuildIntervalNanos) {
+            if (entry != null) {
+                currentBytes -= entry.bytes;
+            }
+            entry = new Entry(new ColumnarSnapshot(form), now);
+            entries.put(form.getFormId(), entry);
+        }
+        return entry;
+    }
+
+    // Appends new rows if the snapshot is due, then downgrades to the read lock
+    private ReentrantReadWriteLock.ReadLock refresh(FormDefinition form, Entry entry) {
+        ReentrantReadWriteLock.WriteLock writeLock = entry.lock.writeLock();
+        writeLock.lock();
+        try {
+            ColumnarSnapshot snapshot = entry.snapshot;
+            long now = System.nanoTime();
+            if (!entry.loaded || now - snapshot.getLastRefreshNanos() > refreshIntervalNanos) {
+                refreshTimer.record(() -> {
+                    ResponseStore store = responseStores.forForm(form);
+                    if (entry.loaded) {
+                        List<Map<String, Object>> rows = store.findAfter(form.getFormId(), snapshot.getMaxResponseId());
+                        snapshot.append(rows);
+                        rowsLoaded.increment(rows.size());
+                    } else {
+                        // The first load streams, so only one batch of rows is held besides the columns
+                        store.scan(form.getFormId(), LOAD_BATCH_SIZE, batch -> {
+                            snapshot.append(batch);
+                            rowsLoaded.increment(batch.size());
+                        });
+                    }
+                });
+                snapshot.markRefreshed(now);
+                entry.loaded = true;
+                account(form.getFormId(), entry);
+            }
+            entry.lock.readLock().lock();
+            return entry.lock.readLock();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private synchronized void account(Long formId, Entry entry) {
+        if (entries.get(formId) != entry) {
+            return;
+        }
+        long bytes = entry.snapshot.estimatedBytes();
+        currentBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+
+        // Least recently used first; a snapshot larger than the whole budget
+        // still answers the query in flight but is not kept
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, Entry> eldest = it.next();
+            if (eldest.getValue() == entry && entries.size() > 1) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static List<Map<String, Object>> toRows(Map<GroupKey, Accumulator> groups,
+                                                    ColumnarSnapshot.Column[] groupColumns,
+                                                    ColumnarSnapshot.NumericColumn numeric, String op) {
+        if (groupColumns.length == 0 && groups.isEmpty()) {
+            groups = Map.of(new GroupKey(0), new Accumulator(-1, numeric));
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(groups.size());
+        for (Accumulator group : groups.values()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            if (groupColumns.length > 0) {
+                row.put("combined_selects", combinedSelects(groupColumns, group.firstRow));
+            }
+            row.put("result", group.result(op));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // One column is selected as is; several are cast to text and joined, so any null makes the whole label null
+    private static Object combinedSelects(ColumnarSnapshot.Column[] columns, int row) {
+        if (columns.length == 1) {
+            return columns[0].isNull(row) ? null : columns[0].value(row);
+        }
+        StringJoiner joiner = new StringJoiner("_");
+        for (ColumnarSnapshot.Column column : columns) {
+            String label = column.isNull(row) ? null : column.label(row);
+            if (label == null) {
+                return null;
+            }
+            joiner.add(label);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * {@code sum / count} as PostgreSQL's numeric division rounds it: at least
+     * 16 significant digits, and never fewer decimals than the sum has
+     * (select_div_scale in numeric.c).
+     */
+    static BigDecimal average(BigDecimal sum, long count) {
+        BigDecimal divisor = BigDecimal.valueOf(count);
+        int[] dividend = baseTenThousand(sum);
+        int[] quotient = baseTenThousand(divisor);
+        int weight = dividend[0] - quotient[0];
+        if (dividend[1] <= quotient[1]) {
+            weight--;
+        }
+        int scale = Math.min(Math.max(Math.max(16 - weight * 4, sum.scale()), 0), 1000);
+        return sum.divide(divisor, scale, RoundingMode.HALF_UP);
+    }
+
+    // Weight and value of the leading base-10000 digit, as PostgreSQL stores numerics
+    private static int[] baseTenThousand(BigDecimal value) {
+        if (value.signum() == 0) {
+            return new int[]{0, 0};
+        }
+        BigDecimal abs = value.abs();
+        int weight = Math.floorDiv(abs.precision() - abs.scale() - 1, 4);
+        return new int[]{weight, abs.movePointLeft(4 * weight).setScale(0, RoundingMode.DOWN).intValueExact()};
+    }
+
+    private static final class Entry {
+        final ColumnarSnapshot snapshot;
+        final long createdNanos;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        boolean loaded;
+        long bytes;
+
+        Entry(ColumnarSnapshot snapshot, long createdNanos) {
+            this.snapshot = snapshot;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Map<GroupKey, Accumulator>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnarSnapshot.Column[] groupColumns;
+        private final ColumnarSnapshot.Column target;
+        private final ColumnarSnapshot.NumericColumn numeric;
+        private final int from;
+        private final int to;
+
+        AggregateTask(ColumnarSnapshot.Column[] groupColumns, ColumnarSnapshot.Column target,
+                      ColumnarSnapshot.NumericColumn numeric, int from, int to) {
+            this.groupColumns = groupColumns;
+            this.target = target;
+            this.numeric = numeric;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<GroupKey, Accumulator> compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                AggregateTask left = new AggregateTask(groupColumns, target, numeric, from, mid);
+                left.fork();
+                Map<GroupKey, Accumulator> right = new AggregateTask(groupColumns, target, numeric, mid, to).compute();
+                return merge(left.join(), right);
+            }
+
+            Map<GroupKey, Accumulator> groups = new HashMap<>();
+            GroupKey probe = new GroupKey(groupColumns.length);
+            for (int row = from; row < to; row++) {
+                probe.load(groupColumns, row);
+                Accumulator acc = groups.get(probe);
+                if (acc == null) {
+                    acc = new Accumulator(row, numeric);
+                    groups.put(probe.copy(), acc);
+                }
+                if (!target.isNull(row)) {
+                    acc.add(row);
+                }
+            }
+            return groups;
+        }
+
+        private static Map<GroupKey, Accumulator> merge(Map<GroupKey, Accumulator> a, Map<GroupKey, Accumulator> b) {
+            Map<GroupKey, Accumulator> larger = a.size() >= b.size() ? a : b;
+            Map<GroupKey, Accumulator> smaller = larger == a ? b : a;
+            for (Map.Entry<GroupKey, Accumulator> group : smaller.entrySet()) {
+                larger.merge(group.getKey(), group.getValue(), Accumulator::combine);
+            }
+            return larger;
+        }
+    }
+
+    /**
+     * Group-by keys of one row. Nulls are tracked separately so that, as in
+     * SQL, they form their own groups.
+     */
+    private static final class GroupKey {
+        private final long[] values;
+        private long nullMask;
+        private int hash;
+
+        GroupKey(int size) {
+            this.values = new long[size];
+        }
+
+        void load(ColumnarSnapshot.Column[] columns, int row) {
+            int h = 1;
+            long mask = 0;
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].isNull(row)) {
+                    mask |= 1L << i;
+                    values[i] = 0;
+                } else {
+                    values[i] = columns[i].groupKey(row);
+                }
+                h = 31 * h + Long.hashCode(values[i]);
+            }
+            nullMask = mask;
+            hash = 31 * h + Long.hashCode(mask);
+        }
+
+        GroupKey copy() {
+            GroupKey copy = new GroupKey(values.length);
+            System.arraycopy(values, 0, copy.values, 0, values.length);
+            copy.nullMask = nullMask;
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupKey other && nullMask == other.nullMask && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * One group's running aggregate. Sums are unscaled longs at the column's
+     * scale until they overflow into a BigDecimal; MIN and MAX remember rows,
+     * so they come back with the value's own type and scale. The first row
+     * renders the group's label.
+     */
+    private static final class Accumulator {
+        final ColumnarSnapshot.NumericColumn column;
+        int firstRow;
+        long count;
+        long sum;
+        BigDecimal overflow;
+        int scale;
+        int minRow = -1;
+        int maxRow = -1;
+
+        Accumulator(int firstRow, ColumnarSnapshot.NumericColumn column) {
+            this.firstRow = firstRow;
+            this.column = column;
+        }
+
+        void add(int row) {
+            count++;
+            if (column == null) {
+                return;
+            }
+            if (column.isWide()) {
+                overflow = overflow == null ? column.decimal(row) : overflow.add(column.decimal(row));
+            } else {
+                addUnscaled(column.unscaled(row));
+            }
+            scale = Math.max(scale, column.scaleOf(row));
+            if (minRow < 0 || column.compare(row, minRow) < 0) {
+                minRow = row;
+            }
+            if (maxRow < 0 || column.compare(row, maxRow) > 0) {
+                maxRow = row;
+            }
+        }
+
+        private void addUnscaled(long value) {
+            try {
+                sum = Math.addExact(sum, value);
+            } catch (ArithmeticException e) {
+                BigDecimal carried = BigDecimal.valueOf(sum, column.scale());
+                overflow = overflow == null ? carried : overflow.add(carried);
+                sum = value;
+            }
+        }
+
+        static Accumulator combine(Accumulator a, Accumulator b) {
+            a.firstRow = Math.min(a.firstRow, b.firstRow);
+            a.count += b.count;
+            if (a.column == null) {
+                return a;
+            }
+            a.addUnscaled(b.sum);
+            if (b.overflow != null) {
+                a.overflow = a.overflow == null ? b.overflow : a.overflow.add(b.overflow);
+            }
+            a.scale = Math.max(a.scale, b.scale);
+            if (b.minRow >= 0 && (a.minRow < 0 || a.column.compare(b.minRow, a.minRow) < 0)) {
+                a.minRow = b.minRow;
+            }
+            if (b.maxRow >= 0 && (a.maxRow < 0 || a.column.compare(b.maxRow, a.maxRow) > 0)) {
+                a.maxRow = b.maxRow;
+            }
+            return a;
+        }
+
+        // Exact, with the largest scale among the summed values as PostgreSQL gives it
+        BigDecimal sum() {
+            BigDecimal total = BigDecimal.valueOf(sum, column.scale());
+            if (overflow != null) {
+                total = total.add(overflow);
+            }
+            return total.setScale(scale, RoundingMode.UNNECESSARY);
+        }
+
+        Object result(String op) {
+            if ("COUNT".equals(op)) {
+                return count;
+            }
+            if (count == 0) {
+                return null;
+            }
+            return switch (op) {
+                case "SUM" -> sum();
+                case "AVG" -> average(sum(), count);
+                case "MIN" -> column.value(minRow);
+                case "MAX" -> column.value(maxRow);
+                default -> throw new IllegalArgumentException("Invalid aggregate function: " + op);
+            };
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package org.example.backend.service;
+
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Question;
+import org.example.backend.model.ResponseType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * In-memory columnar copy of one form version's responses. Number, date and
+ * timestamp columns are {@code long[]}, BOOLEAN columns a pair of bitsets,
+ * choice-coded columns their stored codes or checkbox masks, and everything
+ * else a dictionary-encoded {@code int[]}; nulls are tracked in bitsets. Rows are only
+ * ever appended, so a snapshot can be refreshed with the responses stored
+ * after {@link #getMaxResponseId()}.
+ *
+ * Not thread-safe; {@link ColumnarAnalyticsEngine} guards each snapshot with a
+ * read/write lock.
+ */
+public class ColumnarSnapshot {
+
+    private final Long formId;
+    private final long formVersion;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private int rowCount;
+    private long maxResponseId;
+    private long lastRefreshNanos;
+
+    public ColumnarSnapshot(FormDefinition form) {
+        this.formId = form.getFormId();
+        this.formVersion = form.getVersion();
+        columns.put("user_id", new NumericColumn(true));
+        for (Question question : form.getQuestions()) {
+            Column column = switch (ResponseType.of(question)) {
+                case INTEGER -> new NumericColumn(true);
+                case DECIMAL -> new NumericColumn(false);
+                case BOOLEAN -> new BooleanColumn();
+                case DATE -> new DateColumn();
+                case TIMESTAMP -> new TimestampColumn();
+                case CHOICE_CODE -> new ChoiceColumn(question.getChoiceCodes());
+                case CHOICE_MASK -> new MaskColumn(question.getChoiceCodes());
+                default -> new DictionaryColumn();
+            };
+            columns.put(ResponseColumns.columnName(question), column);
+        }
+    }
+
+    public Long getFormId() {
+        return formId;
+    }
+
+    public long getFormVersion() {
+        return formVersion;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getMaxResponseId() {
+        return maxResponseId;
+    }
+
+    public long getLastRefreshNanos() {
+        return lastRefreshNanos;
+    }
+
+    public void markRefreshed(long nanos) {
+        this.lastRefreshNanos = nanos;
+    }
+
+    public Column column(String name) {
+        return columns.get(name);
+    }
+
+    /** Appends rows as returned by {@link ResponseStore#findAfter} or {@link ResponseStore#scan}. */
+    public void append(List<Map<String, Object>> rows) {
+        for (Map<String, Object> row : rows) {
+            int index = rowCount++;
+            for (Map.Entry<String, Column> column : columns.entrySet()) {
+                column.getValue().set(index, row.get(column.getKey()));
+            }
+            Object id = row.get("id");
+            if (id instanceof Number n) {
+                maxResponseId = Math.max(maxResponseId, n.longValue());
+            }
+        }
+    }
+
+    public long estimatedBytes() {
+        long bytes = 128;
+        for (Column column : columns.values()) {
+            bytes += column.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * One response column. Group keys are longs: dictionary codes, 0/1 for
+     * booleans, unscaled numbers and epoch days or microseconds. Values come
+     * back typed as the JDBC driver returns the SQL path's select expression,
+     * and labels as PostgreSQL casts them to text when concatenating keys.
+     */
+    public abstract static class Column {
+        protected final BitSet nulls = new BitSet();
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        public abstract long groupKey(int row);
+
+        public abstract Object value(int row);
+
+        public String label(int row) {
+            Object value = value(row);
+            return value != null ? value.toString() : null;
+        }
+
+        abstract void set(int row, Object value);
+
+        abstract long estimatedBytes();
+    }
+
+    /**
+     * BIGINT and NUMERIC columns. Values are kept unscaled at the largest
+     * scale seen so far, with each NUMERIC's own scale alongside, so sums are
+     * exact and results carry the scale PostgreSQL would give them. A NUMERIC
+     * that no longer fits a long at that scale switches the column to
+     * {@code BigDecimal}s, keyed by dictionary code.
+     */
+    static final class NumericColumn extends Column {
+        private static final int MAX_SCALE = 18;
+
+        private final boolean integral;
+        private long[] values = new long[64];
+        private byte[] scales;
+        private int scale;
+        private BigDecimal[] wide;
+        private Map<BigDecimal, Long> wideKeys;
+
+        NumericColumn(boolean integral) {
+            this.integral = integral;
+            this.scales = integral ? null : new byte[64];
+        }
+
+        boolean isWide() {
+            return wide != null;
+        }
+
+        /** Scale of {@link #unscaled}, the same for every row. */
+        int scale() {
+            return scale;
+        }
+
+        long unscaled(int row) {
+            return values[row];
+        }
+
+        int scaleOf(int row) {
+            return integral ? 0 : wide != null ? wide[row].scale() : scales[row];
+        }
+
+        BigDecimal decimal(int row) {
+            if (wide != null) {
+                return wide[row];
+            }
+            return integral ? BigDecimal.valueOf(values[row])
+                    : BigDecimal.valueOf(values[row], scale).setScale(scales[row], RoundingMode.UNNECESSARY);
+        }
+
+        int compare(int a, int b) {
+            return wide != null ? wide[a].compareTo(wide[b]) : Long.compare(values[a], values[b]);
+        }
+
+        @Override
+        public long groupKey(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object value(int row) {
+            return integral ? (Object) values[row] : decimal(row);
+        }
+
+        @Override
+        public String label(int row) {
+            return integral ? Long.toString(values[row]) : decimal(row).toPlainString();
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+                scales = scales != null ? Arrays.copyOf(scales, values.length) : null;
+                wide = wide != null ? Arrays.copyOf(wide, values.length) : null;
+            }
+            BigDecimal decimal = toDecimal(value);
+            if (decimal == null) {
+                nulls.set(row);
+                return;
+            }
+            if (integral) {
+                try {
+                    values[row] = decimal.longValueExact();
+                } catch (ArithmeticException e) {
+                    nulls.set(row);
+                }
+                return;
+            }
+            if (decimal.scale() < 0) {
+                decimal = decimal.setScale(0);
+            }
+            if (wide == null && !fits(row, decimal)) {
+                widen(row);
+            }
+            if (wide != null) {
+                wide[row] = decimal;
+                values[row] = wideKeys.computeIfAbsent(decimal.stripTrailingZeros(), k -> (long) wideKeys.size());
+            }
+        }
+
+        // Rescales the rows before this one first if the value has more decimals than any so far
+        private boolean fits(int row, BigDecimal decimal) {
+            if (decimal.scale() > MAX_SCALE) {
+                return false;
+            }
+            try {
+                if (decimal.scale() > scale) {
+                    long factor = BigDecimal.ONE.movePointRight(decimal.scale() - scale).longValueExact();
+                    long[] rescaled = new long[values.length];
+                    for (int i = 0; i < row; i++) {
+                        rescaled[i] = Math.multiplyExact(values[i], factor);
+                    }
+                    values = rescaled;
+                    scale = decimal.scale();
+                }
+                values[row] = decimal.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+                scales[row] = (byte) decimal.scale();
+                return true;
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+
+        private void widen(int row) {
+            BigDecimal[] decimals = new BigDecimal[values.length];
+            for (int i = 0; i < row; i++) {
+                if (!nulls.get(i)) {
+                    decimals[i] = decimal(i);
+                }
+            }
+            wide = decimals;
+            wideKeys = new HashMap<>();
+            for (int i = 0; i < row; i++) {
+                if (decimals[i] != null) {
+                    values[i] = wideKeys.computeIfAbsent(decimals[i].stripTrailingZeros(), k -> (long) wideKeys.size());
+                }
+            }
+            scales = null;
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = 8L * values.length + nulls.size() / 8;
+            if (scales != null) {
+                bytes += scales.length;
+            }
+            if (wide != null) {
+                bytes += 72L * wide.length + 64L * wideKeys.size();
+            }
+            return bytes;
+        }
+
+        private static BigDecimal toDecimal(Object value) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return value instanceof BigDecimal d ? d : new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        @Override
+        public long groupKey(int row) {
+            return values.get(row) ? 1 : 0;
+        }
+
+        @Override
+        public Object value(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value == null) {
+                nulls.set(row);
+            } else if (value instanceof Boolean b ? b : Boolean.parseBoolean(value.toString())) {
+                values.set(row);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return (values.size() + nulls.size()) / 8;
+        }
+    }
+
+    // Epoch days, returned as java.sql.Date like the driver does for DATE
+    static final class DateColumn extends Column {
+        private long[] days = new long[64];
+
+        @Override
+        public long groupKey(int row) {
+            return days[row];
+        }
+
+        @Override
+        public Object value(int row) {
+            return java.sql.Date.valueOf(LocalDate.ofEpochDay(days[row]));
+        }
+
+        @Override
+        public String label(int row) {
+            return LocalDate.ofEpochDay(days[row]).toString();
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= days.length) {
+                days = Arrays.copyOf(days, days.length * 2);
+            }
+            try {
+                if (value instanceof java.sql.Date d) {
+                    days[row] = d.toLocalDate().toEpochDay();
+                } else if (value instanceof LocalDate d) {
+                    days[row] = d.toEpochDay();
+                } else if (value != null) {
+                    days[row] = LocalDate.parse(value.toString().trim()).toEpochDay();
+                } else {
+                    nulls.set(row);
+                }
+            } catch (DateTimeParseException e) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * days.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Epoch microseconds, PostgreSQL's TIMESTAMPTZ precision. Labels use the
+     * JVM's time zone, which the JDBC driver sets as the session's, in the
+     * {@code timestamptz} text format.
+     */
+    static final class TimestampColumn extends Column {
+        private static final DateTimeFormatter TEXT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        private long[] micros = new long[64];
+
+        @Override
+        public long groupKey(int row) {
+            return micros[row];
+        }
+
+        @Override
+        public Object value(int row) {
+            return Timestamp.from(instant(row));
+        }
+
+        @Override
+        public String label(int row) {
+            ZonedDateTime time = instant(row).atZone(ZoneId.systemDefault());
+            StringBuilder text = new StringBuilder(TEXT.format(time));
+            if (time.getNano() != 0) {
+                String fraction = String.format("%06d", time.getNano() / 1000);
+                text.append('.').append(fraction.replaceFirst("0+$", ""));
+            }
+            int offset = time.getOffset().getTotalSeconds();
+            text.append(offset < 0 ? '-' : '+');
+            offset = Math.abs(offset);
+            text.append(String.format("%02d", offset / 3600));
+            if (offset % 3600 != 0) {
+                text.append(String.format(":%02d", offset / 60 % 60));
+                if (offset % 60 != 0) {
+                    text.append(String.format(":%02d", offset % 60));
+                }
+            }
+            return text.toString();
+        }
+
+        private Instant instant(int row) {
+            return Instant.ofEpochSecond(Math.floorDiv(micros[row], 1_000_000L),
+                    Math.floorMod(micros[row], 1_000_000L) * 1000);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= micros.length) {
+                micros = Arrays.copyOf(micros, micros.length * 2);
+            }
+            Instant instant;
+            try {
+                instant = value instanceof Timestamp t ? t.toInstant()
+                        : value instanceof OffsetDateTime t ? t.toInstant()
+                        : value instanceof Instant t ? t
+                        : value != null ? OffsetDateTime.parse(value.toString().trim()).toInstant()
+                        : null;
+            } catch (DateTimeParseException e) {
+                instant = null;
+            }
+            if (instant == null) {
+                nulls.set(row);
+                return;
+            }
+            // Rounded to the microsecond as PostgreSQL stores it
+            micros[row] = instant.getEpochSecond() * 1_000_000L + (instant.getNano() + 500) / 1000;
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * micros.length + nulls.size() / 8;
+        }
+    }
+
+    static final class DictionaryColumn extends Column {
+        private int[] codes = new int[64];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private long dictionaryBytes;
+
+        @Override
+        public long groupKey(int row) {
+            return codes[row];
+        }
+
+        @Override
+        public Object value(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+            }
+            if (value == null) {
+                nulls.set(row);
+                return;
+            }
+            String text = value.toString();
+            Integer code = index.get(text);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(text);
+                index.put(text, code);
+                dictionaryBytes += 64 + 2L * text.length();
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 4L * codes.length + nulls.size() / 8 + dictionaryBytes;
+        }
+    }
+
+    // Already dictionary-encoded in storage: keeps the codes, decodes labels per group
+    static final class ChoiceColumn extends Column {
+        private int[] codes = new int[64];
+        private final Map<Integer, String> labels;
+
+        ChoiceColumn(Map<Integer, String> labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        public long groupKey(int row) {
+            return codes[row];
+        }
+
+        // Null for a code without a label, like the SQL CASE without an ELSE
+        @Override
+        public Object value(int row) {
+            return labels.get(codes[row]);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+            }
+            if (value instanceof Number n) {
+                codes[row] = n.intValue();
+            } else {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 4L * codes.length + nulls.size() / 8;
+        }
+    }
+
+    // Checkbox answers: one stored mask per row, grouped on the whole mask
+    static final class MaskColumn extends Column {
+        private long[] masks = new long[64];
+        private final Map<Integer, String> labels;
+
+        MaskColumn(Map<Integer, String> labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        public long groupKey(int row) {
+            return masks[row];
+        }
+
+        // Bits without a label are skipped, as concat_ws skips their NULL
+        @Override
+        public Object value(int row) {
+            StringJoiner joiner = new StringJoiner(", ", "[", "]");
+            for (long rest = masks[row]; rest != 0; rest &= rest - 1) {
+                String label = labels.get(Long.numberOfTrailingZeros(rest));
+                if (label != null) {
+                    joiner.add(label);
+                }
+            }
+            return joiner.toString();
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= masks.length) {
+                masks = Arrays.copyOf(masks, masks.length * 2);
+            }
+            if (value instanceof Number n) {
+                masks[row] = n.longValue();
+            } else {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * masks.length + nulls.size() / 8;
+        }
+    }
+}
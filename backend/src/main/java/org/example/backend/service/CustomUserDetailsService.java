@@ -1,9 +1,14 @@
 package org.example.backend.service;
 
+import org.example.backend.dto.PagedResponse;
+import org.example.backend.dto.UserSummary;
 import org.example.backend.model.CustomUserDetail;
 import org.example.backend.model.User;
 import org.example.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
@@ -15,6 +20,9 @@ import java.util.ArrayList;
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+    private static final int TRIGRAM_MIN_LENGTH = 3;
+
     private final UserRepository repo;
 
     @Autowired
@@ -35,21 +43,46 @@ public class CustomUserDetailsService implements UserDetailsService {
      * @return List of maps containing user ID and username
      */
     public List<Map<String, Object>> getAllUsersId() {
-        List<User> users = repo.findAll();
+        List<UserSummary> users = repo.findAllSummaries();
         List<Map<String, Object>> userDetailsList = new ArrayList<>();
-        
-        if (users != null) {
-            for (User user : users) {
-                Map<String, Object> userDetail = new HashMap<>();
-                userDetail.put("id", user.getId());
-                userDetail.put("username", user.getUsername());
-                userDetailsList.add(userDetail);
-            }
+
+        for (UserSummary user : users) {
+            Map<String, Object> userDetail = new HashMap<>();
+            userDetail.put("id", user.id());
+            userDetail.put("username", user.username());
+            userDetailsList.add(userDetail);
         }
-        
+
         return userDetailsList;
     }
 
+    /**
+     * Search users by username or display name for the sharing dialog.
+     * Short queries match a username prefix; longer ones match a substring
+     * of the username or name through the trigram indexes.
+     * @param query Search text
+     * @param page Zero-based page index
+     * @param size Page size
+     * @return Page of projected users, ordered by username
+     */
+    public PagedResponse<UserSummary> searchUsers(String query, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page request");
+        }
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("username"));
+        String term = escapeLike(query == null ? "" : query.trim().toLowerCase());
+
+        // Trigrams need at least three characters to narrow anything down
+        Page<UserSummary> result = term.length() < TRIGRAM_MIN_LENGTH
+                ? repo.searchByUsernamePrefix(term, pageRequest)
+                : repo.searchByUsernameOrName(term, pageRequest);
+        return PagedResponse.of(result.getContent(), page, size, result.getTotalElements());
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     /**
      * Get user by ID
      * @param id User ID
@@ -0,0 +1,246 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.dto.SubmissionDraft;
+import org.example.backend.model.FormDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side drafts of form responses, one per user and form.
+ *
+ * Autosaves are merged in memory and written to {@code submission_drafts}
+ * at most once per flush interval, or straight away when the client asks
+ * for it (e.g. on a page change), so typing does not turn into a write per
+ * keystroke. The ratio of {@code form.drafts.writes} to
+ * {@code form.drafts.saves} is the resulting write amplification.
+ *
+ * Flushes and loads of the same draft are serialized by a striped lock, so a
+ * later patch is never overwritten by an earlier one and a load sees every
+ * patch either in the table or still pending. A patch stays pending until its
+ * write succeeds. Pending patches live only on the instance that received
+ * them and are flushed on shutdown.
+ */
+@Service
+public class DraftService {
+
+    private static final Logger log = LoggerFactory.getLogger(DraftService.class);
+
+    private static final TypeReference<LinkedHashMap<String, Object>> ANSWERS = new TypeReference<>() {};
+    private static final int LOCK_STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final FormDefinitionCache formDefinitionCache;
+    private final long ttlDays;
+
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final Object[] flushLocks = new Object[LOCK_STRIPES];
+
+    private final Counter saves;
+    private final Counter writes;
+
+    private record Key(long formId, long userId) {
+    }
+
+    /** Answers changed since the last flush; guarded by its own monitor. */
+    private static final class Pending {
+        final Map<String, Object> answers = new LinkedHashMap<>();
+        Integer page;
+        // Bumped by every save, so a flush can tell whether it wrote the latest patch
+        long version;
+    }
+
+    public DraftService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, FormDefinitionCache formDefinitionCache,
+                        MeterRegistry meterRegistry, @Value("${form.drafts.ttl-days:30}") long ttlDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.formDefinitionCache = formDefinitionCache;
+        this.ttlDays = ttlDays;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            flushLocks[i] = new Object();
+        }
+        this.saves = meterRegistry.counter("form.drafts.saves");
+        this.writes = meterRegistry.counter("form.drafts.writes");
+        Gauge.builder("form.drafts.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Merges changed answers (and the page the user is on) into the draft.
+     * With {@code flush} the draft is written before returning, otherwise by
+     * the next scheduled flush.
+     */
+    public void save(Long formId, Long userId, Map<String, Object> answers, Integer page, boolean flush) {
+        FormDefinition definition = formDefinitionCache.get(formId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Form not found: " + formId);
+        }
+        if (answers != null) {
+            for (String column : answers.keySet()) {
+                if (!column.startsWith("question_") || definition.getQuestion(questionId(column)) == null) {
+                    throw new IllegalArgumentException("Unknown question: " + column);
+                }
+            }
+        }
+        Key key = new Key(formId, userId);
+        saves.increment();
+        while (true) {
+            Pending draft = pending.computeIfAbsent(key, k -> new Pending());
+            synchronized (draft) {
+                // A flush may have taken this one off the map meanwhile
+                if (pending.get(key) != draft) {
+                    continue;
+                }
+                if (answers != null) {
+                    draft.answers.putAll(answers);
+                }
+                if (page != null) {
+                    draft.page = page;
+                }
+                draft.version++;
+            }
+            break;
+        }
+        if (flush) {
+            flush(key);
+        }
+    }
+
+    /** The draft with patches not yet flushed applied, or {@code null} if there is none. */
+    public SubmissionDraft load(Long formId, Long userId) {
+        Key key = new Key(formId, userId);
+        List<SubmissionDraft> rows;
+        Pending draft;
+        // Not in the middle of a flush of this draft, which could hide its patch from both reads
+        synchronized (lockFor(key)) {
+            rows = jdbcTemplate.query(
+                    "SELECT answers, page FROM submission_drafts WHERE form_id = ? AND user_id = ?",
+                    (rs, rowNum) -> new SubmissionDraft(decode(rs.getString("answers")),
+                            (Integer) rs.getObject("page")), formId, userId);
+            draft = pending.get(key);
+        }
+        if (rows.isEmpty() && draft == null) {
+            return null;
+        }
+        Map<String, Object> answers = rows.isEmpty() ? new LinkedHashMap<>() : rows.get(0).answers();
+        Integer page = rows.isEmpty() ? null : rows.get(0).page();
+        if (draft != null) {
+            synchronized (draft) {
+                answers.putAll(draft.answers);
+                if (draft.page != null) {
+                    page = draft.page;
+                }
+            }
+        }
+        return new SubmissionDraft(answers, page);
+    }
+
+    /** Drops the draft, e.g. once it has been submitted. */
+    public void discard(Long formId, Long userId) {
+        Key key = new Key(formId, userId);
+        synchronized (lockFor(key)) {
+            pending.remove(key);
+            jdbcTemplate.update("DELETE FROM submission_drafts WHERE form_id = ? AND user_id = ?", formId, userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${form.drafts.flush-interval-ms:5000}")
+    public void flushPending() {
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            try {
+                flush(key);
+            } catch (Exception e) {
+                log.error("Failed to flush draft of form {} for user {}", key.formId(), key.userId(), e);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${form.drafts.expire-initial-delay-ms:60000}",
+            fixedDelayString = "${form.drafts.expire-interval-ms:3600000}")
+    public void expireStale() {
+        int expired = jdbcTemplate.update(
+                "DELETE FROM submission_drafts WHERE updated_at < now() - ? * interval '1 day'", ttlDays);
+        if (expired > 0) {
+            log.info("Expired {} drafts not touched for {} days", expired, ttlDays);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushPending();
+    }
+
+    private void flush(Key key) {
+        synchronized (lockFor(key)) {
+            Pending draft = pending.get(key);
+            if (draft == null) {
+                return;
+            }
+            String answers;
+            Integer page;
+            long version;
+            synchronized (draft) {
+                answers = encode(draft.answers);
+                page = draft.page;
+                version = draft.version;
+            }
+            jdbcTemplate.update(
+                    "INSERT INTO submission_drafts (form_id, user_id, answers, page) VALUES (?, ?, ?::jsonb, ?) " +
+                    "ON CONFLICT (form_id, user_id) DO UPDATE SET " +
+                    "answers = submission_drafts.answers || EXCLUDED.answers, " +
+                    "page = COALESCE(EXCLUDED.page, submission_drafts.page), updated_at = now()",
+                    key.formId(), key.userId(), answers, page);
+            writes.increment();
+            synchronized (draft) {
+                // Saved to meanwhile: keep it all, the next flush writes the newer values over these
+                if (draft.version == version) {
+                    pending.remove(key, draft);
+                }
+            }
+        }
+    }
+
+    private Object lockFor(Key key) {
+        return flushLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static Long questionId(String column) {
+        try {
+            return Long.parseLong(column.substring("question_".length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private String encode(Map<String, Object> answers) {
+        try {
+            return objectMapper.writeValueAsString(answers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to encode draft: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> decode(String answers) {
+        try {
+            return objectMapper.readValue(answers, ANSWERS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt draft: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.config.DataSourceRouting;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.repository.FormRepository;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers "may user U fill form F?" from per-form allowed-user bitmaps kept
+ * in memory. Bitmaps are loaded lazily from form_allowed_users and patched
+ * with sharing deltas after commit, so the check never needs a database
+ * round trip once a form is warm.
+ *
+ * A form that has never been shared is open to every signed-in user, which
+ * is how forms behaved before sharing was enforced. The first grant marks the
+ * form restricted ({@link org.example.backend.model.Form#getRestricted()});
+ * from then on only the owner and the granted users may read or fill it, even
+ * after the last of them is revoked.
+ *
+ * Deltas only reach the instance that applied them, so a bitmap older than
+ * {@code form.acl.ttl-ms} is reloaded before it answers again; grants and
+ * revocations made through another instance take effect within that time.
+ */
+@Service
+public class FormAccessService {
+
+    private final FormRepository formRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate separateReadOnlyTx;
+    private final int maxForms;
+    private final long ttlNanos;
+
+    /** Access list of one form; never mutated once published, deltas swap in a patched copy. */
+    private record Acl(boolean restricted, Roaring64Bitmap users, long loadedAt) {
+    }
+
+    private final Map<Long, Acl> acls = new ConcurrentHashMap<>();
+
+    private final Counter loads;
+    private final Counter denials;
+
+    public FormAccessService(FormRepository formRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${form.acl.max-forms:20000}") int maxForms,
+                             @Value("${form.acl.ttl-ms:30000}") long ttlMs) {
+        this.formRepository = formRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // Own connection, so a load cannot join a caller's read-only transaction on a replica
+        this.separateReadOnlyTx = new TransactionTemplate(transactionManager);
+        this.separateReadOnlyTx.setReadOnly(true);
+        this.separateReadOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxForms = maxForms;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+
+        this.loads = meterRegistry.counter("form.acl.loads");
+        this.denials = meterRegistry.counter("form.acl.denials");
+        Gauge.builder("form.acl.forms", acls, Map::size).register(meterRegistry);
+    }
+
+    public boolean canFill(FormDefinition form, Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        if (userId.equals(form.getOwnerId())) {
+            return true;
+        }
+        Acl acl = acls.get(form.getFormId());
+        if (acl == null || !isFresh(acl)) {
+            acl = load(form.getFormId());
+        }
+        boolean permitted = !acl.restricted() || acl.users().contains(userId);
+        if (!permitted) {
+            denials.increment();
+        }
+        return permitted;
+    }
+
+    /**
+     * Applies granted user ids to the cached bitmap once the surrounding
+     * transaction commits (immediately when there is none). A grant always
+     * leaves the form restricted.
+     */
+    public void onGranted(Long formId, Collection<Long> userIds) {
+        afterCommit(() -> acls.computeIfPresent(formId, (id, current) -> {
+            Roaring64Bitmap updated = current.users().clone();
+            userIds.forEach(updated::addLong);
+            return new Acl(true, updated, current.loadedAt());
+        }));
+    }
+
+    public void onRevoked(Long formId, Collection<Long> userIds) {
+        afterCommit(() -> acls.computeIfPresent(formId, (id, current) -> {
+            Roaring64Bitmap updated = current.users().clone();
+            userIds.forEach(updated::removeLong);
+            return new Acl(current.restricted(), updated, current.loadedAt());
+        }));
+    }
+
+    private Acl load(Long formId) {
+        if (acls.size() >= maxForms && !acls.containsKey(formId)) {
+            // Memory bound: drop an arbitrary entry, it is reloaded on demand
+            Iterator<Long> it = acls.keySet().iterator();
+            if (it.hasNext()) {
+                acls.remove(it.next());
+            }
+        }
+        // compute serializes the load with concurrent deltas for this form, and with
+        // other threads reloading it. Patched by later deltas, so never loaded from a lagging replica
+        TransactionTemplate tx = TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? separateReadOnlyTx : readOnlyTx;
+        return acls.compute(formId, (id, current) -> current != null && isFresh(current) ? current
+                : DataSourceRouting.onPrimary(() -> tx.execute(status -> fetch(id))));
+    }
+
+    private Acl fetch(Long formId) {
+        loads.increment();
+        Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        for (Long userId : formRepository.findAllowedUserIds(formId)) {
+            bitmap.addLong(userId);
+        }
+        bitmap.runOptimize();
+        return new Acl(formRepository.findRestrictedById(formId).orElse(false), bitmap, System.nanoTime());
+    }
+
+    private boolean isFresh(Acl acl) {
+        return System.nanoTime() - acl.loadedAt() < ttlNanos;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the responses of expired forms out of PostgreSQL into compressed
+ * {@link ResponseArchive} files and back when a form is reactivated.
+ *
+ * Archiving exports the table through a server-side cursor, then, holding an
+ * exclusive lock on the table, checks that no row arrived meanwhile, switches
+ * the form to the {@link ArchivedResponseStore} engine and drops the table in
+ * one transaction. The file is synced and read back before the table is
+ * dropped. Restoring recreates the table from the current questions, copies
+ * the rows back and switches the engine back to TABLE.
+ *
+ * Off by default: archives are local files, so {@code form.archive.dir} must
+ * be an absolute path on storage that outlives the container, and archived
+ * forms can only be read on the instance holding their file.
+ */
+@Service
+public class FormArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(FormArchiver.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchivedResponseStore archiveStore;
+    private final TablePerFormResponseStore tableStore;
+    private final FormDefinitionCache formDefinitionCache;
+    private final ColumnarAnalyticsEngine columnarEngine;
+
+    private final boolean enabled;
+    private final int rowsPerGroup;
+    private final int fetchSize;
+    private final long lockTimeoutMs;
+
+    private final ExecutorService restoreExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "form-restore");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Long> restoring = Collections.synchronizedSet(new HashSet<>());
+
+    private final Timer exportTimer;
+    private final Timer restoreTimer;
+    private final Counter archived;
+    private final Counter archiveBytes;
+
+    public FormArchiver(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        ArchivedResponseStore archiveStore,
+                        TablePerFormResponseStore tableStore,
+                        FormDefinitionCache formDefinitionCache,
+                        ColumnarAnalyticsEngine columnarEngine,
+                        MeterRegistry meterRegistry,
+                        @Value("${form.archive.enabled:false}") boolean enabled,
+                        @Value("${form.archive.rows-per-group:65536}") int rowsPerGroup,
+                        @Value("${form.archive.fetch-size:5000}") int fetchSize,
+                        @Value("${form.archive.lock-timeout-ms:5000}") long lockTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveStore = archiveStore;
+        this.tableStore = tableStore;
+        this.formDefinitionCache = formDefinitionCache;
+        this.columnarEngine = columnarEngine;
+        this.enabled = enabled;
+        this.rowsPerGroup = rowsPerGroup;
+        this.fetchSize = fetchSize;
+        this.lockTimeoutMs = lockTimeoutMs;
+        if (enabled && !archiveStore.getDirectory().isAbsolute()) {
+            // A relative directory usually sits inside the container, and goes with it
+            throw new IllegalStateException("form.archive.dir must be an absolute path on persistent storage "
+                    + "when form.archive.enabled is true, not " + archiveStore.getDirectory());
+        }
+
+        this.exportTimer = meterRegistry.timer("form.archive.export");
+        this.restoreTimer = meterRegistry.timer("form.archive.restore");
+        this.archived = meterRegistry.counter("form.archive.archived");
+        this.archiveBytes = meterRegistry.counter("form.archive.bytes");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        restoreExecutor.shutdownNow();
+    }
+
+    @Scheduled(initialDelayString = "${form.archive.initial-delay-ms:60000}",
+               fixedDelayString = "${form.archive.check-interval-ms:3600000}")
+    public void archiveExpiredForms() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> formIds = jdbcTemplate.queryForList(
+                "SELECT id FROM form WHERE is_expired = true AND (storage_engine IS NULL OR storage_engine = ?) " +
+                "AND to_regclass('form_' || id) IS NOT NULL", Long.class, TablePerFormResponseStore.ENGINE);
+        for (Long formId : formIds) {
+            try {
+                archive(formId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to archive form {}: {}", formId, e.getMessage());
+            }
+        }
+    }
+
+    public void archive(Long formId) {
+        String table = TablePerFormResponseStore.tableName(formId);
+        Path file = archiveStore.archivePath(formId);
+
+        long started = System.nanoTime();
+        // Cursor-based fetching needs a transaction in PostgreSQL
+        Long exported = transactionTemplate.execute(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT * FROM " + table + " ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            try {
+                return ResponseArchive.write(rs, file, rowsPerGroup);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        exportTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        try {
+            verify(file, exported);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                jdbcTemplate.execute("LOCK TABLE " + table + " IN ACCESS EXCLUSIVE MODE");
+                Long current = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+                if (!Objects.equals(current, exported)) {
+                    throw new IllegalStateException("responses arrived during export, will retry");
+                }
+                int switched = jdbcTemplate.update(
+                        "UPDATE form SET storage_engine = ? WHERE id = ? AND is_expired = true",
+                        ArchivedResponseStore.ENGINE, formId);
+                if (switched != 1) {
+                    throw new IllegalStateException("form is no longer expired");
+                }
+                jdbcTemplate.execute("DROP TABLE " + table);
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+
+        archiveStore.release(formId);
+        columnarEngine.evict(formId);
+        formDefinitionCache.invalidate(formId);
+        archived.increment();
+        try {
+            archiveBytes.increment(Files.size(file));
+        } catch (IOException ignored) {
+            // Size is only reported
+        }
+        log.info("Archived {} responses of form {} to {}", exported, formId, file);
+    }
+
+    // Reads the written file back in full; the table is only dropped if every row is there
+    private static void verify(Path file, long exported) {
+        try {
+            ResponseArchive.Reader reader = ResponseArchive.open(file);
+            long[] rows = {0};
+            reader.forEachGroup(group -> rows[0] += group.size());
+            if (reader.getRowCount() != exported || rows[0] != exported) {
+                throw new IllegalStateException("archive " + file + " holds " + rows[0] + " of " + exported + " rows");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read back archive " + file, e);
+        }
+    }
+
+    /** Restores an archived form's table in the background; a no-op for other forms. */
+    public CompletableFuture<Void> restoreAsync(Long formId) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                restore(formId);
+            } catch (RuntimeException e) {
+                log.error("Failed to restore form {}", formId, e);
+                throw e;
+            }
+        }, restoreExecutor);
+    }
+
+    public void restore(Long formId) {
+        if (!restoring.add(formId)) {
+            return;
+        }
+        try {
+            FormDefinition definition = formDefinitionCache.get(formId);
+            if (definition == null || !ArchivedResponseStore.ENGINE.equals(definition.getStorageEngine())) {
+                return;
+            }
+            restoreTimer.record(() -> copyBack(definition));
+        } finally {
+            restoring.remove(formId);
+        }
+    }
+
+    private void copyBack(FormDefinition definition) {
+        Long formId = definition.getFormId();
+        Form form = definition.getForm();
+        String table = TablePerFormResponseStore.tableName(formId);
+        ResponseArchive.Reader reader = archiveStore.reader(formId);
+
+        // Left over from an interrupted restore; the form still reads from the archive
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        try {
+            tableStore.createSchema(form);
+            if (form.hasMonthlyPartitions()) {
+                ensurePartitionsFor(formId, reader);
+            }
+
+            Set<String> existing = new HashSet<>(tableStore.existingColumns(formId));
+            List<String> columns = new ArrayList<>();
+            for (String column : reader.getColumns()) {
+                if (existing.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            StringJoiner placeholders = new StringJoiner(", ");
+            for (String column : columns) {
+                placeholders.add("submitted_at".equals(column) ? "COALESCE(?, now())" : "?");
+            }
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ")";
+
+            reader.forEachGroup(rows -> {
+                List<Object[]> batch = new ArrayList<>(rows.size());
+                for (Map<String, Object> row : rows) {
+                    Object[] args = new Object[columns.size()];
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = row.get(columns.get(i));
+                    }
+                    batch.add(args);
+                }
+                jdbcTemplate.batchUpdate(insert, batch);
+            });
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), GREATEST(COALESCE(MAX(id), 0), 1)) FROM "
+                    + table, Long.class, table);
+            jdbcTemplate.update("UPDATE form SET storage_engine = ? WHERE id = ?", TablePerFormResponseStore.ENGINE, formId);
+        } catch (RuntimeException e) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+            throw e;
+        }
+
+        archiveStore.release(formId);
+        columnarEngine.evict(formId);
+        formDefinitionCache.invalidate(formId);
+        deleteQuietly(archiveStore.archivePath(formId));
+        log.info("Restored {} responses of form {}", reader.getRowCount(), formId);
+    }
+
+    private void ensurePartitionsFor(Long formId, ResponseArchive.Reader reader) {
+        OffsetDateTime[] range = new OffsetDateTime[2];
+        reader.forEachGroup(rows -> {
+            for (Map<String, Object> row : rows) {
+                if (row.get("submitted_at") instanceof OffsetDateTime time) {
+                    range[0] = range[0] == null || time.isBefore(range[0]) ? time : range[0];
+                    range[1] = range[1] == null || time.isAfter(range[1]) ? time : range[1];
+                }
+            }
+        });
+        if (range[0] != null) {
+            tableStore.ensurePartitions(formId, YearMonth.from(range[0].atZoneSameInstant(ZoneOffset.UTC)),
+                    YearMonth.from(range[1].atZoneSameInstant(ZoneOffset.UTC)));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -1,246 +1,204 @@
 
 
 package org.example.backend.service;
+import org.example.backend.dto.FormChangeSet;
+import org.example.backend.dto.SubmissionResult;
 import org.example.backend.model.Form;
-import org.example.backend.model.Page;
+import org.example.backend.model.FormDefinition;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.example.backend.model.Question;
+import org.example.backend.model.SubmissionValidator;
 import org.example.backend.model.User;
-import org.example.backend.repository.FormRepository;
-import org.example.backend.repository.QuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 
 @Service
 public class FormDataService {
 
+    private static final Logger log = LoggerFactory.getLogger(FormDataService.class);
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
     @Autowired
-    private FormRepository formRepository;
+    private FormDefinitionCache formDefinitionCache;
+    @Autowired
+    private ResponseSchemaMigrator schemaMigrator;
+    @Autowired
+    private ResponseStoreRegistry responseStores;
+    @Autowired
+    private TablePerFormResponseStore tableStore;
+    @Autowired
+    private MeterRegistry meterRegistry;
     @Autowired
-    private QuestionRepository questionRepository;
+    private SubmissionIdempotency idempotency;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private LiveDashboardService liveDashboards;
+    @Autowired
+    private ResponseCounters responseCounters;
 
     public void createFormTable(Form form) {
         if (form.getId() == null) {
             throw new IllegalArgumentException("Form ID cannot be null when creating form table");
         }
-
-        String tableName = "form_" + form.getId();
-
-        // Check if table already exists
-        try {
-            String checkSql = "SELECT 1 FROM " + tableName + " LIMIT 1";
-            jdbcTemplate.queryForObject(checkSql, Integer.class);
-            System.out.println("Table " + tableName + " already exists, updating structure instead");
-            updateFormTable(form);
-            return;
-        } catch (Exception e) {
-            // Table doesn't exist, proceed with creation
-        }
-
-        StringBuilder sql = new StringBuilder("CREATE TABLE ")
-                .append(tableName)
-                .append(" (id SERIAL PRIMARY KEY, user_id INTEGER");
-
-        // Dynamically add columns for each question in the form
-        for (Page page: form.getPages()) {
-            for (Question question : page.getQuestions()) {
-                // Use question ID if available, otherwise use index
-                sql.append(", question_").append(question.getId()).append(" ")
-                        .append(getColumnType(question));
-            }
-        }
-
-        sql.append(");");
-
-        // Execute the dynamically generated SQL
-        try {
-            jdbcTemplate.execute(sql.toString());
-            System.out.println("Created table: " + sql.toString());
-        } catch (Exception e) {
-            System.err.println("Failed to create table: " + sql.toString());
-            throw new RuntimeException("Failed to create form table: " + e.getMessage(), e);
-        }
+        responseStores.forForm(form).createSchema(form);
     }
 
     public void updateFormTable(Form form) {
         if (form.getId() == null) {
             throw new IllegalArgumentException("Form ID cannot be null when updating form table");
         }
-
-        String tableName = "form_" + form.getId();
-        System.out.println("Updating table: " + tableName);
-
-        // Get existing columns in the table
-        List<String> existingColumns = getExistingColumns(tableName);
-        System.out.println("Existing columns: " + existingColumns);
-
-        // Generate the expected columns based on the form structure
-        List<String> expectedColumns = new ArrayList<>();
-        int questionIndex = 1;
-        for (Page page: form.getPages()) {
-            for (Question question : page.getQuestions()) {
-                String questionId = (question.getId() != null) ? String.valueOf(question.getId()) : String.valueOf(questionIndex);
-                expectedColumns.add("question_" + questionId);
-                questionIndex++;
-            }
+        ResponseStore store = responseStores.forForm(form);
+        if (store == tableStore) {
+            tableStore.updateSchema(form);
         }
-        System.out.println("Expected columns: " + expectedColumns);
-
-        // Add missing columns
-        for (String expectedColumn : expectedColumns) {
-            if (!existingColumns.contains(expectedColumn)) {
-                try {
-                    // Find the question to get its data type
-                    Question question = findQuestionById(form, expectedColumn.replace("question_", ""));
-                    String columnType = getColumnType(question);
+    }
 
-                    String alterSql = "ALTER TABLE " + tableName + " ADD COLUMN " + expectedColumn + " " + columnType;
-                    jdbcTemplate.execute(alterSql);
-                    System.out.println("Added column: " + expectedColumn + " with type: " + columnType);
-                } catch (Exception e) {
-                    System.err.println("Failed to add column " + expectedColumn + ": " + e.getMessage());
-                }
-            } else {
-                System.out.println("Column already exists: " + expectedColumn);
-            }
+    /**
+     * Applies the response-table DDL implied by a form update. Only columns for
+     * newly added questions are created; columns of removed questions are kept
+     * so that existing answers are preserved. The ALTER runs in the background
+     * (see {@link ResponseSchemaMigrator}) so submissions keep flowing.
+     */
+    public CompletableFuture<Void> applySchemaChanges(Long formId, FormChangeSet changes) {
+        if (!changes.getRetypedQuestionIds().isEmpty()) {
+            log.warn("Data type changed for questions {} of form {}; existing columns keep their type",
+                    changes.getRetypedQuestionIds(), formId);
         }
-
-        // Remove columns that are no longer needed (optional - be careful with data loss)
-        // This is commented out to preserve existing data
-        /*
-        for (String existingColumn : existingColumns) {
-            if (!expectedColumns.contains(existingColumn) && !existingColumn.equals("id") && !existingColumn.equals("user_id")) {
-                try {
-                    String alterSql = "ALTER TABLE " + tableName + " DROP COLUMN " + existingColumn;
-                    jdbcTemplate.execute(alterSql);
-                    System.out.println("Removed column: " + existingColumn);
-                } catch (Exception e) {
-                    System.err.println("Failed to remove column " + existingColumn + ": " + e.getMessage());
-                }
-            }
+        if (!changes.hasSchemaChanges()) {
+            // Nothing to add; skip the migrator and its lock on the response table
+            return CompletableFuture.completedFuture(null);
         }
-        */
+        return responseStores.forForm(changes.getForm()).addColumns(formId, newColumns(changes));
     }
 
-    private List<String> getExistingColumns(String tableName) {
-        List<String> columns = new ArrayList<>();
-        try {
-            String sql = "SELECT column_name FROM information_schema.columns WHERE table_name = ?";
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, tableName);
-            for (Map<String, Object> row : results) {
-                columns.add((String) row.get("column_name"));
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to get existing columns for table " + tableName + ": " + e.getMessage());
+    public Map<String, String> newColumns(FormChangeSet changes) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (Question question : changes.getAddedQuestions()) {
+            columns.put(ResponseColumns.columnName(question), ResponseColumns.sqlType(question));
         }
         return columns;
     }
 
-    private Question findQuestionById(Form form, String questionId) {
-        for (Page page : form.getPages()) {
-            for (Question question : page.getQuestions()) {
-                if (String.valueOf(question.getId()).equals(questionId)) {
-                    return question;
-                }
-            }
+    /**
+     * Submits a response. With an idempotency key, a retry of an earlier
+     * submission returns that submission's response without inserting again;
+     * the key is claimed in the same transaction as the insert, so concurrent
+     * retries cannot both insert. Either way the insert shares a transaction
+     * with the form's response counter, so a limit slot is only taken by a
+     * response that is stored.
+     */
+    public SubmissionResult submitFormData(Long formId, Map<String, Object> formData, Long userId,
+                                           String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return transactionTemplate.execute(status ->
+                    new SubmissionResult(insertFormData(formId, formData, userId), false));
         }
-        // If not found by ID, return a default question with VARCHAR type
-        Question defaultQuestion = new Question("", "text", null);
-        defaultQuestion.setDataType("SHORT_TEXT");
-        return defaultQuestion;
-    }
-
-    private String getColumnType(Question question) {
-        // Return the correct column type based on the question type (e.g., VARCHAR, INTEGER)
-        return switch (question.getDataType().toUpperCase()) {
-            case "LONG_TEXT" -> "TEXT" ;
-            case "NUMBER" -> "NUMERIC";
-            case "BOOLEAN" -> "BOOLEAN";
-            default -> "VARCHAR(255)";
-        };
+        int requestHash = formData.hashCode();
+        Long previous = idempotency.replay(formId, userId, idempotencyKey, requestHash);
+        if (previous != null) {
+            return new SubmissionResult(previous, true);
+        }
+        return transactionTemplate.execute(status -> {
+            if (!idempotency.claim(formId, userId, idempotencyKey, requestHash)) {
+                // A concurrent submission with the same key committed first
+                return new SubmissionResult(idempotency.stored(formId, userId, idempotencyKey, requestHash), true);
+            }
+            long responseId = insertFormData(formId, formData, userId);
+            idempotency.complete(formId, userId, idempotencyKey, requestHash, responseId);
+            return new SubmissionResult(responseId, false);
+        });
     }
 
-    // Method for inserting form data into the dynamic table
-    public void insertFormData(Long formId, Map<String, Object> formData, Long userId) {
-        // 1. Get list of typed values
-        List<Object> typedValuesList = new ArrayList<>();
-        typedValuesList.add(userId); // Add the user ID first
-
-        for (Map.Entry<String, Object> entry : formData.entrySet()) {
-            String questionColumn = entry.getKey(); // like "question_43"
-            Object value = entry.getValue();
+    // Method for inserting form data into the form's response store
+    public long insertFormData(Long formId, Map<String, Object> formData, Long userId) {
+        FormDefinition definition = formDefinitionCache.get(formId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Form not found: " + formId);
+        }
+        responseCounters.checkOpen(definition);
+        // Columns for just-added questions may still be on their way
+        schemaMigrator.awaitPending(formId);
+
+        // Check every field up front, so the client gets all errors at once
+        List<SubmissionValidator.FieldError> errors = definition.getValidator().validate(formData);
+        if (!errors.isEmpty()) {
+            throw new SubmissionValidator.InvalidSubmissionException(errors);
+        }
 
-            // Extract question id
-            Long questionId;
-            if (questionColumn.startsWith("question_")) {
-                questionId = Long.parseLong(questionColumn.substring("question_".length()));
-            } else {
-                return;
+        // Typed values keyed by column
+        Map<String, Object> typedValues = new LinkedHashMap<>();
+        for (Question question : definition.getQuestions()) {
+            String column = ResponseColumns.columnName(question);
+            if (!formData.containsKey(column)) {
+                continue;
             }
-
-            // Lookup Question and its dataType
-            Question question = questionRepository.findById(questionId)
-                    .orElseThrow(() -> new RuntimeException("Question ID not found: " + questionId));
-
-            if (question.isOptional() && (value == null || value.toString().isEmpty())) {
-                System.out.println(question.isOptional() + " " + value + " " + question.getText() + " " + questionId);
-                throw new IllegalArgumentException("Question " + question.getText() + " is required but no value provided.");
+            Object value = formData.get(column);
+            try {
+                typedValues.put(column, isBlank(value) ? null : definition.getConverter(question.getId()).convert(value));
+            } catch (IllegalArgumentException e) {
+                // Formats the validator leaves to the converters, e.g. full timestamps
+                errors = errors.isEmpty() ? new ArrayList<>() : errors;
+                errors.add(new SubmissionValidator.FieldError(column, e.getMessage()));
             }
-
-            Object typedValue = convertValueByDataType(question.getDataType(), value);
-            typedValuesList.add(typedValue);
         }
-
-        StringBuilder sql = new StringBuilder("INSERT INTO form_")
-                .append(formId)
-                .append(" (user_id");
-
-        StringBuilder values = new StringBuilder(") VALUES (");
-
-        // Dynamically add columns and values for each question
-        values.append("?");  // Placeholder for user ID
-        for (Map.Entry<String, Object> entry : formData.entrySet()) {
-            sql.append(", ").append(entry.getKey());  // Add column name
-            values.append(", ?");  // Placeholder for value
+        if (!errors.isEmpty()) {
+            throw new SubmissionValidator.InvalidSubmissionException(errors);
         }
 
-        sql.append(values).append(");");
-
-        jdbcTemplate.update(sql.toString(), typedValuesList.toArray());
-    }
-
-    private Object convertValueByDataType(String dataType, Object value) {
-        if (value == null) return null;
-        return switch (dataType.toUpperCase()) {
-            case "NUMBER" -> {
-                // Try Integer; you could improve to support Double if desired
-                String s = value.toString();
-                try {
-                    yield Double.parseDouble(s);
-                } catch (NumberFormatException e) {
-                    yield null; // or handle/throw as needed
-                }
+        responseCounters.reserve(definition);
+        ResponseStore store = responseStores.forForm(definition);
+        long responseId;
+        try {
+            responseId = Timer.builder("form.responses.insert").tag("engine", store.engine()).register(meterRegistry)
+                    .record(() -> store.insert(formId, userId, typedValues));
+        } catch (DataAccessException e) {
+            if (!ResponseSchemaMigrator.isUndefinedColumn(e)) {
+                throw e;
+            }
+            // A column addition was lost, e.g. with a restart; re-adding existing columns is a no-op
+            log.warn("Response table of form {} lacks question columns, adding them", formId);
+            Map<String, String> columns = new LinkedHashMap<>();
+            for (Question question : definition.getQuestions()) {
+                columns.put(ResponseColumns.columnName(question), ResponseColumns.sqlType(question));
             }
-            case "BOOLEAN" -> Boolean.parseBoolean(value.toString());
-            // Add other types if needed:
-            // case "DOUBLE": yield Double.parseDouble(value.toString());
-            default -> value.toString(); // TEXT, SHORT_TEXT, LONG_TEXT, etc.
-        };
+            store.addColumns(formId, columns);
+            throw new ResponseSchemaMigrator.SchemaChangePendingException(
+                    "Form " + formId + " is being updated, please retry shortly", 1);
+        }
+        liveDashboards.responseAdded(formId);
+        return responseId;
     }
 
+    private static boolean isBlank(Object value) {
+        return value == null || (value instanceof String s && s.isBlank());
+    }
 
     // method to get all form data
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> getFormData(Long formId) {
-        String sql = "SELECT * FROM form_" + formId;
-        return jdbcTemplate.queryForList(sql);
+        FormDefinition definition = formDefinitionCache.get(formId);
+        if (definition == null) {
+            throw new IllegalArgumentException("Form not found: " + formId);
+        }
+        List<Map<String, Object>> rows = responseStores.forForm(definition).findAll(formId);
+        ResponseColumns.decodeRows(definition, rows);
+        return rows;
     }
 
 
@@ -259,20 +217,21 @@ public class FormDataService {
      */
     public void cleanupOrphanedTables() {
         try {
-            String sql = "SELECT tablename FROM pg_tables WHERE tablename LIKE 'form_%' AND tablename ~ '^form_[0-9]+$' = false";
+            // Monthly partitions (form_{id}_pYYYYMM) belong to their form's table
+            String sql = "SELECT tablename FROM pg_tables WHERE tablename LIKE 'form_%' AND tablename ~ '^form_[0-9]+(_p[0-9]{6})?$' = false";
             List<String> orphanedTables = jdbcTemplate.queryForList(sql, String.class);
 
             for (String tableName : orphanedTables) {
                 if ("form_allowed_users".equals(tableName)) continue;
                 try {
                     jdbcTemplate.execute("DROP TABLE IF EXISTS " + tableName);
-                    System.out.println("Cleaned up orphaned table: " + tableName);
+                    log.info("Cleaned up orphaned table: {}", tableName);
                 } catch (Exception e) {
-                    System.err.println("Failed to drop table " + tableName + ": " + e.getMessage());
+                    log.warn("Failed to drop table {}: {}", tableName, e.getMessage());
                 }
             }
         } catch (Exception e) {
-            System.err.println("Failed to cleanup orphaned tables: " + e.getMessage());
+            log.error("Failed to cleanup orphaned tables", e);
         }
     }
 
@@ -0,0 +1,189 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.config.DataSourceRouting;
+import org.example.backend.config.Workload;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.repository.FormRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, size-aware cache of {@link FormDefinition} snapshots keyed by form
+ * id and version. Every mutation of a form must call {@link #invalidate(Long)};
+ * doing so bumps the form's version so that snapshots loaded before the
+ * change (even ones still in flight) are never served again.
+ *
+ * Invalidation only reaches this instance, so a snapshot older than
+ * {@code form.cache.ttl-ms} is checked against the database before it is
+ * served again. If another instance changed the form meanwhile, the version
+ * is bumped here too; otherwise the snapshot and its version are kept, so
+ * caches keyed by the version are not rebuilt for nothing.
+ */
+@Service
+public class FormDefinitionCache {
+
+    private final FormRepository formRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate separateReadOnlyTx;
+    private final long maxBytes;
+    private final long ttlNanos;
+
+    private record Entry(FormDefinition definition, long loadedAt) {
+    }
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public FormDefinitionCache(FormRepository formRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${form.cache.max-bytes:67108864}") long maxBytes,
+                               @Value("${form.cache.ttl-ms:30000}") long ttlMs) {
+        this.formRepository = formRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // Own connection, so a load cannot join a caller's read-only transaction on a replica
+        this.separateReadOnlyTx = new TransactionTemplate(transactionManager);
+        this.separateReadOnlyTx.setReadOnly(true);
+        this.separateReadOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxBytes = maxBytes;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+
+        this.hits = meterRegistry.counter("form.definition.cache", "result", "hit");
+        this.misses = meterRegistry.counter("form.definition.cache", "result", "miss");
+        this.evictions = meterRegistry.counter("form.definition.cache.evictions");
+        Gauge.builder("form.definition.cache.bytes", this, c -> c.currentBytes).register(meterRegistry);
+        Gauge.builder("form.definition.cache.size", this, c -> c.entries.size()).register(meterRegistry);
+    }
+
+    /**
+     * Returns the current definition of a form, loading it from the database
+     * on a miss, or {@code null} if the form does not exist.
+     */
+    public FormDefinition get(Long formId) {
+        if (formId == null) {
+            return null;
+        }
+        long version = currentVersion(formId);
+        FormDefinition expired = null;
+        synchronized (this) {
+            Entry cached = entries.get(formId);
+            if (cached != null && cached.definition().getVersion() == version) {
+                if (System.nanoTime() - cached.loadedAt() < ttlNanos) {
+                    hits.increment();
+                    return cached.definition();
+                }
+                expired = cached.definition();
+            }
+        }
+
+        misses.increment();
+        FormDefinition previous = expired;
+        // Snapshots live until the next invalidation, so they are never loaded from a lagging replica
+        TransactionTemplate tx = TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? separateReadOnlyTx : readOnlyTx;
+        FormDefinition loaded = DataSourceRouting.onPrimary(() -> DataSourceRouting.in(Workload.DEFINITION, () ->
+                tx.execute(status -> formRepository.findByIdWithPagesAndQuestions(formId)
+                        .map(form -> {
+                            FormDefinition definition = FormDefinition.of(form, version);
+                            if (previous == null) {
+                                return definition;
+                            }
+                            if (definition.sameContentAs(previous)) {
+                                // Keeps the rendered payload along with the version
+                                return previous;
+                            }
+                            // Changed by another instance
+                            return FormDefinition.of(form, evict(formId));
+                        })
+                        .orElse(null))));
+        if (loaded != null) {
+            put(loaded);
+        } else if (previous != null) {
+            evict(formId);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the cached definition of a form. When called inside a transaction
+     * the form is invalidated again after commit, so a reader that reloaded the
+     * old row in between cannot pin a stale snapshot.
+     */
+    public void invalidate(Long formId) {
+        if (formId == null) {
+            return;
+        }
+        evict(formId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(formId);
+                }
+            });
+        }
+    }
+
+    private long evict(Long formId) {
+        long version = versionSequence.incrementAndGet();
+        versions.put(formId, version);
+        synchronized (this) {
+            Entry removed = entries.remove(formId);
+            if (removed != null) {
+                currentBytes -= removed.definition().getEstimatedBytes();
+            }
+        }
+        return version;
+    }
+
+    private long currentVersion(Long formId) {
+        return versions.getOrDefault(formId, 0L);
+    }
+
+    private synchronized void put(FormDefinition definition) {
+        // A mutation raced with this load; the snapshot is already outdated
+        if (definition.getVersion() != currentVersion(definition.getFormId())) {
+            return;
+        }
+        if (definition.getEstimatedBytes() > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(definition.getFormId(), new Entry(definition, System.nanoTime()));
+        if (previous != null) {
+            currentBytes -= previous.definition().getEstimatedBytes();
+        }
+        currentBytes += definition.getEstimatedBytes();
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            FormDefinition victim = eldest.next().definition();
+            eldest.remove();
+            currentBytes -= victim.getEstimatedBytes();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.backend.service;
+
+import org.example.backend.dto.FormChangeSet;
+import org.example.backend.model.ChoiceCodes;
+import org.example.backend.model.Form;
+import org.example.backend.model.Page;
+import org.example.backend.model.Question;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Merges an updated form into its managed entity in linear time. Pages and
+ * questions are matched by id through hash maps, so the cost is O(pages +
+ * questions) rather than one scan of the update per stored element.
+ */
+@Component
+public class FormDiffEngine {
+
+    /**
+     * Applies {@code updated} to the managed {@code existing} form and returns
+     * what changed. Questions keep their id when they move between pages.
+     */
+    public FormChangeSet apply(Form existing, Form updated) {
+        FormChangeSet changes = new FormChangeSet();
+
+        // Index the stored structure
+        Map<Long, Page> existingPages = new HashMap<>();
+        Map<Long, Question> existingQuestions = new HashMap<>();
+        Map<Long, Page> questionOwner = new HashMap<>();
+        for (Page page : existing.getPages()) {
+            existingPages.put(page.getId(), page);
+            for (Question q : page.getQuestions()) {
+                existingQuestions.put(q.getId(), q);
+                questionOwner.put(q.getId(), page);
+            }
+        }
+
+        // Index the update; ids the form does not own are treated as new
+        Map<Long, Page> updatedPages = new HashMap<>();
+        Map<Long, Question> updatedQuestions = new HashMap<>();
+        Map<Long, Long> targetPageOf = new HashMap<>();
+        for (Page page : updated.getPages()) {
+            boolean known = page.getId() != null && existingPages.containsKey(page.getId());
+            if (known) {
+                updatedPages.put(page.getId(), page);
+            }
+            for (Question q : page.getQuestions()) {
+                if (q.getId() != null && existingQuestions.containsKey(q.getId())) {
+                    updatedQuestions.put(q.getId(), q);
+                    targetPageOf.put(q.getId(), known ? page.getId() : null);
+                }
+            }
+        }
+
+        // Detach removed and moved questions first: Question hashes on its
+        // fields, so it has to leave its page's set before it is modified
+        Set<Long> relocated = new HashSet<>();
+        for (Map.Entry<Long, Question> entry : existingQuestions.entrySet()) {
+            Long id = entry.getKey();
+            Page owner = questionOwner.get(id);
+            if (!updatedQuestions.containsKey(id)) {
+                owner.getQuestions().remove(entry.getValue());
+                changes.getRemovedQuestionIds().add(id);
+            } else if (!Objects.equals(targetPageOf.get(id), owner.getId())) {
+                owner.getQuestions().remove(entry.getValue());
+                relocated.add(id);
+                changes.getMovedQuestionIds().add(id);
+            }
+        }
+
+        // Remove pages that are gone, reindex the rest
+        Iterator<Page> pageIterator = existing.getPages().iterator();
+        while (pageIterator.hasNext()) {
+            Page page = pageIterator.next();
+            Page updatedPage = updatedPages.get(page.getId());
+            if (updatedPage == null) {
+                pageIterator.remove();
+                changes.getRemovedPageIds().add(page.getId());
+            } else if (page.getPageIndex() != updatedPage.getPageIndex()) {
+                page.setPageIndex(updatedPage.getPageIndex());
+                changes.getReorderedPageIds().add(page.getId());
+            }
+        }
+
+        // Update fields of kept questions
+        for (Map.Entry<Long, Question> entry : updatedQuestions.entrySet()) {
+            Question stored = existingQuestions.get(entry.getKey());
+            Page owner = questionOwner.get(entry.getKey());
+            boolean inSet = !relocated.contains(entry.getKey());
+            if (inSet && differs(stored, entry.getValue())) {
+                owner.getQuestions().remove(stored);
+                copyFields(stored, entry.getValue(), changes);
+                owner.getQuestions().add(stored);
+            } else if (!inSet) {
+                copyFields(stored, entry.getValue(), changes);
+            }
+        }
+
+        // Walk the update once more to attach new pages and questions
+        for (Page page : updated.getPages()) {
+            Page target = page.getId() != null ? existingPages.get(page.getId()) : null;
+            if (target == null) {
+                target = new Page();
+                target.setPageIndex(page.getPageIndex());
+                target.setForm(existing);
+                existing.getPages().add(target);
+                changes.pageAdded();
+            }
+            for (Question q : page.getQuestions()) {
+                Question stored = q.getId() != null ? existingQuestions.get(q.getId()) : null;
+                if (stored == null) {
+                    q.setId(null);
+                    q.setPage(target);
+                    target.getQuestions().add(q);
+                    changes.questionAdded();
+                } else if (relocated.contains(stored.getId())) {
+                    stored.setPage(target);
+                    target.getQuestions().add(stored);
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Records the questions that received an id when the updated form was
+     * saved; these are the ones that need a new response column.
+     */
+    public void resolveAddedQuestions(FormChangeSet changes, Set<Long> questionIdsBefore, Form saved) {
+        changes.setForm(saved);
+        for (Page page : saved.getPages()) {
+            for (Question q : page.getQuestions()) {
+                if (q.getId() != null && !questionIdsBefore.contains(q.getId())) {
+                    changes.getAddedQuestions().add(q);
+                }
+            }
+        }
+    }
+
+    public static Set<Long> questionIds(Form form) {
+        Set<Long> ids = new HashSet<>();
+        for (Page page : form.getPages()) {
+            for (Question q : page.getQuestions()) {
+                ids.add(q.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static boolean differs(Question stored, Question updated) {
+        return !Objects.equals(stored.getText(), updated.getText())
+                || !Objects.equals(stored.getType(), updated.getType())
+                || !Objects.equals(stored.getDataType(), updated.getDataType())
+                || stored.isOptional() != updated.isOptional()
+                || !Objects.equals(stored.getMinValue(), updated.getMinValue())
+                || !Objects.equals(stored.getMaxValue(), updated.getMaxValue())
+                || !sameChoices(stored.getChoices(), updated.getChoices())
+                || !Objects.equals(stored.getCreatedAtTs(), updated.getCreatedAtTs());
+    }
+
+    // Hibernate's PersistentBag compares by identity, so compare element-wise
+    private static boolean sameChoices(List<String> stored, List<String> updated) {
+        if (stored == null || updated == null) {
+            return stored == updated;
+        }
+        return new ArrayList<>(stored).equals(updated);
+    }
+
+    private static void copyFields(Question stored, Question updated, FormChangeSet changes) {
+        if (!differs(stored, updated)) {
+            return;
+        }
+        if (!Objects.equals(stored.getDataType(), updated.getDataType())) {
+            changes.getRetypedQuestionIds().add(stored.getId());
+        }
+        stored.setText(updated.getText());
+        stored.setType(updated.getType());
+        stored.setDataType(updated.getDataType());
+        stored.setOptional(updated.isOptional());
+        stored.setMinValue(updated.getMinValue());
+        stored.setMaxValue(updated.getMaxValue());
+        ChoiceCodes.remap(stored, updated.getChoices());
+        stored.setChoices(updated.getChoices());
+        stored.setCreatedAtTs(updated.getCreatedAtTs());
+        changes.getChangedQuestionIds().add(stored.getId());
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.backend.service;
+
+import org.example.backend.dto.FormSummary;
+import org.example.backend.dto.PagedResponse;
+import org.example.backend.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paginated form listings returning {@link FormSummary} projections, so no
+ * entity graph is ever loaded. The page's form ids are picked first, and the
+ * page and question counts are aggregated for those forms only (for every
+ * form only when the listing is sorted by one of them). The total is counted
+ * separately, and only when the page itself does not reveal it.
+ */
+@Service
+public class FormListingService {
+
+    public enum Filter { ALL, TEMPLATES, ACTIVE, SHARED }
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String PAGE_COUNT =
+            "CROSS JOIN LATERAL (SELECT COUNT(*) AS page_count FROM page p WHERE p.form_id = f.id) pc ";
+    private static final String QUESTION_COUNT =
+            "CROSS JOIN LATERAL (SELECT COUNT(*) AS question_count FROM page p " +
+            "JOIN question q ON q.page_id = p.id WHERE p.form_id = f.id) qc ";
+    // Maintained counter (ResponseCounters); avoids counting each form's responses
+    private static final String RESPONSE_COUNT = "LEFT JOIN response_counters rc ON rc.form_id = f.id ";
+
+    /** SQL a sort key orders by, and the join that expression needs. */
+    private record SortKey(String expression, String join) {
+    }
+
+    // Sort keys accepted from the client
+    private static final Map<String, SortKey> SORT_KEYS = Map.of(
+            "id", new SortKey("f.id", ""),
+            "title", new SortKey("f.title", ""),
+            "pageCount", new SortKey("pc.page_count", PAGE_COUNT),
+            "questionCount", new SortKey("qc.question_count", QUESTION_COUNT),
+            "responseCount", new SortKey("COALESCE(rc.responses, 0)", RESPONSE_COUNT)
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Transactional(readOnly = true)
+    public PagedResponse<FormSummary> listForms(User user, Filter filter, int page, int size,
+                                                String sort, String direction) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page index must not be negative");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        SortKey sortKey = SORT_KEYS.get(sort == null ? "id" : sort);
+        if (sortKey == null) {
+            throw new IllegalArgumentException("Invalid sort field: " + sort);
+        }
+        String orderBy = "ORDER BY " + sortKey.expression() + ("desc".equalsIgnoreCase(direction) ? " DESC" : " ASC")
+                + ", f.id ";
+
+        StringBuilder matching = new StringBuilder("FROM form f ");
+        if (filter == Filter.SHARED) {
+            matching.append("JOIN form_allowed_users fau ON fau.form_id = f.id ");
+        }
+        StringBuilder conditions = new StringBuilder();
+        if (filter == Filter.SHARED) {
+            conditions.append("WHERE fau.user_id = ? ");
+        } else {
+            conditions.append("WHERE f.owner_id = ? ");
+        }
+        if (filter == Filter.TEMPLATES) {
+            conditions.append("AND f.is_template = true ");
+        } else if (filter == Filter.ACTIVE) {
+            conditions.append("AND f.is_active = true ");
+        }
+
+        long offset = (long) page * size;
+        String sql = "WITH paged AS (SELECT f.id " + matching + sortKey.join() + conditions + orderBy +
+                "LIMIT ? OFFSET ?) " +
+                "SELECT f.id, f.title, f.description, f.is_template, f.is_active, f.is_expired, " +
+                "pc.page_count, qc.question_count, " +
+                "COALESCE(rc.responses, 0) AS response_count, f.response_limit " +
+                "FROM paged JOIN form f ON f.id = paged.id " +
+                PAGE_COUNT + QUESTION_COUNT + RESPONSE_COUNT + orderBy;
+
+        List<FormSummary> content = jdbcTemplate.query(sql, (rs, rowNum) -> new FormSummary(
+                    rs.getLong("id"),
+                    rs.getString("title"),
+                    rs.getString("description"),
+                    rs.getBoolean("is_template"),
+                    rs.getBoolean("is_active"),
+                    rs.getBoolean("is_expired"),
+                    rs.getInt("page_count"),
+                    rs.getInt("question_count"),
+                    rs.getLong("response_count"),
+                    rs.getObject("response_limit", Integer.class)),
+                user.getId(), size, offset);
+
+        // A partly filled page is the last one, so it gives the total away
+        long total = !content.isEmpty() && content.size() < size
+                ? offset + content.size()
+                : jdbcTemplate.queryForObject("SELECT COUNT(*) " + matching + conditions, Long.class, user.getId());
+        return PagedResponse.of(content, page, size, total);
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.FormPayload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders form definitions to JSON once per version and tracks how much
+ * serialization and bandwidth the cached payloads save.
+ */
+@Service
+public class FormPayloadService {
+
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+    private final int gzipMinBytes;
+
+    private final Timer renderTimer;
+    private final Counter notModified;
+    private final Counter servedFull;
+    private final Counter servedGzip;
+    private final Counter bytesSent;
+    private final Counter bytesSaved;
+
+    public FormPayloadService(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${form.payload.gzip:true}") boolean gzipEnabled,
+                              @Value("${form.payload.gzip-min-bytes:1024}") int gzipMinBytes) {
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+        this.gzipMinBytes = gzipMinBytes;
+
+        this.renderTimer = meterRegistry.timer("form.payload.render");
+        this.notModified = meterRegistry.counter("form.payload.requests", "result", "not_modified");
+        this.servedFull = meterRegistry.counter("form.payload.requests", "result", "identity");
+        this.servedGzip = meterRegistry.counter("form.payload.requests", "result", "gzip");
+        this.bytesSent = meterRegistry.counter("form.payload.bytes.sent");
+        this.bytesSaved = meterRegistry.counter("form.payload.bytes.saved");
+    }
+
+    public FormPayload getPayload(FormDefinition definition) {
+        return definition.getPayload(this::render);
+    }
+
+    /**
+     * True when one of the entity tags in an {@code If-None-Match} header
+     * matches either representation of the payload, meaning the client copy
+     * is still current.
+     */
+    public boolean matches(FormPayload payload, String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(payload.getEtag())
+                    || (payload.hasGzipped() && candidate.equals(payload.getEtag(true)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    public void recordNotModified(FormPayload payload) {
+        notModified.increment();
+        bytesSaved.increment(payload.getJson().length);
+    }
+
+    public void recordServed(FormPayload payload, boolean gzipped) {
+        int sent = gzipped ? payload.getGzipped().length : payload.getJson().length;
+        (gzipped ? servedGzip : servedFull).increment();
+        bytesSent.increment(sent);
+        bytesSaved.increment(payload.getJson().length - sent);
+    }
+
+    private FormPayload render(FormDefinition definition) {
+        return renderTimer.record(() -> {
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(definition.getForm());
+                byte[] gzipped = gzipEnabled && json.length >= gzipMinBytes ? gzip(json) : null;
+                return new FormPayload(json, gzipped, etag(json));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to render form " + definition.getFormId() + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress form payload", e);
+        }
+        return out.toByteArray();
+    }
+
+    // Strong validator: derived from the bytes, so it survives restarts and is
+    // identical on every instance serving the same version.
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 27) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
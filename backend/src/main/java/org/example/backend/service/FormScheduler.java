@@ -0,0 +1,179 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens and closes forms at their {@code opensAt} and {@code closesAt} times.
+ *
+ * Pending deadlines sit in a {@link TimingWheel}, loaded at startup from the
+ * partial indexes over forms still waiting to open or close. Each tick takes
+ * the deadlines that passed and applies them with one conditional UPDATE per
+ * kind and batch, so forms sharing a deadline cost one statement, and a
+ * deadline that was moved or already applied changes nothing. Forms that
+ * changed are dropped from the definition cache.
+ *
+ * Submissions do not wait for the tick: {@link FormService#validateFormSubmission}
+ * compares the times itself. Deadlines set through another instance are picked
+ * up by a periodic scan of the ones coming up; a deadline already in the wheel
+ * for the same time is not added again.
+ */
+@Service
+public class FormScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(FormScheduler.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private record Deadline(long formId, boolean opens, long atMs) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FormDefinitionCache formDefinitionCache;
+    private final long lookaheadMs;
+    private final TimingWheel<Deadline> wheel;
+    // Deadlines in the wheel, so that scans and repeated saves do not add them twice
+    private final Set<Deadline> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final Counter opened;
+    private final Counter closed;
+
+    public FormScheduler(JdbcTemplate jdbcTemplate,
+                         FormDefinitionCache formDefinitionCache,
+                         MeterRegistry meterRegistry,
+                         @Value("${form.schedule.tick-ms:1000}") long tickMs,
+                         @Value("${form.schedule.lookahead-ms:120000}") long lookaheadMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.formDefinitionCache = formDefinitionCache;
+        this.lookaheadMs = lookaheadMs;
+        this.wheel = new TimingWheel<>(tickMs, System.currentTimeMillis());
+
+        this.opened = meterRegistry.counter("form.schedule.transitions", "action", "open");
+        this.closed = meterRegistry.counter("form.schedule.transitions", "action", "close");
+        Gauge.builder("form.schedule.pending", wheel, TimingWheel::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        int loaded = loadUntil(null);
+        log.info("Loaded {} form open/close deadlines", loaded);
+    }
+
+    /** Schedules a form's deadlines, once the current transaction (if any) commits. */
+    public void schedule(Long formId, Instant opensAt, Instant closesAt) {
+        if (formId == null || (opensAt == null && closesAt == null)) {
+            return;
+        }
+        Runnable add = () -> {
+            if (opensAt != null) {
+                add(new Deadline(formId, true, opensAt.toEpochMilli()));
+            }
+            if (closesAt != null) {
+                add(new Deadline(formId, false, closesAt.toEpochMilli()));
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add.run();
+                }
+            });
+        } else {
+            add.run();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${form.schedule.tick-ms:1000}")
+    public void tick() {
+        Instant now = Instant.now();
+        List<Deadline> due = wheel.advance(now.toEpochMilli());
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Long> opening = new ArrayList<>();
+        List<Long> closing = new ArrayList<>();
+        for (Deadline deadline : due) {
+            scheduled.remove(deadline);
+            (deadline.opens() ? opening : closing).add(deadline.formId());
+        }
+        try {
+            apply(opening, now, true);
+            apply(closing, now, false);
+        } catch (Exception e) {
+            // Still pending in the database, so the next scan puts them back
+            log.error("Failed to apply form deadlines", e);
+        }
+    }
+
+    /** Picks up deadlines set through other instances, and any this one missed. */
+    @Scheduled(initialDelayString = "${form.schedule.scan-interval-ms:60000}",
+            fixedDelayString = "${form.schedule.scan-interval-ms:60000}")
+    public void scan() {
+        loadUntil(Instant.now().plusMillis(lookaheadMs));
+    }
+
+    // Deadlines of forms not yet opened or closed, up to an optional horizon; each query is a partial index range scan
+    private int loadUntil(Instant horizon) {
+        String bound = horizon != null ? " AND opens_at <= ?" : "";
+        Object[] args = horizon != null ? new Object[]{Timestamp.from(horizon)} : new Object[0];
+        int[] loaded = {0};
+        jdbcTemplate.query("SELECT id, opens_at FROM form WHERE opens_at IS NOT NULL AND is_active = false" + bound,
+                rs -> {
+                    if (add(new Deadline(rs.getLong("id"), true, rs.getTimestamp("opens_at").getTime()))) {
+                        loaded[0]++;
+                    }
+                }, args);
+        jdbcTemplate.query("SELECT id, closes_at FROM form WHERE closes_at IS NOT NULL AND is_expired = false"
+                        + bound.replace("opens_at", "closes_at"),
+                rs -> {
+                    if (add(new Deadline(rs.getLong("id"), false, rs.getTimestamp("closes_at").getTime()))) {
+                        loaded[0]++;
+                    }
+                }, args);
+        return loaded[0];
+    }
+
+    private boolean add(Deadline deadline) {
+        if (!scheduled.add(deadline)) {
+            return false;
+        }
+        wheel.add(deadline.atMs(), deadline);
+        return true;
+    }
+
+    private void apply(List<Long> formIds, Instant now, boolean open) {
+        String sql = open
+                ? "UPDATE form SET is_active = true WHERE opens_at <= ? AND is_active = false AND id IN (%s) RETURNING id"
+                : "UPDATE form SET is_expired = true WHERE closes_at <= ? AND is_expired = false AND id IN (%s) RETURNING id";
+        for (int i = 0; i < formIds.size(); i += BATCH_SIZE) {
+            List<Long> batch = formIds.subList(i, Math.min(i + BATCH_SIZE, formIds.size()));
+            List<Object> args = new ArrayList<>(batch.size() + 1);
+            args.add(Timestamp.from(now));
+            args.addAll(batch);
+            List<Long> changed = jdbcTemplate.queryForList(
+                    String.format(sql, String.join(",", Collections.nCopies(batch.size(), "?"))),
+                    Long.class, args.toArray());
+            changed.forEach(formDefinitionCache::invalidate);
+            (open ? opened : closed).increment(changed.size());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package org.example.backend.service;
 
+import org.example.backend.dto.FormChangeSet;
+import org.example.backend.dto.PagedResponse;
+import org.example.backend.dto.UserSummary;
 import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
 import org.example.backend.model.Page;
 import org.example.backend.model.Question;
 import org.example.backend.model.User;
@@ -9,28 +13,54 @@ import org.example.backend.repository.PageRepository;
 import org.example.backend.repository.QuestionRepository;
 import org.example.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
 import java.util.*;
 
 @Service
 public class FormService {
 
+    private static final int ACL_BATCH_SIZE = 1000;
+    private static final int MAX_ACL_PAGE_SIZE = 100;
+
     private final FormRepository formRepository;
     private final PageRepository pageRepository;
     private final QuestionRepository questionRepository;
     private final UserRepository userRepository;
+    private final FormDefinitionCache formDefinitionCache;
+    private final FormAccessService formAccessService;
+    private final FormDiffEngine formDiffEngine;
+    private final ResponseStoreRegistry responseStores;
+    private final FormArchiver formArchiver;
+    private final FormScheduler formScheduler;
 
     @Autowired
     public FormService(FormRepository formRepository,
                        PageRepository pageRepository,
                        QuestionRepository questionRepository,
-                       UserRepository userRepository) {
+                       UserRepository userRepository,
+                       FormDefinitionCache formDefinitionCache,
+                       FormAccessService formAccessService,
+                       FormDiffEngine formDiffEngine,
+                       ResponseStoreRegistry responseStores,
+                       FormArchiver formArchiver,
+                       FormScheduler formScheduler) {
         this.formRepository = formRepository;
         this.questionRepository = questionRepository;
         this.pageRepository = pageRepository;
         this.userRepository = userRepository;
+        this.formDefinitionCache = formDefinitionCache;
+        this.formAccessService = formAccessService;
+        this.formDiffEngine = formDiffEngine;
+        this.responseStores = responseStores;
+        this.formArchiver = formArchiver;
+        this.formScheduler = formScheduler;
     }
 
     public Form createForm(Form form) {
@@ -48,6 +78,12 @@ public class FormService {
             newForm.setTemplate(form.isTemplate());
             newForm.setActive(form.isActive());
             newForm.setExpired(form.isExpired());
+            newForm.setStorageEngine(form.getStorageEngine());
+            newForm.setPartitioned(form.getPartitioned());
+            newForm.setRetentionMonths(form.getRetentionMonths());
+            newForm.setResponseLimit(form.getResponseLimit());
+            newForm.setOpensAt(form.getOpensAt());
+            newForm.setClosesAt(form.getClosesAt());
             // Don't set ID as it will be auto-generated
 
             System.out.println("Creating form with title: " + newForm.getTitle());
@@ -75,18 +111,29 @@ public class FormService {
         }
 
         createdForm.setPages(savedPages);
+        formScheduler.schedule(createdForm.getId(), createdForm.getOpensAt(), createdForm.getClosesAt());
 
         return createdForm;
     }
 
+    /**
+     * Returns the cached, read-only view of a form. Callers that want to
+     * modify the form must load it through {@link #validateFormOwnershipAndGet}.
+     */
     public Form getFormById(Long id) {
-        // Use the custom query to fetch form with all pages and questions
-        Optional<Form> formOptional = formRepository.findById(id);
+        FormDefinition definition = formDefinitionCache.get(id);
+        return definition != null ? definition.getForm() : null;
+    }
+
+    public FormDefinition getFormDefinition(Long id) {
+        return formDefinitionCache.get(id);
+    }
 
-        // If the form is present, return it, otherwise return null or throw an exception
-        return formOptional.orElse(null); // or you can throw an exception if the form is not found
+    private Form loadFormForUpdate(Long id) {
+        return formRepository.findById(id).orElse(null);
     }
 
+    @Transactional(readOnly = true)
     public List<Form> getAllFormsByOwner(User owner) {
         List<Form> forms = this.formRepository.getFormsByOwner(owner);
         System.out.println("Retrieved " + forms.size() + " forms for owner: " + owner.getId());
@@ -96,10 +143,12 @@ public class FormService {
         return forms;
     }
 
+    @Transactional(readOnly = true)
     public List<Form> getTemplateFormsByOwner(User owner) {
         return this.formRepository.getFormsByOwnerAndIsTemplateTrue(owner);
     }
 
+    @Transactional(readOnly = true)
     public List<Form> getActiveFormsByOwner(User owner) {
         return this.formRepository.getFormsByOwnerAndIsActiveTrue(owner);
     }
@@ -116,7 +165,9 @@ public class FormService {
         }
 
         // Update the form
-        return formRepository.save(form);
+        Form saved = formRepository.save(form);
+        formDefinitionCache.invalidate(form.getId());
+        return saved;
     }
 
     public Form updateFormWithPages(Form form) {
@@ -157,10 +208,12 @@ public class FormService {
         }
 
         updatedForm.setPages(savedPages);
+        formDefinitionCache.invalidate(updatedForm.getId());
 
         return updatedForm;
     }
 
+    @Transactional(readOnly = true)
     public List<Form> getFormsSharedWithUser(User user) {
         return formRepository.findByAllowedUsersContaining(user);
     }
@@ -168,7 +221,7 @@ public class FormService {
     // Business logic methods moved from controller
 
     public Form validateFormOwnershipAndGet(Long formId, User user) {
-        Form form = getFormById(formId);
+        Form form = loadFormForUpdate(formId);
         if (form == null) {
             return null;
         }
@@ -178,17 +231,41 @@ public class FormService {
         return form;
     }
 
+    /**
+     * Read-only variant of {@link #validateFormOwnershipAndGet} served from the
+     * definition cache, for the results and report endpoints.
+     */
+    public FormDefinition validateFormOwnershipAndGetDefinition(Long formId, User user) {
+        FormDefinition definition = formDefinitionCache.get(formId);
+        if (definition == null) {
+            return null;
+        }
+        if (!user.getId().equals(definition.getOwnerId())) {
+            throw new SecurityException("User does not have permission to access this form");
+        }
+        return definition;
+    }
+
     public Form createFormWithDefaults(Form newForm, User user) {
         newForm.setOwner(user);
         newForm.setActive(false);
         newForm.setExpired(false);
         newForm.setTemplate(false);
+        newForm.setStorageEngine(responseStores.engineForNewForm(newForm.getStorageEngine()));
+        if (newForm.hasMonthlyPartitions() && !TablePerFormResponseStore.ENGINE.equals(newForm.getStorageEngine())) {
+            // Only per-form tables can be partitioned
+            newForm.setPartitioned(false);
+        }
 
         return createForm(newForm);
     }
 
+    /**
+     * Merges an update into the stored form and returns what changed, with
+     * the saved form attached. Returns null if the form does not exist.
+     */
     @Transactional
-    public Form updateFormWithOwnershipCheck(Long formId, Form updatedForm, User user) {
+    public FormChangeSet updateFormWithOwnershipCheck(Long formId, Form updatedForm, User user) {
         Form existingForm = validateFormOwnershipAndGet(formId, user);
         if (existingForm == null) {
             return null; // or throw exception
@@ -200,85 +277,24 @@ public class FormService {
         existingForm.setActive(updatedForm.isActive());
         existingForm.setExpired(updatedForm.isExpired());
         existingForm.setTemplate(updatedForm.isTemplate());
-
-        // --- merge pages ---
-        mergePages(existingForm, updatedForm);
-
-        return formRepository.save(existingForm);
+        existingForm.setResponseLimit(updatedForm.getResponseLimit());
+        existingForm.setOpensAt(updatedForm.getOpensAt());
+        existingForm.setClosesAt(updatedForm.getClosesAt());
+        clearPassedDeadlines(existingForm);
+
+        // --- merge pages and questions ---
+        Set<Long> questionIdsBefore = FormDiffEngine.questionIds(existingForm);
+        FormChangeSet changes = formDiffEngine.apply(existingForm, updatedForm);
+
+        Form saved = formRepository.saveAndFlush(existingForm);
+        formDefinitionCache.invalidate(formId);
+        formScheduler.schedule(formId, saved.getOpensAt(), saved.getClosesAt());
+        restoreIfUnexpired(saved);
+
+        formDiffEngine.resolveAddedQuestions(changes, questionIdsBefore, saved);
+        return changes;
     }
 
-    private void mergePages(Form existingForm, Form updatedForm) {
-        // Track pages to remove
-        List<Page> pagesToRemove = new ArrayList<>();
-
-        // update existing pages or mark for removal
-        for (Page existingPage : existingForm.getPages()) {
-            Page updatedPage = updatedForm.getPages().stream()
-                    .filter(p -> p.getId() != null && p.getId().equals(existingPage.getId()))
-                    .findFirst()
-                    .orElse(null);
-
-            if (updatedPage == null) {
-                pagesToRemove.add(existingPage); // not in update → remove
-            } else {
-                existingPage.setPageIndex(updatedPage.getPageIndex());
-                mergeQuestions(existingPage, updatedPage);
-            }
-        }
-
-        // remove old pages
-        existingForm.getPages().removeAll(pagesToRemove);
-
-        // add new pages
-        for (Page updatedPage : updatedForm.getPages()) {
-            if (updatedPage.getId() == null) {
-                updatedPage.setForm(existingForm);
-
-                for (Question q : updatedPage.getQuestions()) {
-                    q.setPage(updatedPage);
-                }
-
-                existingForm.getPages().add(updatedPage);
-            }
-        }
-    }
-
-    private void mergeQuestions(Page existingPage, Page updatedPage) {
-        // Track questions to remove
-        List<Question> toRemove = new ArrayList<>();
-
-        for (Question existingQ : existingPage.getQuestions()) {
-            Question updatedQ = updatedPage.getQuestions().stream()
-                    .filter(q -> q.getId() != null && q.getId().equals(existingQ.getId()))
-                    .findFirst()
-                    .orElse(null);
-
-            if (updatedQ == null) {
-                toRemove.add(existingQ); // missing → remove
-            } else {
-                // update existing question
-                existingQ.setText(updatedQ.getText());
-                existingQ.setType(updatedQ.getType());
-                existingQ.setDataType(updatedQ.getDataType());
-                existingQ.setOptional(updatedQ.isOptional());
-                existingQ.setChoices(updatedQ.getChoices());
-                existingQ.setCreatedAtTs(updatedQ.getCreatedAtTs());
-            }
-        }
-
-        existingPage.getQuestions().removeAll(toRemove);
-
-        // add new questions
-        for (Question updatedQ : updatedPage.getQuestions()) {
-            if (updatedQ.getId() == null) {
-                updatedQ.setPage(existingPage);
-                existingPage.getQuestions().add(updatedQ);
-            }
-        }
-    }
-
-
-
     public Form setFormAsTemplate(Long formId, User user) {
         Form form = validateFormOwnershipAndGet(formId, user);
         if (form == null) {
@@ -297,71 +313,162 @@ public class FormService {
 
         form.setActive(active);
         form.setExpired(expired);
-        return updateForm(form);
+        clearPassedDeadlines(form);
+        Form saved = updateForm(form);
+        restoreIfUnexpired(saved);
+        return saved;
+    }
+
+    // A status set by hand overrides deadlines that already passed, so the scheduler does not undo it
+    static void clearPassedDeadlines(Form form) {
+        Instant now = Instant.now();
+        if (form.getOpensAt() != null && (form.isActive() || !form.getOpensAt().isAfter(now))) {
+            form.setOpensAt(null);
+        }
+        if (!form.isExpired() && form.getClosesAt() != null && !form.getClosesAt().isAfter(now)) {
+            form.setClosesAt(null);
+        }
+    }
+
+    // Responses were archived while the form was expired; the archive serves them until restored
+    private void restoreIfUnexpired(Form saved) {
+        if (saved.isExpired() || !ArchivedResponseStore.ENGINE.equals(saved.getStorageEngine())) {
+            return;
+        }
+        Long formId = saved.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The restore reads the form back, so it has to see the update
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    formArchiver.restoreAsync(formId);
+                }
+            });
+        } else {
+            formArchiver.restoreAsync(formId);
+        }
     }
 
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> getFormUserDetails(Long formId, User user) {
-        Form form = validateFormOwnershipAndGet(formId, user);
-        if (form == null) {
+        if (!validateFormOwnership(formId, user)) {
             return new ArrayList<>();
         }
 
         List<Map<String, Object>> userDetailsList = new ArrayList<>();
-        if (form.getAllowedUsers() != null) {
-            for (User u : form.getAllowedUsers()) {
-                Map<String, Object> userDetail = new HashMap<>();
-                userDetail.put("id", u.getId());
-                userDetail.put("username", u.getUsername());
-                userDetailsList.add(userDetail);
-            }
+        for (UserSummary u : formRepository.findAllowedUserSummaries(formId)) {
+            Map<String, Object> userDetail = new HashMap<>();
+            userDetail.put("id", u.id());
+            userDetail.put("username", u.username());
+            userDetailsList.add(userDetail);
         }
         return userDetailsList;
     }
 
+    @Transactional(readOnly = true)
+    public PagedResponse<UserSummary> getFormUsersPage(Long formId, int page, int size, User user) {
+        if (!validateFormOwnership(formId, user)) {
+            return null;
+        }
+        if (page < 0 || size < 1 || size > MAX_ACL_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page request");
+        }
+        org.springframework.data.domain.Page<UserSummary> result = formRepository.findAllowedUserSummaries(
+                formId, PageRequest.of(page, size, Sort.by("username")));
+        return PagedResponse.of(result.getContent(), page, size, result.getTotalElements());
+    }
+
+    @Transactional
     public boolean addUsersToForm(Long formId, List<Long> userIds, User owner) {
-        Form form = validateFormOwnershipAndGet(formId, owner);
-        if (form == null) {
+        if (!validateFormOwnership(formId, owner)) {
             return false;
         }
 
-        List<User> usersToAdd = userRepository.findAllById(userIds);
-        form.getAllowedUsers().addAll(usersToAdd);
-        updateForm(form);
+        int granted = 0;
+        for (List<Long> chunk : chunks(userIds)) {
+            int inserted = formRepository.grantAccess(formId, chunk);
+            if (inserted > 0) {
+                granted += inserted;
+                formAccessService.onGranted(formId, chunk);
+            }
+        }
+        if (granted > 0) {
+            formRepository.restrict(formId);
+        }
         return true;
     }
 
+    @Transactional
     public boolean addUserToForm(Long formId, Long userId, User owner) {
-        Form form = validateFormOwnershipAndGet(formId, owner);
-        if (form == null) {
+        if (!validateFormOwnership(formId, owner)) {
             return false;
         }
 
-        User userToAdd = userRepository.findById(userId).orElse(null);
-        if (userToAdd == null) {
+        if (userId == null || !userRepository.existsById(userId)) {
             return false;
         }
 
-        form.getAllowedUsers().add(userToAdd);
-        updateForm(form);
+        if (formRepository.grantAccess(formId, List.of(userId)) > 0) {
+            formRepository.restrict(formId);
+            formAccessService.onGranted(formId, List.of(userId));
+        }
         return true;
     }
 
+    @Transactional
     public boolean removeUserFromForm(Long formId, Long userId, User owner) {
-        Form form = validateFormOwnershipAndGet(formId, owner);
-        if (form == null) {
+        if (userId == null) {
             return false;
         }
+        return removeUsersFromForm(formId, List.of(userId), owner);
+    }
 
-        boolean removed = form.getAllowedUsers().removeIf(u -> u.getId().equals(userId));
-        if (removed) {
-            updateForm(form);
-            return true;
+    @Transactional
+    public boolean removeUsersFromForm(Long formId, List<Long> userIds, User owner) {
+        if (!validateFormOwnership(formId, owner)) {
+            return false;
         }
-        return false;
+
+        int revoked = 0;
+        for (List<Long> chunk : chunks(userIds)) {
+            revoked += formRepository.revokeAccess(formId, chunk);
+            formAccessService.onRevoked(formId, chunk);
+        }
+        return revoked > 0;
+    }
+
+    /**
+     * Ownership check that reads only the owner id, for operations that never
+     * need the form itself. Returns false if the form does not exist.
+     */
+    private boolean validateFormOwnership(Long formId, User user) {
+        Long ownerId = formRepository.findOwnerIdById(formId).orElse(null);
+        if (ownerId == null) {
+            return false;
+        }
+        if (!ownerId.equals(user.getId())) {
+            throw new SecurityException("User does not have permission to access this form");
+        }
+        return true;
+    }
+
+    // Keeps IN lists well below the driver's bind parameter limit
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<Long> distinct = ids == null ? List.of()
+                : ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += ACL_BATCH_SIZE) {
+            chunks.add(distinct.subList(i, Math.min(i + ACL_BATCH_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    public boolean canUserFillForm(FormDefinition form, User user) {
+        return formAccessService.canFill(form, user.getId());
     }
 
     public boolean validateFormSubmission(Long formId) {
-        Form form = getFormById(formId);
+        FormDefinition form = getFormDefinition(formId);
         if (form == null) {
             return false;
         }
@@ -369,9 +476,14 @@ public class FormService {
         // if (!form.isActive()) {
         //     return false;
         // }
-        // if (form.isExpired()) {
-        //     return false;
-        // }
-        return true;
+        if (form.isExpired()) {
+            return false;
+        }
+        // Checked against the clock rather than the flags, which change only on the scheduler's next tick
+        Instant now = Instant.now();
+        if (form.getOpensAt() != null && now.isBefore(form.getOpensAt())) {
+            return false;
+        }
+        return form.getClosesAt() == null || now.isBefore(form.getClosesAt());
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Question;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Stores every form's responses in the shared, hash-partitioned
+ * {@code response_store} table with answers as JSONB (see schema.sql).
+ * Question edits need no DDL and no per-form tables are created.
+ */
+@Component
+public class JsonbResponseStore implements ResponseStore {
+
+    public static final String ENGINE = "JSONB";
+
+    private static final TypeReference<LinkedHashMap<String, Object>> ANSWERS = new TypeReference<>() {};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public String engine() {
+        return ENGINE;
+    }
+
+    @Override
+    public void createSchema(Form form) {
+        // Partitions are created once for all forms by schema.sql
+    }
+
+    @Override
+    public CompletableFuture<Void> addColumns(Long formId, Map<String, String> columns) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public long insert(Long formId, Long userId, Map<String, Object> values) {
+        String answers;
+        try {
+            answers = objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to encode answers: " + e.getMessage(), e);
+        }
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO response_store (form_id, user_id, answers) VALUES (?, ?, ?::jsonb) RETURNING id",
+                Long.class, formId, userId, answers);
+        return id != null ? id : -1;
+    }
+
+    @Override
+    public List<Map<String, Object>> findAll(Long formId) {
+        return findAfter(formId, 0);
+    }
+
+    @Override
+    public List<Map<String, Object>> findAfter(Long formId, long afterId) {
+        return jdbcTemplate.query(
+                "SELECT id, user_id, answers FROM response_store WHERE form_id = ? AND id > ? ORDER BY id",
+                (rs, rowNum) -> readRow(rs), formId, afterId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void scan(Long formId, int batchSize, Consumer<List<Map<String, Object>>> batches) {
+        // PostgreSQL only fetches through a cursor inside a transaction
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, user_id, answers FROM response_store WHERE form_id = ? ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setLong(1, formId);
+            ps.setFetchSize(batchSize);
+            return ps;
+        }, rs -> {
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            while (rs.next()) {
+                batch.add(readRow(rs));
+                if (batch.size() == batchSize) {
+                    batches.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.accept(batch);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Watermark watermark(Long formId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*), COALESCE(max(id), 0) FROM response_store WHERE form_id = ?",
+                (rs, rowNum) -> new Watermark(rs.getLong(1), rs.getLong(2)), formId);
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(FormDefinition form, List<String> groupBy, String target, String op,
+                                               OffsetDateTime from, OffsetDateTime to) {
+        List<String> groupExpressions = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (String column : groupBy) {
+            String expression = columnExpression(form, column);
+            groupExpressions.add(expression);
+            labels.add(ResponseColumns.decodeExpression(ResponseColumns.question(form, column), expression));
+        }
+        String targetExpression = ResponseColumns.aggregateTarget(form, target, columnExpression(form, target), op);
+
+        List<Object> args = new ArrayList<>();
+        args.add(form.getFormId());
+        String where = "WHERE form_id = ?" + ResponseColumns.timeRange(from, to, " AND", args);
+
+        String sql;
+        if (groupBy.isEmpty()) {
+            sql = "SELECT " + op + "(" + targetExpression + ") AS Result " +
+                    "FROM response_store " + where;
+        } else {
+            sql = "SELECT " + String.join(" || '_' || ", labels) + " AS Combined_Selects, " +
+                    op + "(" + targetExpression + ") AS Result " +
+                    "FROM response_store " + where +
+                    " GROUP BY " + String.join(", ", groupExpressions);
+        }
+        return jdbcTemplate.queryForList(sql, args.toArray());
+    }
+
+    @Override
+    public Map<Long, Long> countMasks(FormDefinition form, String column) {
+        String expression = columnExpression(form, column);
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT " + expression + " AS mask, COUNT(*) AS responses FROM response_store " +
+                        "WHERE form_id = ? AND " + expression + " IS NOT NULL GROUP BY 1",
+                rs -> {
+                    counts.put(rs.getLong("mask"), rs.getLong("responses"));
+                }, form.getFormId());
+        return counts;
+    }
+
+    // Typed accessor for a validated column name, matching the table engine's types
+    private static String columnExpression(FormDefinition form, String column) {
+        if ("user_id".equals(column)) {
+            return "user_id";
+        }
+        Question question = ResponseColumns.question(form, column);
+        String text = "(answers->>'" + column + "')";
+        String type = ResponseColumns.sqlType(question);
+        return type.startsWith("VARCHAR") || type.equals("TEXT") ? text : "(" + text + "::" + type + ")";
+    }
+
+    private Map<String, Object> readRow(ResultSet rs) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", rs.getLong("id"));
+        row.put("user_id", rs.getObject("user_id"));
+        row.putAll(readAnswers(rs.getString("answers")));
+        return row;
+    }
+
+    private Map<String, Object> readAnswers(String json) {
+        try {
+            // Decimals keep their scale, as the (answers->>'q')::NUMERIC casts do
+            return objectMapper.readerFor(ANSWERS)
+                    .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                    .readValue(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt answers document: " + e.getMessage(), e);
+        }
+    }
+}
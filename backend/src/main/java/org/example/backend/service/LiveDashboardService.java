@@ -0,0 +1,276 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.config.DataSourceRouting;
+import org.example.backend.config.Workload;
+import org.example.backend.dto.ReportRequest;
+import org.example.backend.model.FormDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pushes response counts and report aggregates of a form to the dashboards
+ * watching it, over server-sent events.
+ *
+ * A submission only marks its form dirty. Once per tick, each dirty form is
+ * queried once and the result fanned out to all of its subscribers, so a
+ * burst of submissions costs one count and one query per distinct report,
+ * however many dashboards are open. Subscribers are async responses held by
+ * the servlet container, not threads; all sends happen on the tick.
+ *
+ * Dirty marks are local to the instance that took the submission, so every
+ * form is also refreshed on a slower interval to pick up the others.
+ */
+@Service
+public class LiveDashboardService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveDashboardService.class);
+
+    // View of subscribers that only want response counts
+    private static final ReportRequest COUNTS_ONLY = new ReportRequest(List.of(), null, null, null, null, null);
+
+    private final ResponseStoreRegistry responseStores;
+    private final FormDefinitionCache formDefinitionCache;
+    private final QueryService queryService;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final int maxSubscribers;
+    private final long heartbeatMs;
+
+    private final Map<Long, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private volatile long lastHeartbeat = System.currentTimeMillis();
+
+    private final Counter ticks;
+    private final Counter events;
+
+    /** Subscribers of one form, grouped by the report they watch. */
+    private static final class Topic {
+        final Map<ReportRequest, View> views = new ConcurrentHashMap<>();
+        final AtomicBoolean dirty = new AtomicBoolean(true);
+        volatile ResponseStore.Watermark sent;
+    }
+
+    private static final class View {
+        final Set<SseEmitter> emitters = ConcurrentHashMap.newKeySet();
+        volatile List<Map<String, Object>> sent;
+    }
+
+    public LiveDashboardService(ResponseStoreRegistry responseStores,
+                                FormDefinitionCache formDefinitionCache,
+                                QueryService queryService,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${form.live.timeout-ms:1800000}") long timeoutMs,
+                                @Value("${form.live.max-subscribers:10000}") int maxSubscribers,
+                                @Value("${form.live.heartbeat-ms:15000}") long heartbeatMs) {
+        this.responseStores = responseStores;
+        this.formDefinitionCache = formDefinitionCache;
+        this.queryService = queryService;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeatMs = heartbeatMs;
+
+        this.ticks = meterRegistry.counter("form.live.ticks");
+        this.events = meterRegistry.counter("form.live.events");
+        Gauge.builder("form.live.subscribers", subscribers, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("form.live.forms", topics, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of a form's response count and, when {@code report} has
+     * a target and function, of that report's rows. Returns {@code null} when
+     * the subscriber limit is reached.
+     */
+    public SseEmitter subscribe(Long formId, ReportRequest report) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        ReportRequest key = report == null || report.target() == null || report.func() == null ? COUNTS_ONLY : report;
+        SseEmitter emitter = newEmitter();
+        // Under the map's lock for this form, so a concurrent unsubscribe cannot drop the topic meanwhile
+        Topic topic = topics.compute(formId, (id, existing) -> {
+            Topic t = existing != null ? existing : new Topic();
+            t.views.computeIfAbsent(key, k -> new View()).emitters.add(emitter);
+            return t;
+        });
+        View view = topic.views.get(key);
+
+        Runnable remove = () -> unsubscribe(formId, key, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // The current state right away; later ones come with the ticks
+        try {
+            ResponseStore.Watermark watermark = topic.sent;
+            if (watermark != null) {
+                emitter.send(event("responses", json(counts(formId, watermark))).get());
+            }
+            List<Map<String, Object>> rows = view.sent;
+            if (rows != null) {
+                emitter.send(event("aggregate", json(rows)).get());
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        topic.dirty.set(true);
+        return emitter;
+    }
+
+    /** Marks a form's dashboards for refresh on the next tick, after the submitting transaction commits. */
+    public void responseAdded(Long formId) {
+        Topic topic = topics.get(formId);
+        if (topic == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    topic.dirty.set(true);
+                }
+            });
+        } else {
+            topic.dirty.set(true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${form.live.tick-ms:1000}")
+    public void tick() {
+        ticks.increment();
+        for (Map.Entry<Long, Topic> entry : topics.entrySet()) {
+            Topic topic = entry.getValue();
+            if (topic.dirty.getAndSet(false)) {
+                try {
+                    DataSourceRouting.in(Workload.ANALYTICS, () -> {
+                        refresh(entry.getKey(), topic);
+                        return null;
+                    });
+                } catch (Exception e) {
+                    log.error("Failed to refresh live dashboards of form {}", entry.getKey(), e);
+                }
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastHeartbeat >= heartbeatMs) {
+            lastHeartbeat = now;
+            // Comments keep idle connections open through proxies and reveal closed ones
+            for (Map.Entry<Long, Topic> entry : topics.entrySet()) {
+                for (Map.Entry<ReportRequest, View> view : entry.getValue().views.entrySet()) {
+                    fanOut(entry.getKey(), view.getKey(), view.getValue(), () -> SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        }
+    }
+
+    /** Picks up submissions taken by other instances. */
+    @Scheduled(fixedDelayString = "${form.live.refresh-ms:30000}")
+    public void markAllDirty() {
+        topics.values().forEach(topic -> topic.dirty.set(true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        topics.values().forEach(topic -> topic.views.values()
+                .forEach(view -> view.emitters.forEach(SseEmitter::complete)));
+    }
+
+    private void refresh(Long formId, Topic topic) {
+        FormDefinition definition = formDefinitionCache.get(formId);
+        if (definition == null) {
+            return;
+        }
+        ResponseStore.Watermark watermark = responseStores.forForm(definition).watermark(formId);
+        boolean changed = !watermark.equals(topic.sent);
+        topic.sent = watermark;
+        String counts = changed ? json(counts(formId, watermark)) : null;
+        for (Map.Entry<ReportRequest, View> entry : topic.views.entrySet()) {
+            ReportRequest report = entry.getKey();
+            View view = entry.getValue();
+            if (changed) {
+                fanOut(formId, report, view, event("responses", counts));
+            }
+            if (report == COUNTS_ONLY || (!changed && view.sent != null)) {
+                continue;
+            }
+            List<Map<String, Object>> rows = queryService.runAggregatedQuery(formId, report.groupBy(),
+                    report.target(), report.func(), report.chartType(), report.from(), report.to());
+            if (!Objects.equals(rows, view.sent)) {
+                view.sent = rows;
+                fanOut(formId, report, view, event("aggregate", json(rows)));
+            }
+        }
+    }
+
+    // Event builders are single-use, so each subscriber gets its own around the shared payload
+    private void fanOut(Long formId, ReportRequest report, View view, Supplier<SseEmitter.SseEventBuilder> event) {
+        for (SseEmitter emitter : view.emitters) {
+            try {
+                emitter.send(event.get());
+                events.increment();
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(formId, report, emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void unsubscribe(Long formId, ReportRequest report, SseEmitter emitter) {
+        topics.computeIfPresent(formId, (id, topic) -> {
+            View view = topic.views.get(report);
+            if (view != null && view.emitters.remove(emitter)) {
+                subscribers.decrementAndGet();
+                if (view.emitters.isEmpty()) {
+                    topic.views.remove(report);
+                }
+            }
+            return topic.views.isEmpty() ? null : topic;
+        });
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private static Supplier<SseEmitter.SseEventBuilder> event(String name, String json) {
+        return () -> SseEmitter.event().name(name).data(json, MediaType.APPLICATION_JSON);
+    }
+
+    // Serialized once per tick rather than once per subscriber
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode live update: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> counts(Long formId, ResponseStore.Watermark watermark) {
+        return Map.of("formId", formId, "responses", watermark.rows(), "lastResponseId", watermark.maxId());
+    }
+}
@@ -1,38 +1,94 @@
 package org.example.backend.service;
 
-import org.example.backend.model.Page;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.backend.dto.OptionCounts;
+import org.example.backend.model.ChoiceCodes;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Question;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import org.example.backend.model.Form;
-import org.example.backend.model.Question;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class QueryService {
 
-    @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private static final Set<String> ALLOWED_FUNCTIONS = Set.of("COUNT", "SUM", "AVG", "MIN", "MAX");
 
     @Autowired
     private FormService formService;
 
+    @Autowired
+    private ResponseStoreRegistry responseStores;
+
+    @Autowired
+    private ColumnarAnalyticsEngine columnarEngine;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${form.analytics.columnar.enabled:true}")
+    private boolean columnarEnabled;
+
+    // Fraction of columnar queries also run against the store, to compare latencies
+    @Value("${form.analytics.compare-sample-rate:0.0}")
+    private double compareSampleRate;
+
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> runAggregatedQuery(Long formId, List<String> groupByFields, String targetField , String op , String chartType) {
-        Form form = formService.getFormById(formId);
+        return runAggregatedQuery(formId, groupByFields, targetField, op, chartType, null, null);
+    }
+
+    /**
+     * Runs a report aggregate, optionally over the responses submitted in
+     * [{@code from}, {@code to}) only.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> runAggregatedQuery(Long formId, List<String> groupByFields, String targetField, String op,
+                                                        String chartType, OffsetDateTime from, OffsetDateTime to) {
+        FormDefinition form = formService.getFormDefinition(formId);
         if (form == null) {
             throw new IllegalArgumentException("Form not found");
         }
-        List<String> allowedColumns = new java.util.ArrayList<>();
-        allowedColumns.add("user_id");
+        checkReport(form, groupByFields, targetField, op);
+        String func = op.toUpperCase();
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Invalid time range");
+        }
 
-        for (Page page : form.getPages()) {
-            for (Question q : page.getQuestions()) {
-                allowedColumns.add("question_" + q.getId());
+        ResponseStore store = responseStores.forForm(form);
+        // Snapshots hold every response, so time-bounded reports go to the store
+        boolean ranged = from != null || to != null;
+        if (columnarEnabled && !ranged && columnarEngine.supports(form, targetField, func)) {
+            List<Map<String, Object>> result = timer("COLUMNAR")
+                    .record(() -> columnarEngine.aggregate(form, groupByFields, targetField, func));
+            if (compareSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < compareSampleRate) {
+                List<Map<String, Object>> expected = timer(store.engine())
+                        .record(() -> store.aggregate(form, groupByFields, targetField, func, null, null));
+                if (!sameRows(expected, result)) {
+                    meterRegistry.counter("form.analytics.mismatches").increment();
+                }
             }
+            return result;
         }
+        return timer(store.engine()).record(() -> store.aggregate(form, groupByFields, targetField, func, from, to));
+    }
+
+    /** Throws {@link IllegalArgumentException} unless the report only uses the form's columns and a known function. */
+    public void checkReport(FormDefinition form, List<String> groupByFields, String targetField, String op) {
+        Set<String> allowedColumns = form.getAllowedColumns();
 
         for (String groupByField : groupByFields) {
             if (!allowedColumns.contains(groupByField)) {
@@ -42,19 +98,86 @@ public class QueryService {
         if (!allowedColumns.contains(targetField)) {
             throw new IllegalArgumentException("Invalid target field");
         }
-        String groupByClause = String.join(", ", groupByFields);
-        String concatenatedGroupBy = String.join(" || '_' || ", groupByFields);
-        String sql;
+        String func = op == null ? null : op.toUpperCase();
+        if (func == null || !ALLOWED_FUNCTIONS.contains(func)) {
+            throw new IllegalArgumentException("Invalid aggregate function: " + op);
+        }
+    }
 
-        if (groupByFields.isEmpty()) {
-            sql = "SELECT " + op + "(" + targetField + ") AS " + " Result " +
-                    " FROM form_" + formId + ";";
-        } else {
-            sql = "SELECT " + concatenatedGroupBy + " AS " + "Combined_Selects" +
-                    ", " + op + "(" + targetField + ") AS " + " Result "  +
-                    " FROM form_" + formId +
-                    " GROUP BY " + groupByClause + ";";
+    /**
+     * Counts how often each option of a checkbox question was picked, and
+     * how often each pair was picked together, in one pass over the distinct
+     * stored masks.
+     */
+    @Transactional(readOnly = true)
+    public OptionCounts optionCounts(FormDefinition form, String column) {
+        if (!form.getAllowedColumns().contains(column)) {
+            throw new IllegalArgumentException("Invalid field: " + column);
         }
-        return jdbcTemplate.queryForList(sql);
+        Question question = ResponseColumns.question(form, column);
+        if (question == null || !ChoiceCodes.isMask(question)) {
+            throw new IllegalArgumentException("Not a checkbox question: " + column);
+        }
+
+        ResponseStore store = responseStores.forForm(form);
+        Map<Long, Long> masks = timer(store.engine()).record(() -> store.countMasks(form, column));
+
+        List<Integer> codes = ChoiceCodes.codes(question);
+        int[] slotOfCode = new int[ChoiceCodes.MAX_MASK_CODES];
+        List<String> options = new ArrayList<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            slotOfCode[codes.get(i)] = i;
+            options.add(question.getChoiceCodes().get(codes.get(i)));
+        }
+
+        long responses = 0;
+        long[] counts = new long[codes.size()];
+        long[][] cooccurrence = new long[codes.size()][codes.size()];
+        for (Map.Entry<Long, Long> entry : masks.entrySet()) {
+            long mask = entry.getKey();
+            long n = entry.getValue();
+            responses += n;
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+                int a = slotOfCode[Long.numberOfTrailingZeros(rest)];
+                counts[a] += n;
+                for (long other = rest; other != 0; other &= other - 1) {
+                    int b = slotOfCode[Long.numberOfTrailingZeros(other)];
+                    cooccurrence[a][b] += n;
+                    if (a != b) {
+                        cooccurrence[b][a] += n;
+                    }
+                }
+            }
+        }
+        return new OptionCounts(column, responses, options, counts, cooccurrence);
+    }
+
+    // Order-insensitive; numbers compare by value, so 2 and 2.0 are the same result
+    static boolean sameRows(List<Map<String, Object>> expected, List<Map<String, Object>> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        Map<List<Object>, Integer> remaining = new HashMap<>();
+        for (Map<String, Object> row : expected) {
+            remaining.merge(normalize(row), 1, Integer::sum);
+        }
+        for (Map<String, Object> row : actual) {
+            if (remaining.merge(normalize(row), -1, Integer::sum) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Object> normalize(Map<String, Object> row) {
+        return Arrays.asList(normalize(row.get("combined_selects")), normalize(row.get("result")));
+    }
+
+    private static Object normalize(Object value) {
+        return value instanceof Number n ? new BigDecimal(n.toString()).stripTrailingZeros() : value;
+    }
+
+    private Timer timer(String engine) {
+        return Timer.builder("form.responses.aggregate").tag("engine", engine).register(meterRegistry);
     }
 }
@@ -0,0 +1,381 @@
+package org.example.backend.service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed columnar file holding an archived form's responses.
+ *
+ * Layout: magic, version, the column descriptors (name and type tag), then
+ * row groups of up to {@code rowsPerGroup} rows, each holding one deflated
+ * block per column (a null bitmap followed by the non-null values), and a
+ * trailer with the total row count and the highest response id. Files are
+ * read through a read-only memory mapping and only the blocks of the group
+ * being read are inflated.
+ */
+public final class ResponseArchive {
+
+    private static final int MAGIC = 0x46524D41; // "FRMA"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = 4 + 8 + 8 + 4;
+
+    static final byte LONG = 1;
+    static final byte DECIMAL = 2;
+    static final byte BOOLEAN = 3;
+    static final byte DATE = 4;
+    static final byte TIMESTAMP = 5;
+    static final byte STRING = 6;
+
+    private ResponseArchive() {
+    }
+
+    /**
+     * Writes all rows of a result set to {@code target}, replacing it
+     * atomically once complete and synced to disk. Returns the number of rows
+     * written.
+     */
+    public static long write(ResultSet rs, Path target, int rowsPerGroup) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        String[] names = new String[columnCount];
+        byte[] tags = new byte[columnCount];
+        int idColumn = -1;
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = meta.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+            tags[i] = tagOf(meta.getColumnType(i + 1));
+            if ("id".equals(names[i])) {
+                idColumn = i;
+            }
+        }
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long rows = 0;
+        long maxId = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                out.writeUTF(names[i]);
+                out.writeByte(tags[i]);
+            }
+
+            ColumnWriter[] columns = new ColumnWriter[columnCount];
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                boolean more = rs.next();
+                while (more) {
+                    for (int i = 0; i < columnCount; i++) {
+                        columns[i] = new ColumnWriter(tags[i]);
+                    }
+                    int groupRows = 0;
+                    while (more && groupRows < rowsPerGroup) {
+                        for (int i = 0; i < columnCount; i++) {
+                            columns[i].add(rs, i + 1, groupRows);
+                        }
+                        if (idColumn >= 0) {
+                            maxId = Math.max(maxId, rs.getLong(idColumn + 1));
+                        }
+                        groupRows++;
+                        more = rs.next();
+                    }
+                    out.writeInt(groupRows);
+                    for (ColumnWriter column : columns) {
+                        byte[] raw = column.toBytes(groupRows);
+                        byte[] compressed = deflate(deflater, raw);
+                        out.writeInt(raw.length);
+                        out.writeInt(compressed.length);
+                        out.write(compressed);
+                    }
+                    rows += groupRows;
+                }
+            } finally {
+                deflater.end();
+            }
+
+            out.writeInt(0);
+            out.writeLong(rows);
+            out.writeLong(maxId);
+            out.writeInt(MAGIC);
+            out.flush();
+            // The table may be dropped right after this returns, so the file has to be on disk first
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+        return rows;
+    }
+
+    // Makes the rename durable; not every platform can open a directory, and there it is skipped
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // e.g. Windows
+        }
+    }
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    private static byte tagOf(int sqlType) {
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> LONG;
+            case Types.NUMERIC, Types.DECIMAL, Types.DOUBLE, Types.FLOAT, Types.REAL -> DECIMAL;
+            case Types.BOOLEAN, Types.BIT -> BOOLEAN;
+            case Types.DATE -> DATE;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> TIMESTAMP;
+            default -> STRING;
+        };
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    // Values of one column within the current row group
+    private static final class ColumnWriter {
+        private final byte tag;
+        private final BitSet nulls = new BitSet();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream values = new DataOutputStream(bytes);
+
+        ColumnWriter(byte tag) {
+            this.tag = tag;
+        }
+
+        void add(ResultSet rs, int column, int row) throws SQLException, IOException {
+            switch (tag) {
+                case LONG -> {
+                    long v = rs.getLong(column);
+                    if (rs.wasNull()) nulls.set(row); else values.writeLong(v);
+                }
+                case DECIMAL -> {
+                    BigDecimal v = rs.getBigDecimal(column);
+                    if (v == null) nulls.set(row); else writeString(v.toPlainString());
+                }
+                case BOOLEAN -> {
+                    boolean v = rs.getBoolean(column);
+                    if (rs.wasNull()) nulls.set(row); else values.writeByte(v ? 1 : 0);
+                }
+                case DATE -> {
+                    java.sql.Date v = rs.getDate(column);
+                    if (v == null) nulls.set(row); else values.writeLong(v.toLocalDate().toEpochDay());
+                }
+                case TIMESTAMP -> {
+                    java.sql.Timestamp v = rs.getTimestamp(column);
+                    if (v == null) {
+                        nulls.set(row);
+                    } else {
+                        Instant instant = v.toInstant();
+                        values.writeLong(instant.getEpochSecond());
+                        values.writeInt(instant.getNano());
+                    }
+                }
+                default -> {
+                    String v = rs.getString(column);
+                    if (v == null) nulls.set(row); else writeString(v);
+                }
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            values.writeInt(utf8.length);
+            values.write(utf8);
+        }
+
+        byte[] toBytes(int rows) throws IOException {
+            byte[] bitmap = Arrays.copyOf(nulls.toByteArray(), (rows + 7) / 8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bitmap.length + bytes.size());
+            out.write(bitmap);
+            values.flush();
+            bytes.writeTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    /** Read-only view of an archive file through a memory mapping. */
+    public static final class Reader {
+        private final MappedByteBuffer buffer;
+        private final List<String> columns = new ArrayList<>();
+        private final byte[] tags;
+        private final int dataStart;
+        private final long rowCount;
+        private final long maxId;
+
+        private Reader(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Archive too large to map: " + file);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            ByteBuffer header = buffer.duplicate();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a response archive: " + file);
+            }
+            int columnCount = header.getInt();
+            tags = new byte[columnCount];
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(header));
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(in.readUTF());
+                tags[i] = in.readByte();
+            }
+            dataStart = header.position();
+
+            ByteBuffer trailer = buffer.duplicate();
+            trailer.position(buffer.limit() - TRAILER_BYTES + 4);
+            rowCount = trailer.getLong();
+            maxId = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("Truncated response archive: " + file);
+            }
+        }
+
+        public List<String> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public long getMaxId() {
+            return maxId;
+        }
+
+        /** Decodes the file one row group at a time. */
+        public void forEachGroup(Consumer<List<Map<String, Object>>> consumer) {
+            ByteBuffer data = buffer.duplicate();
+            data.position(dataStart);
+            Inflater inflater = new Inflater();
+            try {
+                for (int groupRows = data.getInt(); groupRows > 0; groupRows = data.getInt()) {
+                    List<Map<String, Object>> rows = new ArrayList<>(groupRows);
+                    for (int r = 0; r < groupRows; r++) {
+                        rows.add(new LinkedHashMap<>());
+                    }
+                    for (int c = 0; c < tags.length; c++) {
+                        int rawLength = data.getInt();
+                        int compressedLength = data.getInt();
+                        ByteBuffer block = data.slice();
+                        block.limit(compressedLength);
+                        data.position(data.position() + compressedLength);
+                        readColumn(inflate(inflater, block, rawLength), columns.get(c), tags[c], rows);
+                    }
+                    consumer.accept(rows);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+
+        public List<Map<String, Object>> readAll() {
+            List<Map<String, Object>> all = new ArrayList<>((int) Math.min(rowCount, Integer.MAX_VALUE - 8));
+            forEachGroup(all::addAll);
+            return all;
+        }
+
+        private static ByteBuffer inflate(Inflater inflater, ByteBuffer block, int rawLength) {
+            inflater.reset();
+            inflater.setInput(block);
+            byte[] raw = new byte[rawLength];
+            try {
+                int offset = 0;
+                while (offset < rawLength && !inflater.finished()) {
+                    offset += inflater.inflate(raw, offset, rawLength - offset);
+                }
+            } catch (DataFormatException e) {
+                throw new UncheckedIOException(new IOException("Corrupt response archive block", e));
+            }
+            return ByteBuffer.wrap(raw);
+        }
+
+        private static void readColumn(ByteBuffer raw, String name, byte tag, List<Map<String, Object>> rows) {
+            byte[] bitmap = new byte[(rows.size() + 7) / 8];
+            raw.get(bitmap);
+            BitSet nulls = BitSet.valueOf(bitmap);
+            for (int r = 0; r < rows.size(); r++) {
+                Object value = null;
+                if (!nulls.get(r)) {
+                    value = switch (tag) {
+                        case LONG -> raw.getLong();
+                        case DECIMAL -> new BigDecimal(readString(raw));
+                        case BOOLEAN -> raw.get() != 0;
+                        case DATE -> LocalDate.ofEpochDay(raw.getLong());
+                        case TIMESTAMP -> OffsetDateTime.ofInstant(
+                                Instant.ofEpochSecond(raw.getLong(), raw.getInt()), ZoneOffset.UTC);
+                        default -> readString(raw);
+                    };
+                }
+                rows.get(r).put(name, value);
+            }
+        }
+
+        private static String readString(ByteBuffer raw) {
+            byte[] utf8 = new byte[raw.getInt()];
+            raw.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Lets DataInputStream.readUTF parse the descriptors straight from the mapping
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
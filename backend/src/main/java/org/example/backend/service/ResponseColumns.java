@@ -0,0 +1,121 @@
+package org.example.backend.service;
+
+import org.example.backend.model.ChoiceCodes;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Question;
+import org.example.backend.model.ResponseType;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps questions to the SQL type of their response column and converts
+ * submitted values to that type. Shared by every {@link ResponseStore}.
+ */
+public final class ResponseColumns {
+
+    private ResponseColumns() {
+    }
+
+    public static String columnName(Question question) {
+        return "question_" + question.getId();
+    }
+
+    /** The question behind a validated column name, or {@code null} for {@code user_id}. */
+    public static Question question(FormDefinition form, String column) {
+        if (!column.startsWith("question_")) {
+            return null;
+        }
+        return form.getQuestion(Long.parseLong(column.substring("question_".length())));
+    }
+
+    public static String sqlType(Question question) {
+        return ResponseType.of(question).sqlType();
+    }
+
+    /**
+     * Converts one answer without a compiled converter. The submit path uses
+     * the converters cached on {@link FormDefinition} instead.
+     */
+    public static Object convert(Question question, Object value) {
+        if (value == null) return null;
+        return ResponseType.of(question).converter(question).convert(value);
+    }
+
+    /**
+     * SQL expression turning a column's stored value back into its label.
+     * Only choice-coded columns differ from the stored value.
+     */
+    public static String decodeExpression(Question question, String expression) {
+        if (question == null || !ChoiceCodes.hasCodes(question)) {
+            return expression;
+        }
+        if (ChoiceCodes.isMask(question)) {
+            // Rendered like the lists stored before checkbox answers were masks
+            StringBuilder sql = new StringBuilder("(CASE WHEN ").append(expression)
+                    .append(" IS NULL THEN NULL ELSE '[' || concat_ws(', '");
+            for (Integer code : ChoiceCodes.codes(question)) {
+                sql.append(", CASE WHEN (").append(expression).append(" & ").append(1L << code)
+                   .append(") <> 0 THEN '").append(question.getChoiceCodes().get(code).replace("'", "''"))
+                   .append("' END");
+            }
+            return sql.append(") || ']' END)").toString();
+        }
+        StringBuilder sql = new StringBuilder("(CASE ").append(expression);
+        for (Map.Entry<Integer, String> code : question.getChoiceCodes().entrySet()) {
+            sql.append(" WHEN ").append(code.getKey())
+               .append(" THEN '").append(code.getValue().replace("'", "''")).append('\'');
+        }
+        return sql.append(" END)").toString();
+    }
+
+    /**
+     * Argument of an aggregate over {@code column}. MIN and MAX compare labels
+     * as they did before choices were coded; counting works on the codes.
+     */
+    public static String aggregateTarget(FormDefinition form, String column, String expression, String op) {
+        if ("MIN".equals(op) || "MAX".equals(op)) {
+            return decodeExpression(question(form, column), expression);
+        }
+        return expression;
+    }
+
+    /** Replaces choice codes in fetched rows with their labels, in place. */
+    public static void decodeRows(FormDefinition form, List<Map<String, Object>> rows) {
+        for (Question question : form.getQuestions()) {
+            String column = columnName(question);
+            if (ChoiceCodes.isEncoded(question)) {
+                for (Map<String, Object> row : rows) {
+                    row.computeIfPresent(column, (key, code) -> ChoiceCodes.labelOf(question, code));
+                }
+            } else if (ChoiceCodes.isMask(question)) {
+                for (Map<String, Object> row : rows) {
+                    row.computeIfPresent(column, (key, mask) -> ChoiceCodes.labelsOf(question, mask));
+                }
+            }
+        }
+    }
+
+    /**
+     * SQL condition on {@code submitted_at} for an optional time range,
+     * starting with {@code prefix} (" WHERE" is used when it is empty), or an
+     * empty string when neither bound is set. Bound values are added to args.
+     */
+    public static String timeRange(OffsetDateTime from, OffsetDateTime to, String prefix, List<Object> args) {
+        List<String> conditions = new ArrayList<>(2);
+        if (from != null) {
+            conditions.add("submitted_at >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            conditions.add("submitted_at < ?");
+            args.add(to);
+        }
+        if (conditions.isEmpty()) {
+            return "";
+        }
+        return (prefix.isEmpty() ? " WHERE" : prefix) + " " + String.join(" AND ", conditions);
+    }
+}
@@ -0,0 +1,246 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.FormDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of responses per form, kept in {@code response_counters} so that
+ * listings and response limits never count a response table.
+ *
+ * Forms without a limit count in memory: a {@link LongAdder} per form, so
+ * concurrent submissions add to separate cells, flushed into the table as a
+ * delta every few seconds. Forms with a limit reserve their slot in the table
+ * itself, with a conditional increment in the submitting transaction; the row
+ * lock makes the check exact across concurrent submissions and instances,
+ * and a rolled-back submission gives its slot back.
+ *
+ * Deltas lost in a crash and responses dropped by partition retention make
+ * the table drift, so counters are periodically reconciled with the stores.
+ */
+@Service
+public class ResponseCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCounters.class);
+
+    /** Thrown when a form already has as many responses as its limit allows. */
+    public static class LimitReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public LimitReachedException(Long formId, int limit) {
+            super("Form " + formId + " is closed: it reached its limit of " + limit + " responses");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ResponseStoreRegistry responseStores;
+    private final FormDefinitionCache formDefinitionCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileBatch;
+
+    private final Map<Long, Tally> pending = new ConcurrentHashMap<>();
+    // Last count seen for limited forms, to turn away submissions to full forms without a query
+    private final Map<Long, Long> limitedCounts = new ConcurrentHashMap<>();
+
+    private final Counter rejected;
+    private final Counter reconciled;
+
+    /**
+     * Responses counted here for one form. The adder only grows and flushes
+     * write the growth since the previous one, since resetting an adder can
+     * lose increments made while it resets.
+     */
+    private static final class Tally {
+        final LongAdder counted = new LongAdder();
+        long flushed;
+
+        long unflushed() {
+            return counted.sum() - flushed;
+        }
+    }
+
+    public ResponseCounters(JdbcTemplate jdbcTemplate,
+                            ResponseStoreRegistry responseStores,
+                            FormDefinitionCache formDefinitionCache,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${form.counters.reconcile-batch:50}") int reconcileBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.responseStores = responseStores;
+        this.formDefinitionCache = formDefinitionCache;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileBatch = reconcileBatch;
+
+        this.rejected = meterRegistry.counter("form.responses.limit.rejected");
+        this.reconciled = meterRegistry.counter("form.counters.reconciled");
+        Gauge.builder("form.counters.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /** Throws {@link LimitReachedException} if the form is known to be full; no query. */
+    public void checkOpen(FormDefinition form) {
+        Integer limit = form.getResponseLimit();
+        Long known = limit == null ? null : limitedCounts.get(form.getFormId());
+        if (known != null && known >= limit) {
+            rejected.increment();
+            throw new LimitReachedException(form.getFormId(), limit);
+        }
+    }
+
+    /**
+     * Counts a response about to be inserted in the current transaction.
+     * For a form with a limit this takes one of the remaining slots, or
+     * throws {@link LimitReachedException} when there is none.
+     */
+    public void reserve(FormDefinition form) {
+        Long formId = form.getFormId();
+        Integer limit = form.getResponseLimit();
+        if (limit == null) {
+            LongAdder counted = pending.computeIfAbsent(formId, id -> new Tally()).counted;
+            afterCommit(counted::increment);
+            return;
+        }
+        Long count = increment(formId, limit);
+        if (count == null && !exists(formId)) {
+            seed(form);
+            count = increment(formId, limit);
+        }
+        if (count == null) {
+            limitedCounts.put(formId, (long) limit);
+            rejected.increment();
+            throw new LimitReachedException(formId, limit);
+        }
+        limitedCounts.put(formId, count);
+    }
+
+    /** Responses of a form as last flushed, plus those counted here since. */
+    public long count(Long formId) {
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT responses FROM response_counters WHERE form_id = ?", Long.class, formId);
+        Tally tally = pending.get(formId);
+        return (rows.isEmpty() ? 0 : rows.get(0)) + (tally != null ? tally.unflushed() : 0);
+    }
+
+    @Scheduled(fixedDelayString = "${form.counters.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        for (Map.Entry<Long, Tally> entry : pending.entrySet()) {
+            // Tallies stay in the map once created, so no increment can land on a discarded one
+            Tally tally = entry.getValue();
+            long counted = tally.counted.sum();
+            long delta = counted - tally.flushed;
+            if (delta == 0) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update("INSERT INTO response_counters (form_id, responses) VALUES (?, ?) " +
+                        "ON CONFLICT (form_id) DO UPDATE SET responses = response_counters.responses + EXCLUDED.responses",
+                        entry.getKey(), delta);
+                tally.flushed = counted;
+            } catch (Exception e) {
+                log.error("Failed to flush response counter of form {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the least recently reconciled counters with exact counts.
+     * Forms without a counter yet are added first.
+     */
+    @Scheduled(initialDelayString = "${form.counters.reconcile-initial-delay-ms:60000}",
+            fixedDelayString = "${form.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        flush();
+        jdbcTemplate.update("INSERT INTO response_counters (form_id) SELECT id FROM form ON CONFLICT DO NOTHING");
+        List<Long> formIds = jdbcTemplate.queryForList("SELECT form_id FROM response_counters " +
+                "ORDER BY reconciled_at NULLS FIRST LIMIT ?", Long.class, reconcileBatch);
+        for (Long formId : formIds) {
+            try {
+                reconcile(formId);
+            } catch (Exception e) {
+                log.error("Failed to reconcile response counter of form {}", formId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // Synchronized with flush, which must not write a delta the exact count already includes
+    private synchronized void reconcile(Long formId) {
+        FormDefinition form = formDefinitionCache.get(formId);
+        if (form == null) {
+            jdbcTemplate.update("DELETE FROM response_counters WHERE form_id = ?", formId);
+            return;
+        }
+        long counted = transactionTemplate.execute(status -> {
+            // Locked so that reservations wait for the count instead of racing it
+            jdbcTemplate.queryForList("SELECT responses FROM response_counters WHERE form_id = ? FOR UPDATE",
+                    Long.class, formId);
+            long exact = responseStores.forForm(form).watermark(formId).rows();
+            // Taken with the exact count: responses counted here by now are part of it
+            Tally tally = pending.get(formId);
+            long snapshot = tally != null ? tally.counted.sum() : 0;
+            jdbcTemplate.update("UPDATE response_counters SET responses = ?, reconciled_at = now() WHERE form_id = ?",
+                    exact, formId);
+            if (form.getResponseLimit() != null) {
+                limitedCounts.put(formId, exact);
+            }
+            return snapshot;
+        });
+        // Only once committed; a failed reconcile leaves the delta to the next flush
+        Tally tally = pending.get(formId);
+        if (tally != null) {
+            tally.flushed = counted;
+        }
+        reconciled.increment();
+    }
+
+    private Long increment(Long formId, int limit) {
+        List<Long> rows = jdbcTemplate.queryForList("UPDATE response_counters SET responses = responses + 1 " +
+                "WHERE form_id = ? AND responses < ? RETURNING responses", Long.class, formId, limit);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private boolean exists(Long formId) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM response_counters WHERE form_id = ?", Integer.class, formId)
+                .isEmpty();
+    }
+
+    // First limited submission of a form that has no counter yet: start from an exact count
+    private void seed(FormDefinition form) {
+        Long formId = form.getFormId();
+        long exact = responseStores.forForm(form).watermark(formId).rows();
+        jdbcTemplate.update("INSERT INTO response_counters (form_id, responses, reconciled_at) VALUES (?, ?, now()) " +
+                "ON CONFLICT (form_id) DO NOTHING", formId, exact);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
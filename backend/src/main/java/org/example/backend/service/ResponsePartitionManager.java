@@ -0,0 +1,125 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background maintenance of month-partitioned response tables: creates the
+ * partitions for the coming months ahead of time and detaches or drops the
+ * ones older than a form's retention. Dropping a partition is a metadata
+ * change, so retention never bloats the table the way DELETE would.
+ *
+ * On its first run it also adds {@code submitted_at} to response tables
+ * created before submission times were recorded; their existing rows keep a
+ * NULL time and fall outside every time-bounded report.
+ */
+@Service
+public class ResponsePartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponsePartitionManager.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TablePerFormResponseStore tableStore;
+    private final ResponseSchemaMigrator schemaMigrator;
+    private final int monthsAhead;
+    private final boolean dropExpired;
+
+    private volatile boolean backfilled;
+
+    private final Counter created;
+    private final Counter expired;
+
+    public ResponsePartitionManager(JdbcTemplate jdbcTemplate,
+                                    TablePerFormResponseStore tableStore,
+                                    ResponseSchemaMigrator schemaMigrator,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${form.partitions.months-ahead:3}") int monthsAhead,
+                                    @Value("${form.partitions.drop-expired:true}") boolean dropExpired) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableStore = tableStore;
+        this.schemaMigrator = schemaMigrator;
+        this.monthsAhead = monthsAhead;
+        this.dropExpired = dropExpired;
+
+        this.created = meterRegistry.counter("form.partitions.created");
+        this.expired = meterRegistry.counter("form.partitions.expired");
+    }
+
+    @Scheduled(initialDelayString = "${form.partitions.initial-delay-ms:30000}",
+               fixedDelayString = "${form.partitions.check-interval-ms:3600000}")
+    public void maintain() {
+        if (!backfilled) {
+            backfilled = backfillSubmittedAt();
+        }
+
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        List<Map<String, Object>> forms = jdbcTemplate.queryForList(
+                "SELECT id, retention_months FROM form WHERE partitioned = true " +
+                "AND (storage_engine IS NULL OR storage_engine = ?)", TablePerFormResponseStore.ENGINE);
+        for (Map<String, Object> form : forms) {
+            Long formId = ((Number) form.get("id")).longValue();
+            Number retention = (Number) form.get("retention_months");
+            try {
+                maintain(formId, current, retention != null ? retention.intValue() : null);
+            } catch (RuntimeException e) {
+                log.error("Partition maintenance failed for form {}", formId, e);
+            }
+        }
+    }
+
+    private void maintain(Long formId, YearMonth current, Integer retentionMonths) {
+        Map<YearMonth, String> before = tableStore.listPartitions(formId);
+        tableStore.ensurePartitions(formId, current, current.plusMonths(monthsAhead));
+        created.increment(tableStore.listPartitions(formId).size() - before.size());
+
+        if (retentionMonths == null || retentionMonths <= 0) {
+            return;
+        }
+        // A partition expires once all of its rows are older than the retention
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        String table = TablePerFormResponseStore.tableName(formId);
+        for (Map.Entry<YearMonth, String> partition : before.entrySet()) {
+            if (!partition.getKey().isBefore(oldestKept)) {
+                continue;
+            }
+            String detach = "ALTER TABLE " + table + " DETACH PARTITION " + partition.getValue();
+            if (dropExpired) {
+                schemaMigrator.execute(detach, "DROP TABLE " + partition.getValue());
+            } else {
+                schemaMigrator.execute(detach);
+            }
+            expired.increment();
+            log.info("{} expired partition {}", dropExpired ? "Dropped" : "Detached", partition.getValue());
+        }
+    }
+
+    private boolean backfillSubmittedAt() {
+        List<String> tables = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_class c WHERE c.relkind IN ('r', 'p') AND c.relname ~ '^form_[0-9]+$' " +
+                "AND NOT EXISTS (SELECT 1 FROM pg_attribute a WHERE a.attrelid = c.oid " +
+                "AND a.attname = 'submitted_at' AND NOT a.attisdropped)", String.class);
+        boolean complete = true;
+        for (String table : tables) {
+            try {
+                // Added without a default first so existing rows are not stamped with today's date
+                schemaMigrator.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS submitted_at TIMESTAMPTZ",
+                        "ALTER TABLE " + table + " ALTER COLUMN submitted_at SET DEFAULT now()");
+            } catch (RuntimeException e) {
+                complete = false;
+                log.warn("Failed to add submitted_at to {}: {}", table, e.getMessage());
+            }
+        }
+        return complete;
+    }
+}
@@ -0,0 +1,276 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Applies column additions to response tables off the request thread.
+ *
+ * ALTER TABLE needs an ACCESS EXCLUSIVE lock; if it queues behind a long
+ * report it blocks every INSERT queued behind it. Each attempt therefore runs
+ * with a short lock_timeout and gives up the queue position quickly, retrying
+ * with exponential backoff. All columns requested for a form before its
+ * migration starts are coalesced into a single ALTER statement.
+ *
+ * A migration that still fails is kept and retried periodically, together
+ * with any columns requested for the form since; until it succeeds,
+ * submissions to the form are answered with a retry hint instead of failing
+ * on the missing columns.
+ */
+@Service
+public class ResponseSchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseSchemaMigrator.class);
+
+    /** Thrown when a submission gave up waiting for its form's columns; the client should retry. */
+    public static class SchemaChangePendingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        public SchemaChangePendingException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final String UNDEFINED_COLUMN = "42703";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor executor;
+
+    private final long lockTimeoutMs;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long submitWaitMs;
+    private final long retryIntervalMs;
+
+    private final Map<Long, PendingMigration> pending = new ConcurrentHashMap<>();
+    // Columns of migrations that gave up, by form, until a retry adds them
+    private final Map<Long, FailedMigration> failed = new ConcurrentHashMap<>();
+
+    private final Timer migrationTimer;
+    private final Timer lockWaitTimer;
+    private final Counter lockTimeouts;
+    private final Counter failures;
+
+    public ResponseSchemaMigrator(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Qualifier("schemaMigrationExecutor") TaskExecutor executor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${form.schema.lock-timeout-ms:2000}") long lockTimeoutMs,
+                                  @Value("${form.schema.max-attempts:8}") int maxAttempts,
+                                  @Value("${form.schema.initial-backoff-ms:200}") long initialBackoffMs,
+                                  @Value("${form.schema.submit-wait-ms:5000}") long submitWaitMs,
+                                  @Value("${form.schema.retry-interval-ms:60000}") long retryIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executor = executor;
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.submitWaitMs = submitWaitMs;
+        this.retryIntervalMs = retryIntervalMs;
+
+        this.migrationTimer = meterRegistry.timer("form.schema.migration");
+        this.lockWaitTimer = meterRegistry.timer("form.schema.lock_wait");
+        this.lockTimeouts = meterRegistry.counter("form.schema.lock_timeouts");
+        this.failures = meterRegistry.counter("form.schema.failures");
+        Gauge.builder("form.schema.failed", failed, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Queues columns (name to SQL type) to be added to a table, along with
+     * those of an earlier failed migration of the form. Returns a future that
+     * completes once they exist.
+     */
+    public CompletableFuture<Void> addColumns(Long formId, String tableName, Map<String, String> columns) {
+        synchronized (pending) {
+            FailedMigration retry = failed.remove(formId);
+            if (columns.isEmpty() && retry == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            PendingMigration migration = pending.get(formId);
+            if (migration == null || migration.started) {
+                migration = new PendingMigration(tableName);
+                pending.put(formId, migration);
+                PendingMigration scheduled = migration;
+                executor.execute(() -> run(formId, scheduled));
+            }
+            if (retry != null) {
+                migration.columns.putAll(retry.columns());
+            }
+            migration.columns.putAll(columns);
+            return migration.future;
+        }
+    }
+
+    /** Queues the failed migrations again. */
+    @Scheduled(initialDelayString = "${form.schema.retry-interval-ms:60000}",
+            fixedDelayString = "${form.schema.retry-interval-ms:60000}")
+    public void retryFailed() {
+        for (Map.Entry<Long, FailedMigration> entry : failed.entrySet()) {
+            log.info("Retrying schema change of form {}", entry.getKey());
+            addColumns(entry.getKey(), entry.getValue().tableName(), Map.of());
+        }
+    }
+
+    /**
+     * Blocks a submission while a migration for its form is in flight, so
+     * that answers to just-added questions find their column. Throws
+     * {@link SchemaChangePendingException} if it is still running after
+     * {@code submit-wait-ms}, or if the form's last migration failed.
+     */
+    public void awaitPending(Long formId) {
+        PendingMigration migration = pending.get(formId);
+        if (migration == null) {
+            if (failed.containsKey(formId)) {
+                throw failedChange(formId);
+            }
+            return;
+        }
+        try {
+            migration.future.get(submitWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SchemaChangePendingException("Form " + formId + " is being updated, please retry shortly",
+                    Math.max(1, TimeUnit.MILLISECONDS.toSeconds(submitWaitMs)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SchemaChangePendingException("Interrupted while waiting for form " + formId + " schema update", 1);
+        } catch (ExecutionException e) {
+            // Inserting would fail on the missing columns; the retry may add them
+            throw failedChange(formId);
+        }
+    }
+
+    private SchemaChangePendingException failedChange(Long formId) {
+        return new SchemaChangePendingException("Form " + formId + " could not be updated yet, please retry later",
+                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryIntervalMs)));
+    }
+
+    private void run(Long formId, PendingMigration migration) {
+        Map<String, String> columns;
+        synchronized (pending) {
+            migration.started = true;
+            columns = new LinkedHashMap<>(migration.columns);
+        }
+
+        StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(migration.tableName);
+        String separator = " ";
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            ddl.append(separator).append("ADD COLUMN IF NOT EXISTS ")
+               .append(column.getKey()).append(' ').append(column.getValue());
+            separator = ", ";
+        }
+
+        long started = System.nanoTime();
+        try {
+            execute(ddl.toString());
+            migrationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            log.info("Applied schema change: {}", ddl);
+            migration.future.complete(null);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error("Failed to apply schema change {}, will retry", ddl, e);
+            synchronized (pending) {
+                failed.merge(formId, new FailedMigration(migration.tableName, columns), (earlier, later) -> {
+                    Map<String, String> merged = new LinkedHashMap<>(earlier.columns());
+                    merged.putAll(later.columns());
+                    return new FailedMigration(later.tableName(), merged);
+                });
+            }
+            migration.future.completeExceptionally(e);
+        } finally {
+            pending.remove(formId, migration);
+        }
+    }
+
+    /**
+     * Runs DDL statements in one transaction on the calling thread, with the
+     * same lock_timeout and backoff as queued column additions.
+     */
+    public void execute(String... ddl) {
+        long backoff = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            long attemptStart = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                    for (String statement : ddl) {
+                        jdbcTemplate.execute(statement);
+                    }
+                });
+                lockWaitTimer.record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+                return;
+            } catch (DataAccessException e) {
+                lockWaitTimer.record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+                if (!isLockTimeout(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                lockTimeouts.increment();
+                sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    private static boolean isLockTimeout(DataAccessException e) {
+        Throwable cause = e.getMostSpecificCause();
+        return cause instanceof SQLException sql && LOCK_NOT_AVAILABLE.equals(sql.getSQLState());
+    }
+
+    /** Whether a statement failed on a column the table does not have. */
+    static boolean isUndefinedColumn(DataAccessException e) {
+        Throwable cause = e.getMostSpecificCause();
+        return cause instanceof SQLException sql && UNDEFINED_COLUMN.equals(sql.getSQLState());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying schema change", e);
+        }
+    }
+
+    private record FailedMigration(String tableName, Map<String, String> columns) {
+    }
+
+    private static class PendingMigration {
+        final String tableName;
+        final Map<String, String> columns = new LinkedHashMap<>();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean started;
+
+        PendingMigration(String tableName) {
+            this.tableName = tableName;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.backend.service;
+
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine for form responses. Rows are exchanged as maps keyed by
+ * column name ({@code id}, {@code user_id}, {@code question_N}) whatever the
+ * physical layout, so callers never depend on the engine in use.
+ */
+public interface ResponseStore {
+
+    /** Engine name persisted in {@code Form.storageEngine}. */
+    String engine();
+
+    /** Prepares storage for a newly created form. */
+    void createSchema(Form form);
+
+    /** Makes room for new question columns (name to SQL type). */
+    CompletableFuture<Void> addColumns(Long formId, Map<String, String> columns);
+
+    /** Stores one response of already converted values and returns its id. */
+    long insert(Long formId, Long userId, Map<String, Object> values);
+
+    List<Map<String, Object>> findAll(Long formId);
+
+    /** Responses with an id greater than {@code afterId}, in id order. */
+    List<Map<String, Object>> findAfter(Long formId, long afterId);
+
+    /**
+     * Hands all responses to {@code batches} in id order, at most
+     * {@code batchSize} rows at a time, without loading them all at once.
+     */
+    default void scan(Long formId, int batchSize, Consumer<List<Map<String, Object>>> batches) {
+        List<Map<String, Object>> rows = findAll(formId);
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            batches.accept(rows.subList(from, Math.min(rows.size(), from + batchSize)));
+        }
+    }
+
+    /** Number of responses and highest response id, which change whenever the responses do. */
+    Watermark watermark(Long formId);
+
+    /**
+     * Runs {@code op(target)} grouped by the given columns. All column names
+     * must already be validated against the form's allowed columns; rows are
+     * returned as {@code combined_selects} (when grouping) and {@code result}.
+     * {@code from} (inclusive) and {@code to} (exclusive) optionally restrict
+     * the responses by submission time.
+     */
+    List<Map<String, Object>> aggregate(FormDefinition form, List<String> groupBy, String target, String op,
+                                        OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * Number of responses per distinct non-null value of a checkbox mask
+     * column. The column must be validated as in {@link #aggregate}.
+     */
+    Map<Long, Long> countMasks(FormDefinition form, String column);
+
+    record Watermark(long rows, long maxId) {
+    }
+}
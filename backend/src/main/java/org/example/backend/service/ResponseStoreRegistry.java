@@ -0,0 +1,65 @@
+package org.example.backend.service;
+
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@link ResponseStore} a form's responses live in. Forms
+ * created before engines were selectable have no engine recorded and use
+ * the table-per-form engine.
+ */
+@Service
+public class ResponseStoreRegistry {
+
+    private final Map<String, ResponseStore> stores = new HashMap<>();
+    private final String defaultEngine;
+
+    public ResponseStoreRegistry(List<ResponseStore> stores,
+                                 @Value("${form.storage.default-engine:TABLE}") String defaultEngine) {
+        for (ResponseStore store : stores) {
+            this.stores.put(store.engine(), store);
+        }
+        if (!this.stores.containsKey(defaultEngine.toUpperCase())
+                || ArchivedResponseStore.ENGINE.equalsIgnoreCase(defaultEngine)) {
+            throw new IllegalStateException("Unknown default storage engine: " + defaultEngine);
+        }
+        this.defaultEngine = defaultEngine.toUpperCase();
+    }
+
+    /**
+     * Engine to record for a new form: the requested one if it exists and
+     * accepts responses, otherwise the configured default.
+     */
+    public String engineForNewForm(String requested) {
+        if (requested != null && stores.containsKey(requested.toUpperCase())
+                && !ArchivedResponseStore.ENGINE.equalsIgnoreCase(requested)) {
+            return requested.toUpperCase();
+        }
+        return defaultEngine;
+    }
+
+    public ResponseStore forForm(Form form) {
+        return forEngine(form.getStorageEngine());
+    }
+
+    public ResponseStore forForm(FormDefinition form) {
+        return forEngine(form.getStorageEngine());
+    }
+
+    public ResponseStore forEngine(String engine) {
+        if (engine == null) {
+            return stores.get(TablePerFormResponseStore.ENGINE);
+        }
+        ResponseStore store = stores.get(engine.toUpperCase());
+        if (store == null) {
+            throw new IllegalStateException("Unknown storage engine: " + engine);
+        }
+        return store;
+    }
+}
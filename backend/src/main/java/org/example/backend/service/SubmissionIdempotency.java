@@ -0,0 +1,240 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the {@code Idempotency-Key}s of response submissions so that a
+ * retried submission returns the response it created the first time instead
+ * of inserting another one.
+ *
+ * Keys live in the {@code submission_idempotency} table, whose primary key is
+ * what finally keeps two submissions with the same key apart: the first one
+ * claims the key in the transaction that inserts its response, a concurrent
+ * retry waits for that transaction and then finds the key taken. In front of
+ * the table, a Bloom filter answers "never seen" for almost all first
+ * submissions without a query, and a compact map of recent keys answers
+ * replays without one. Both are rotated or purged after the key TTL.
+ */
+@Service
+public class SubmissionIdempotency {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionIdempotency.class);
+
+    public static final int MAX_KEY_LENGTH = 128;
+
+    /** Thrown when an {@code Idempotency-Key} comes back with a different submission. */
+    public static class IdempotencyKeyMismatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public IdempotencyKeyMismatchException() {
+            super("Idempotency-Key was already used for a different submission");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final int maxRecent;
+
+    // Keys seen in the current and the previous TTL window
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotatedAt = System.currentTimeMillis();
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+
+    private final Map<Long, Recent> recent = new ConcurrentHashMap<>();
+
+    private final Counter unseen;
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromTable;
+    private final Counter mismatched;
+
+    private record Recent(long responseId, int requestHash, long expiresAt) {
+    }
+
+    public SubmissionIdempotency(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${form.submit.idempotency.ttl-hours:24}") long ttlHours,
+                                 @Value("${form.submit.idempotency.expected-keys:1000000}") long expectedKeys,
+                                 @Value("${form.submit.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+                                 @Value("${form.submit.idempotency.max-recent:100000}") int maxRecent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlHours * 3_600_000;
+        this.maxRecent = maxRecent;
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new BloomFilter(expectedKeys, falsePositiveRate);
+        this.previous = new BloomFilter(expectedKeys, falsePositiveRate);
+
+        this.unseen = meterRegistry.counter("form.submit.idempotency", "result", "unseen");
+        this.replayedFromMemory = meterRegistry.counter("form.submit.idempotency", "result", "replayed-memory");
+        this.replayedFromTable = meterRegistry.counter("form.submit.idempotency", "result", "replayed-table");
+        this.mismatched = meterRegistry.counter("form.submit.idempotency", "result", "mismatch");
+        Gauge.builder("form.submit.idempotency.recent", recent, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * The response created by an earlier submission with this key, or
+     * {@code null} if there was none. Throws {@link IdempotencyKeyMismatchException}
+     * when the key was used for a different submission.
+     */
+    public Long replay(Long formId, Long userId, String key, int requestHash) {
+        long fingerprint = fingerprint(formId, userId, key);
+        if (!current.mightContain(fingerprint) && !previous.mightContain(fingerprint)) {
+            unseen.increment();
+            return null;
+        }
+        Recent entry = recent.get(fingerprint);
+        if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+            replayedFromMemory.increment();
+            return checked(entry.responseId(), entry.requestHash(), requestHash);
+        }
+        Long responseId = stored(formId, userId, key, requestHash);
+        if (responseId != null) {
+            replayedFromTable.increment();
+        }
+        return responseId;
+    }
+
+    /**
+     * Claims a key for a new submission within the caller's transaction.
+     * Returns {@code false} if another submission holds it; a claim still in
+     * flight is waited for, so the holder's response can be read right after.
+     */
+    public boolean claim(Long formId, Long userId, String key, int requestHash) {
+        return jdbcTemplate.update(
+                "INSERT INTO submission_idempotency (form_id, user_id, idempotency_key, request_hash) " +
+                "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", formId, userId, key, requestHash) == 1;
+    }
+
+    /** Records the response of a claimed key; it is remembered in memory once the transaction commits. */
+    public void complete(Long formId, Long userId, String key, int requestHash, long responseId) {
+        jdbcTemplate.update("UPDATE submission_idempotency SET response_id = ? " +
+                "WHERE form_id = ? AND user_id = ? AND idempotency_key = ?", responseId, formId, userId, key);
+        long fingerprint = fingerprint(formId, userId, key);
+        Runnable remember = () -> {
+            current.put(fingerprint);
+            if (recent.size() < maxRecent) {
+                recent.put(fingerprint, new Recent(responseId, requestHash, System.currentTimeMillis() + ttlMillis));
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember.run();
+                }
+            });
+        } else {
+            remember.run();
+        }
+    }
+
+    /** The response recorded in the table for a key, bypassing the in-memory filters. */
+    public Long stored(Long formId, Long userId, String key, int requestHash) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT response_id, request_hash FROM submission_idempotency " +
+                "WHERE form_id = ? AND user_id = ? AND idempotency_key = ? AND response_id IS NOT NULL",
+                formId, userId, key);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> row = rows.get(0);
+        return checked(((Number) row.get("response_id")).longValue(), ((Number) row.get("request_hash")).intValue(),
+                requestHash);
+    }
+
+    @Scheduled(fixedDelayString = "${form.submit.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        recent.values().removeIf(entry -> entry.expiresAt() <= now);
+        if (now - rotatedAt >= ttlMillis) {
+            previous = current;
+            current = new BloomFilter(expectedKeys, falsePositiveRate);
+            rotatedAt = now;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM submission_idempotency WHERE created_at < now() - ? * interval '1 millisecond'",
+                ttlMillis);
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private Long checked(long responseId, int storedHash, int requestHash) {
+        if (storedHash != requestHash) {
+            mismatched.increment();
+            throw new IdempotencyKeyMismatchException();
+        }
+        return responseId;
+    }
+
+    static long fingerprint(Long formId, Long userId, String key) {
+        // FNV-1a over the key, mixed with the form and user
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= mix(formId * 0x9e3779b97f4a7c15L + userId);
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Lock-free Bloom filter over 64-bit fingerprints, using double hashing. */
+    static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+
+        BloomFilter(long expectedKeys, double falsePositiveRate) {
+            long size = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.max(1, (size + 63) / 64));
+            this.bits = words.length() * 64L;
+            this.hashes = (int) Math.max(1, Math.round((double) bits / expectedKeys * Math.log(2)));
+        }
+
+        void put(long fingerprint) {
+            long h2 = mix(fingerprint) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(fingerprint + i * h2, bits);
+                long mask = 1L << bit;
+                words.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+            }
+        }
+
+        boolean mightContain(long fingerprint) {
+            long h2 = mix(fingerprint) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(fingerprint + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
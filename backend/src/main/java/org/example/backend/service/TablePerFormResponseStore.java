@@ -0,0 +1,273 @@
+package org.example.backend.service;
+
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Page;
+import org.example.backend.model.Question;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The original engine: one {@code form_{id}} table per form with a typed
+ * column per question.
+ */
+@Component
+public class TablePerFormResponseStore implements ResponseStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TablePerFormResponseStore.class);
+
+    public static final String ENGINE = "TABLE";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ResponseSchemaMigrator schemaMigrator;
+
+    @Override
+    public String engine() {
+        return ENGINE;
+    }
+
+    public static String tableName(Long formId) {
+        return "form_" + formId;
+    }
+
+    @Override
+    public void createSchema(Form form) {
+        String tableName = tableName(form.getId());
+
+        // Check if table already exists
+        if (tableExists(tableName)) {
+            log.info("Table {} already exists, updating structure instead", tableName);
+            updateSchema(form);
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("CREATE TABLE ")
+                .append(tableName)
+                .append(form.hasMonthlyPartitions() ? " (id BIGSERIAL" : " (id SERIAL PRIMARY KEY")
+                .append(", user_id INTEGER, submitted_at TIMESTAMPTZ NOT NULL DEFAULT now()");
+
+        // Dynamically add columns for each question in the form
+        for (Page page: form.getPages()) {
+            for (Question question : page.getQuestions()) {
+                sql.append(", ").append(ResponseColumns.columnName(question)).append(" ")
+                        .append(ResponseColumns.sqlType(question));
+            }
+        }
+
+        if (form.hasMonthlyPartitions()) {
+            // The partition key has to be part of the primary key
+            sql.append(", PRIMARY KEY (id, submitted_at)) PARTITION BY RANGE (submitted_at);");
+        } else {
+            sql.append(");");
+        }
+
+        // Execute the dynamically generated SQL
+        try {
+            jdbcTemplate.execute(sql.toString());
+            log.info("Created table: {}", sql);
+            if (form.hasMonthlyPartitions()) {
+                YearMonth current = YearMonth.now(ZoneOffset.UTC);
+                ensurePartitions(form.getId(), current.minusMonths(1), current.plusMonths(1));
+            }
+        } catch (Exception e) {
+            log.error("Failed to create table: {}", sql);
+            throw new RuntimeException("Failed to create form table: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds columns for any question of the form that has none yet, by
+     * comparing against the table's current columns.
+     */
+    public void updateSchema(Form form) {
+        String tableName = tableName(form.getId());
+        log.info("Updating table: {}", tableName);
+
+        Set<String> existingColumns = new HashSet<>(getExistingColumns(tableName));
+        Map<String, String> missingColumns = new LinkedHashMap<>();
+        for (Page page: form.getPages()) {
+            for (Question question : page.getQuestions()) {
+                String column = ResponseColumns.columnName(question);
+                if (!existingColumns.contains(column)) {
+                    missingColumns.put(column, ResponseColumns.sqlType(question));
+                }
+            }
+        }
+        addColumns(form.getId(), missingColumns);
+    }
+
+    public static String partitionName(Long formId, YearMonth month) {
+        return String.format("%s_p%04d%02d", tableName(formId), month.getYear(), month.getMonthValue());
+    }
+
+    /** Creates the monthly partitions from {@code first} to {@code last} that do not exist yet. */
+    public void ensurePartitions(Long formId, YearMonth first, YearMonth last) {
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            String partition = partitionName(formId, month);
+            if (tableExists(partition)) {
+                continue;
+            }
+            schemaMigrator.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + tableName(formId) +
+                    " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') TO ('" +
+                    month.plusMonths(1).atDay(1) + " 00:00:00+00')");
+            log.info("Created partition: {}", partition);
+        }
+    }
+
+    /** Monthly partitions currently attached to a form's table, keyed by month. */
+    public Map<YearMonth, String> listPartitions(Long formId) {
+        Map<YearMonth, String> partitions = new TreeMap<>();
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(?)", String.class, tableName(formId));
+        String prefix = tableName(formId) + "_p";
+        for (String name : names) {
+            if (name.startsWith(prefix) && name.length() == prefix.length() + 6) {
+                String suffix = name.substring(prefix.length());
+                partitions.put(YearMonth.of(Integer.parseInt(suffix.substring(0, 4)),
+                        Integer.parseInt(suffix.substring(4))), name);
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    public CompletableFuture<Void> addColumns(Long formId, Map<String, String> columns) {
+        return schemaMigrator.addColumns(formId, tableName(formId), columns);
+    }
+
+    @Override
+    public long insert(Long formId, Long userId, Map<String, Object> values) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(tableName(formId))
+                .append(" (user_id");
+        StringBuilder placeholders = new StringBuilder(") VALUES (?");
+
+        List<Object> args = new ArrayList<>(values.size() + 1);
+        args.add(userId);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            sql.append(", ").append(entry.getKey());
+            placeholders.append(", ?");
+            args.add(entry.getValue());
+        }
+        sql.append(placeholders).append(") RETURNING id");
+
+        Long id = jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+        return id != null ? id : -1;
+    }
+
+    @Override
+    public List<Map<String, Object>> findAll(Long formId) {
+        return jdbcTemplate.queryForList("SELECT * FROM " + tableName(formId));
+    }
+
+    @Override
+    public List<Map<String, Object>> findAfter(Long formId, long afterId) {
+        return jdbcTemplate.queryForList("SELECT * FROM " + tableName(formId) + " WHERE id > ? ORDER BY id", afterId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void scan(Long formId, int batchSize, Consumer<List<Map<String, Object>>> batches) {
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+        // PostgreSQL only fetches through a cursor inside a transaction
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT * FROM " + tableName(formId) + " ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(batchSize);
+            return ps;
+        }, rs -> {
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            int rowNum = 0;
+            while (rs.next()) {
+                batch.add(rowMapper.mapRow(rs, rowNum++));
+                if (batch.size() == batchSize) {
+                    batches.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.accept(batch);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Watermark watermark(Long formId) {
+        return jdbcTemplate.queryForObject("SELECT count(*), COALESCE(max(id), 0) FROM " + tableName(formId),
+                (rs, rowNum) -> new Watermark(rs.getLong(1), rs.getLong(2)));
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(FormDefinition form, List<String> groupBy, String target, String op,
+                                               OffsetDateTime from, OffsetDateTime to) {
+        // Bounds on submitted_at let PostgreSQL prune monthly partitions
+        List<Object> args = new ArrayList<>();
+        String table = tableName(form.getFormId()) + ResponseColumns.timeRange(from, to, "", args);
+        String targetExpression = ResponseColumns.aggregateTarget(form, target, target, op);
+        String sql;
+        if (groupBy.isEmpty()) {
+            sql = "SELECT " + op + "(" + targetExpression + ") AS Result FROM " + table;
+        } else {
+            // Group on the stored values; choice codes are decoded per group only
+            List<String> labels = new ArrayList<>();
+            for (String column : groupBy) {
+                labels.add(ResponseColumns.decodeExpression(ResponseColumns.question(form, column), column));
+            }
+            sql = "SELECT " + String.join(" || '_' || ", labels) + " AS Combined_Selects, " +
+                    op + "(" + targetExpression + ") AS Result FROM " + table +
+                    " GROUP BY " + String.join(", ", groupBy);
+        }
+        return jdbcTemplate.queryForList(sql, args.toArray());
+    }
+
+    @Override
+    public Map<Long, Long> countMasks(FormDefinition form, String column) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT " + column + " AS mask, COUNT(*) AS responses FROM " + tableName(form.getFormId()) +
+                        " WHERE " + column + " IS NOT NULL GROUP BY " + column,
+                rs -> {
+                    counts.put(rs.getLong("mask"), rs.getLong("responses"));
+                });
+        return counts;
+    }
+
+    private boolean tableExists(String tableName) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tableName);
+    }
+
+    public List<String> existingColumns(Long formId) {
+        return getExistingColumns(tableName(formId));
+    }
+
+    private List<String> getExistingColumns(String tableName) {
+        List<String> columns = new ArrayList<>();
+        try {
+            String sql = "SELECT column_name FROM information_schema.columns WHERE table_name = ?";
+            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, tableName);
+            for (Map<String, Object> row : results) {
+                columns.add((String) row.get("column_name"));
+            }
+        } catch (Exception e) {
+            log.error("Failed to get existing columns for table {}", tableName, e);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.backend.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Hierarchical timing wheel: four levels of 64 slots, each level's slot
+ * spanning a whole turn of the level below. Adding a deadline and expiring a
+ * tick are O(1) whatever the number of pending deadlines; an entry is moved
+ * down at most once per level as its deadline approaches. Deadlines beyond the
+ * top level (64^4 ticks) wait in a heap until they come into range.
+ *
+ * Not ordered within a tick, and deadlines in the past fire on the next one.
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long RANGE = 1L << (BITS * LEVELS);
+
+    private record Entry<T>(long tick, T value) {
+    }
+
+    private final long tickMs;
+    private final List<Entry<T>>[][] slots;
+    private final PriorityQueue<Entry<T>> overflow = new PriorityQueue<>(Comparator.comparingLong(Entry::tick));
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        this.slots = new List[LEVELS][SLOTS];
+        this.currentTick = startMs / tickMs;
+    }
+
+    synchronized void add(long deadlineMs, T value) {
+        long tick = Math.max((deadlineMs + tickMs - 1) / tickMs, currentTick + 1);
+        place(new Entry<>(tick, value), null);
+        size++;
+    }
+
+    /** Advances to {@code nowMs} and returns the values whose deadline has passed. */
+    synchronized List<T> advance(long nowMs) {
+        long target = nowMs / tickMs;
+        List<T> due = new ArrayList<>();
+        while (currentTick < target) {
+            currentTick++;
+            while (!overflow.isEmpty() && overflow.peek().tick() - currentTick < RANGE) {
+                place(overflow.poll(), due);
+            }
+            // Higher levels first, so entries cascading two levels down are in place before the lower one turns
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    List<Entry<T>> cascading = take(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                    if (cascading != null) {
+                        cascading.forEach(entry -> place(entry, due));
+                    }
+                }
+            }
+            List<Entry<T>> expired = take(0, (int) (currentTick & MASK));
+            if (expired != null) {
+                expired.forEach(entry -> due.add(entry.value()));
+            }
+        }
+        size -= due.size();
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // An entry at level L is 64^L to 64^(L+1) ticks away, so its slot comes round exactly when it is due to move down
+    private void place(Entry<T> entry, List<T> due) {
+        long delta = entry.tick() - currentTick;
+        if (delta <= 0) {
+            due.add(entry.value());
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (BITS * (level + 1))) {
+                int slot = (int) ((entry.tick() >>> (BITS * level)) & MASK);
+                if (slots[level][slot] == null) {
+                    slots[level][slot] = new ArrayList<>();
+                }
+                slots[level][slot].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> take(int level, int slot) {
+        List<Entry<T>> entries = slots[level][slot];
+        slots[level][slot] = null;
+        return entries;
+    }
+}
@@ -0,0 +1,90 @@
+-- Supplementary indexes that Hibernate's ddl-auto cannot express.
+-- Runs after schema update (spring.jpa.defer-datasource-initialization) and
+-- every statement is idempotent.
+
+-- User directory search (UserRepository.searchBy*)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users (lower(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops);
+
+-- Form sharing (FormRepository.grantAccess/revokeAccess). Collapse duplicate
+-- grants left by the old bag mapping before enforcing uniqueness; a one-time
+-- filter, so once the unique index exists the table is not scanned.
+DELETE FROM form_allowed_users a USING form_allowed_users b
+    WHERE to_regclass('ux_form_allowed_users') IS NULL
+      AND a.ctid < b.ctid AND a.form_id = b.form_id AND a.user_id = b.user_id;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_form_allowed_users ON form_allowed_users (form_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_form_allowed_users_user_id ON form_allowed_users (user_id);
+-- Forms shared before the restricted flag existed; only rows still without a flag are touched.
+UPDATE form SET restricted = EXISTS (SELECT 1 FROM form_allowed_users fau WHERE fau.form_id = form.id)
+    WHERE restricted IS NULL;
+
+-- Shared JSONB response store (JsonbResponseStore), hash-partitioned by form.
+CREATE TABLE IF NOT EXISTS response_store (
+    id           BIGSERIAL,
+    form_id      BIGINT      NOT NULL,
+    user_id      BIGINT,
+    submitted_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    answers      JSONB       NOT NULL DEFAULT '{}'::jsonb,
+    PRIMARY KEY (form_id, id)
+) PARTITION BY HASH (form_id);
+CREATE TABLE IF NOT EXISTS response_store_p0 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 0);
+CREATE TABLE IF NOT EXISTS response_store_p1 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 1);
+CREATE TABLE IF NOT EXISTS response_store_p2 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 2);
+CREATE TABLE IF NOT EXISTS response_store_p3 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 3);
+CREATE TABLE IF NOT EXISTS response_store_p4 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 4);
+CREATE TABLE IF NOT EXISTS response_store_p5 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 5);
+CREATE TABLE IF NOT EXISTS response_store_p6 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 6);
+CREATE TABLE IF NOT EXISTS response_store_p7 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 7);
+CREATE TABLE IF NOT EXISTS response_store_p8 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 8);
+CREATE TABLE IF NOT EXISTS response_store_p9 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 9);
+CREATE TABLE IF NOT EXISTS response_store_p10 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 10);
+CREATE TABLE IF NOT EXISTS response_store_p11 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 11);
+CREATE TABLE IF NOT EXISTS response_store_p12 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 12);
+CREATE TABLE IF NOT EXISTS response_store_p13 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 13);
+CREATE TABLE IF NOT EXISTS response_store_p14 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 14);
+CREATE TABLE IF NOT EXISTS response_store_p15 PARTITION OF response_store FOR VALUES WITH (MODULUS 16, REMAINDER 15);
+-- Every JsonbResponseStore query is scoped to one form, so it prunes to one
+-- partition and reads only that form's rows: watermarks and cursors through the
+-- (form_id, id) key, time-ranged reports through (form_id, submitted_at).
+-- Reports aggregate all of a form's rows, so per-question expression indexes
+-- would not be used; they would also mean an index per question of every form
+-- on a shared table. Containment lookups (answers @> '{...}') use the GIN index.
+CREATE INDEX IF NOT EXISTS idx_response_store_answers ON response_store USING gin (answers jsonb_path_ops);
+CREATE INDEX IF NOT EXISTS idx_response_store_form_submitted ON response_store (form_id, submitted_at);
+
+-- Idempotency keys of submissions (SubmissionIdempotency); the primary key keeps concurrent retries from both inserting.
+CREATE TABLE IF NOT EXISTS submission_idempotency (
+    form_id         BIGINT       NOT NULL,
+    user_id         BIGINT       NOT NULL,
+    idempotency_key VARCHAR(128) NOT NULL,
+    request_hash    INTEGER      NOT NULL,
+    response_id     BIGINT,
+    created_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    PRIMARY KEY (form_id, user_id, idempotency_key)
+);
+CREATE INDEX IF NOT EXISTS idx_submission_idempotency_created ON submission_idempotency (created_at);
+
+-- Autosaved drafts of responses (DraftService), one per user and form.
+CREATE TABLE IF NOT EXISTS submission_drafts (
+    form_id    BIGINT      NOT NULL,
+    user_id    BIGINT      NOT NULL,
+    answers    JSONB       NOT NULL DEFAULT '{}'::jsonb,
+    page       INTEGER,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (form_id, user_id)
+);
+CREATE INDEX IF NOT EXISTS idx_submission_drafts_updated ON submission_drafts (updated_at);
+
+-- Responses per form (ResponseCounters): flushed deltas for unlimited forms, exact reservations for limited ones.
+CREATE TABLE IF NOT EXISTS response_counters (
+    form_id       BIGINT PRIMARY KEY,
+    responses     BIGINT NOT NULL DEFAULT 0,
+    reconciled_at TIMESTAMPTZ
+);
+CREATE INDEX IF NOT EXISTS idx_response_counters_reconciled ON response_counters (reconciled_at NULLS FIRST);
+
+-- Deadlines of forms still waiting to open or close (FormScheduler), loaded at startup.
+CREATE INDEX IF NOT EXISTS idx_form_pending_open ON form (opens_at) WHERE opens_at IS NOT NULL AND is_active = false;
+CREATE INDEX IF NOT EXISTS idx_form_pending_close ON form (closes_at) WHERE closes_at IS NOT NULL AND is_expired = false;
@@ -0,0 +1,70 @@
+package org.example.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.DispatcherType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadInterceptorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BulkheadInterceptor interceptor = new BulkheadInterceptor(new MockEnvironment()
+            .withProperty("form.bulkhead.analytics.max-concurrent", "1")
+            .withProperty("form.bulkhead.analytics.max-queued", "0"), meterRegistry);
+    private final HandlerMethod handler;
+
+    static class Reports {
+        @Bulkhead(Workload.ANALYTICS)
+        public void stream() {
+        }
+    }
+
+    BulkheadInterceptorTest() throws NoSuchMethodException {
+        handler = new HandlerMethod(new Reports(), "stream");
+    }
+
+    @Test
+    void requestsBeyondTheCompartmentAreTurnedAway() throws Exception {
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), handler));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), rejected, handler));
+        assertEquals(503, rejected.getStatus());
+        assertEquals(1, meterRegistry.counter("form.bulkhead.rejected", "workload", "analytics").count());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler, null);
+        assertEquals(0, active());
+    }
+
+    @Test
+    void asyncDispatchIsNotAdmittedAgain() throws Exception {
+        MockHttpServletRequest stream = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(stream, new MockHttpServletResponse(), handler));
+        interceptor.afterConcurrentHandlingStarted(stream, new MockHttpServletResponse(), handler);
+        assertEquals(0, active());
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler));
+
+        // The stream ends while the compartment is full: its completing dispatch must still get through
+        stream.setDispatcherType(DispatcherType.ASYNC);
+        MockHttpServletResponse committed = new MockHttpServletResponse();
+        committed.setCommitted(true);
+        assertTrue(interceptor.preHandle(stream, committed, handler));
+        interceptor.afterCompletion(stream, committed, handler, null);
+
+        assertEquals(200, committed.getStatus());
+        assertEquals(1, active());
+        assertEquals(0, meterRegistry.counter("form.bulkhead.rejected", "workload", "analytics").count());
+    }
+
+    private double active() {
+        return meterRegistry.get("form.bulkhead.active").tag("workload", "analytics").gauge().value();
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.backend.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTableTest {
+
+    @Test
+    void burstIsAvailableThenCallerIsToldHowLongToWait() {
+        TokenBucketTable table = new TokenBucketTable(64, false, 1, 3);
+
+        assertEquals(0, table.tryAcquire(42));
+        assertEquals(0, table.tryAcquire(42));
+        assertEquals(0, table.tryAcquire(42));
+
+        long wait = table.tryAcquire(42);
+        assertTrue(wait > 0 && wait <= 1000, "wait " + wait);
+    }
+
+    @Test
+    void releasedTokenCanBeTakenAgain() {
+        TokenBucketTable table = new TokenBucketTable(64, true, 1, 1);
+
+        assertEquals(0, table.tryAcquire(7));
+        assertTrue(table.tryAcquire(7) > 0);
+        table.release(7);
+
+        assertEquals(0, table.tryAcquire(7));
+    }
+
+    @Test
+    void releaseNeverOverfillsBucket() {
+        TokenBucketTable table = new TokenBucketTable(64, false, 1, 1);
+
+        table.release(7);
+        table.release(7);
+
+        assertEquals(0, table.tryAcquire(7));
+        assertTrue(table.tryAcquire(7) > 0);
+    }
+
+    @Test
+    void bucketRefillsOverTime() throws InterruptedException {
+        TokenBucketTable table = new TokenBucketTable(64, false, 1000, 1);
+
+        assertEquals(0, table.tryAcquire(1));
+        Thread.sleep(20);
+
+        assertEquals(0, table.tryAcquire(1));
+    }
+
+    @Test
+    void keysInDifferentSlotsHaveTheirOwnBuckets() {
+        TokenBucketTable table = new TokenBucketTable(1 << 16, false, 1, 1);
+
+        assertEquals(0, table.tryAcquire(1));
+        assertTrue(table.tryAcquire(1) > 0);
+        assertEquals(0, table.tryAcquire(2));
+        assertEquals(2, table.activeBuckets());
+    }
+
+    @Test
+    void singleSlotIsSharedByEveryKey() {
+        TokenBucketTable table = new TokenBucketTable(1, false, 1, 2);
+
+        assertEquals(0, table.tryAcquire(1));
+        assertEquals(0, table.tryAcquire(2));
+        assertTrue(table.tryAcquire(3) > 0);
+        assertEquals(1, table.activeBuckets());
+    }
+
+    @Test
+    void concurrentCallersNeverTakeMoreThanTheBurst() throws Exception {
+        TokenBucketTable table = new TokenBucketTable(8, true, 1, 100);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        if (table.tryAcquire(99) == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // At one token per second, only a few more can have been refilled while the threads ran
+        assertTrue(granted.get() >= 100 && granted.get() <= 110, "granted " + granted.get());
+    }
+
+    @Test
+    void rejectsBurstThatDoesNotFitTheSlot() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketTable(8, false, 1, 20_000));
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChoiceCodesTest {
+
+    @Test
+    void assignCodesChoicesInOrder() {
+        Question question = question("radio", "Red", "Green", "Blue");
+
+        assertEquals(ChoiceCodes.ENCODING, question.getEncoding());
+        assertEquals(Map.of(0, "Red", 1, "Green", 2, "Blue"), question.getChoiceCodes());
+    }
+
+    @Test
+    void reorderingKeepsEveryCode() {
+        Question question = question("radio", "Red", "Green", "Blue");
+
+        ChoiceCodes.remap(question, List.of("Blue", "Red", "Green"));
+
+        assertEquals(Map.of(0, "Red", 1, "Green", 2, "Blue"), question.getChoiceCodes());
+    }
+
+    @Test
+    void replacedLabelGetsFreshCodeAndOldOneStillDecodes() {
+        Question question = question("radio", "Red", "Green", "Blue");
+
+        // Same position as Green, but answers stored as Green must not turn into Yellow
+        ChoiceCodes.remap(question, List.of("Red", "Yellow", "Blue"));
+
+        assertEquals(Map.of(0, "Red", 1, "Green", 2, "Blue", 3, "Yellow"), question.getChoiceCodes());
+        assertEquals("Green", ChoiceCodes.labelOf(question, 1));
+        question.setChoices(List.of("Red", "Yellow", "Blue"));
+        assertEquals(Map.of("Red", 0, "Yellow", 3, "Blue", 2), ChoiceCodes.currentCodes(question));
+    }
+
+    @Test
+    void droppedLabelKeepsItsCodeWhenOfferedAgain() {
+        Question question = question("radio", "Red", "Green");
+
+        ChoiceCodes.remap(question, List.of("Red"));
+        ChoiceCodes.remap(question, List.of("Red", "Green"));
+
+        assertEquals(Map.of(0, "Red", 1, "Green"), question.getChoiceCodes());
+    }
+
+    @Test
+    void checkboxMaskRunsOutOfBits() {
+        List<String> choices = new ArrayList<>();
+        for (int i = 0; i < ChoiceCodes.MAX_MASK_CODES; i++) {
+            choices.add("Option " + i);
+        }
+        Question question = question("checkbox", choices.toArray(new String[0]));
+        assertEquals(ChoiceCodes.MASK_ENCODING, question.getEncoding());
+
+        List<String> renamed = new ArrayList<>(choices);
+        renamed.set(0, "Replacement");
+        assertThrows(IllegalArgumentException.class, () -> ChoiceCodes.remap(question, renamed));
+    }
+
+    @Test
+    void labelsOfMaskAreInCodeOrder() {
+        Question question = question("checkbox", "A", "B", "C");
+
+        assertEquals(List.of("A", "C"), ChoiceCodes.labelsOf(question, 0b101L));
+    }
+
+    private static Question question(String type, String... choices) {
+        Question question = new Question();
+        question.setText("Colour");
+        question.setType(type);
+        question.setChoices(new ArrayList<>(List.of(choices)));
+        ChoiceCodes.assign(question);
+        return question;
+    }
+}
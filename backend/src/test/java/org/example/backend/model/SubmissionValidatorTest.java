@@ -0,0 +1,129 @@
+package org.example.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmissionValidatorTest {
+
+    @Test
+    void parsesNumbersLikeBigDecimal() {
+        assertEquals(42, SubmissionValidator.parseNumber(" 42 ", true));
+        assertEquals(-1.5, SubmissionValidator.parseNumber("-1.5", false));
+        assertEquals(1200, SubmissionValidator.parseNumber("+1.2e3", true));
+        assertEquals(0.012, SubmissionValidator.parseNumber("1.2E-2", false), 1e-15);
+        assertEquals(3, SubmissionValidator.parseNumber("3.000", true));
+        assertEquals(0.5, SubmissionValidator.parseNumber(".5", false));
+        assertEquals(1, SubmissionValidator.parseNumber("10e-1", true));
+        assertEquals(0, SubmissionValidator.parseNumber("0.0e-5", true));
+
+        assertTrue(Double.isNaN(SubmissionValidator.parseNumber("1.5", true)));
+        assertTrue(Double.isNaN(SubmissionValidator.parseNumber("1.2e-1", true)));
+        assertTrue(Double.isNaN(SubmissionValidator.parseNumber("15e-1", true)));
+        // Rounds to 1.0 as a double, but is not a whole number
+        assertTrue(Double.isNaN(SubmissionValidator.parseNumber("1.0000000000000000001", true)));
+        for (String invalid : List.of("", " ", "-", ".", "1.2.3", "1e", "1e+", "12abc", "0x10", "NaN", "1 2")) {
+            assertTrue(Double.isNaN(SubmissionValidator.parseNumber(invalid, false)), invalid);
+        }
+    }
+
+    @Test
+    void checksEmailAddresses() {
+        SubmissionValidator validator = validator(question(1, "EMAIL", false));
+
+        for (String valid : List.of("a@b.co", " first.last@mail.example.org ", "x+y@d.io")) {
+            assertEquals(List.of(), validator.validate(Map.of("question_1", valid)), valid);
+        }
+        for (String invalid : List.of("plain", "@b.co", "a@b", "a@.co", "a@b.", "a@b@c.co", "a b@c.co")) {
+            assertEquals(1, validator.validate(Map.of("question_1", invalid)).size(), invalid);
+        }
+    }
+
+    @Test
+    void checksCalendarDates() {
+        SubmissionValidator validator = validator(question(1, "DATE", false));
+
+        for (String valid : List.of("2024-02-29", "2000-02-29", "1999-12-31", "2024-01-05T10:00:00Z")) {
+            assertEquals(List.of(), validator.validate(Map.of("question_1", valid)), valid);
+        }
+        for (String invalid : List.of("2023-02-29", "1900-02-29", "2024-04-31", "2024-13-01", "2024-00-10",
+                "2024-1-05", "2024/01/05", "yyyy-mm-dd")) {
+            assertEquals(1, validator.validate(Map.of("question_1", invalid)).size(), invalid);
+        }
+    }
+
+    @Test
+    void collectsEveryFieldError() {
+        Question bounded = question(2, "INTEGER", true);
+        bounded.setMinValue(1.0);
+        bounded.setMaxValue(10.0);
+        SubmissionValidator validator = validator(question(1, "SHORT_TEXT", false), bounded,
+                question(3, "BOOLEAN", true));
+
+        Map<String, Object> formData = new HashMap<>();
+        formData.put("question_1", " ");
+        formData.put("question_2", "11");
+        formData.put("question_3", "maybe");
+
+        List<SubmissionValidator.FieldError> errors = validator.validate(formData);
+        assertEquals(List.of("question_1", "question_2", "question_3"),
+                errors.stream().map(SubmissionValidator.FieldError::field).toList());
+        assertEquals("Answer to Q2 must be between 1 and 10", errors.get(1).message());
+    }
+
+    @Test
+    void optionalQuestionsMayBeLeftEmpty() {
+        SubmissionValidator validator = validator(question(1, "INTEGER", true), question(2, "EMAIL", true));
+
+        Map<String, Object> formData = new HashMap<>();
+        formData.put("question_1", null);
+        formData.put("question_2", "");
+
+        assertEquals(List.of(), validator.validate(formData));
+    }
+
+    @Test
+    void checksChoicesAgainstCurrentLabels() {
+        Question radio = choice(1, "radio", "Red", "Green");
+        Question checkbox = choice(2, "checkbox", "A", "B");
+        SubmissionValidator validator = validator(radio, checkbox);
+
+        assertEquals(List.of(), validator.validate(Map.of("question_1", "Green", "question_2", List.of("A", "B"))));
+        assertEquals(2, validator.validate(Map.of("question_1", "Blue", "question_2", List.of("A", "C"))).size());
+    }
+
+    @Test
+    void unknownKeysAreIgnored() {
+        SubmissionValidator validator = validator(question(1, "SHORT_TEXT", false));
+
+        assertEquals(List.of(), validator.validate(Map.of("question_1", "hi", "question_99", "stale", "extra", 1)));
+    }
+
+    private static SubmissionValidator validator(Question... questions) {
+        return new SubmissionValidator(List.of(questions));
+    }
+
+    private static Question question(long id, String encoding, boolean optional) {
+        Question question = new Question();
+        question.setId(id);
+        question.setText("Q" + id);
+        question.setEncoding(encoding);
+        question.setOptional(optional);
+        return question;
+    }
+
+    private static Question choice(long id, String type, String... choices) {
+        Question question = new Question();
+        question.setId(id);
+        question.setText("Q" + id);
+        question.setType(type);
+        question.setChoices(new ArrayList<>(List.of(choices)));
+        ChoiceCodes.assign(question);
+        return question;
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Page;
+import org.example.backend.model.Question;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ColumnarAnalyticsEngineTest {
+
+    private static final String INT = "question_1";
+    private static final String DEC = "question_2";
+    private static final String BOOL = "question_3";
+    private static final String TIME = "question_4";
+    private static final String TEXT = "question_5";
+
+    private ColumnarAnalyticsEngine engine;
+    private FormDefinition form;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ColumnarAnalyticsEngine(mock(ResponseStoreRegistry.class), new SimpleMeterRegistry(),
+                1 << 20, 1000, 60_000, 1);
+        Page page = new Page();
+        page.setId(1L);
+        for (String[] spec : new String[][]{{"1", "INTEGER"}, {"2", "DECIMAL"}, {"3", "BOOLEAN"},
+                {"4", "TIMESTAMP"}, {"5", "SHORT_TEXT"}}) {
+            Question question = new Question();
+            question.setId(Long.parseLong(spec[0]));
+            question.setText("Q" + spec[0]);
+            question.setEncoding(spec[1]);
+            question.setPage(page);
+            page.getQuestions().add(question);
+        }
+        Form entity = new Form();
+        entity.setId(10L);
+        entity.setPages(List.of(page));
+        page.setForm(entity);
+        form = FormDefinition.of(entity, 1);
+    }
+
+    @AfterEach
+    void engineDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void integerSumAndAverageAreNumericsLikeSql() {
+        ColumnarSnapshot snapshot = snapshot(List.of(row(1, INT, 1L), row(2, INT, 2L), row(3, INT, null)));
+
+        assertEquals(new BigDecimal("3"), only(snapshot, List.of(), INT, "SUM"));
+        assertEquals(new BigDecimal("1.5000000000000000"), only(snapshot, List.of(), INT, "AVG"));
+        assertEquals(1L, only(snapshot, List.of(), INT, "MIN"));
+        assertEquals(2L, only(snapshot, List.of(), INT, "COUNT"));
+    }
+
+    @Test
+    void decimalsKeepTheirScale() {
+        ColumnarSnapshot snapshot = snapshot(List.of(row(1, DEC, new BigDecimal("1.50")), row(2, DEC, "2.5"),
+                row(3, DEC, new BigDecimal("1.5"))));
+
+        assertEquals(new BigDecimal("5.50"), only(snapshot, List.of(), DEC, "SUM"));
+        assertEquals(new BigDecimal("2.5"), only(snapshot, List.of(), DEC, "MAX"));
+
+        // 1.5 and 1.50 are one group, as in GROUP BY
+        List<Map<String, Object>> grouped = engine.aggregate(snapshot, List.of(DEC), DEC, "COUNT");
+        assertEquals(2, grouped.size());
+    }
+
+    @Test
+    void sumStaysExactPastLongRange() {
+        ColumnarSnapshot snapshot = snapshot(List.of(row(1, DEC, new BigDecimal("0.000000000000000001")),
+                row(2, DEC, new BigDecimal("92233720368.5")), row(3, DEC, new BigDecimal("92233720368.5"))));
+
+        assertEquals(new BigDecimal("184467440737.000000000000000001"), only(snapshot, List.of(), DEC, "SUM"));
+        assertEquals(new BigDecimal("92233720368.5"), only(snapshot, List.of(), DEC, "MAX"));
+    }
+
+    @Test
+    void singleGroupColumnKeepsItsType() {
+        ColumnarSnapshot snapshot = snapshot(List.of(row(1, BOOL, true), row(2, BOOL, false), row(3, BOOL, "true")));
+
+        Map<Object, Object> counts = byGroup(engine.aggregate(snapshot, List.of(BOOL), BOOL, "COUNT"));
+
+        assertEquals(Map.of(true, 2L, false, 1L), counts);
+    }
+
+    @Test
+    void severalGroupColumnsAreJoinedAsPostgresText() {
+        TimeZone previous = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        try {
+            Map<String, Object> first = row(1, TIME, "2024-01-05T10:00:00.250Z");
+            first.put(TEXT, "a");
+            first.put(BOOL, true);
+            Map<String, Object> second = row(2, TIME, null);
+            second.put(TEXT, "b");
+            ColumnarSnapshot snapshot = snapshot(List.of(first, second));
+
+            Map<Object, Object> counts = byGroup(engine.aggregate(snapshot, List.of(TIME, TEXT, BOOL), TEXT, "COUNT"));
+
+            Map<Object, Object> expected = new HashMap<>();
+            expected.put("2024-01-05 15:30:00.25+05:30_a_true", 1L);
+            expected.put(null, 1L);
+            assertEquals(expected, counts);
+            assertEquals(Timestamp.from(OffsetDateTime.parse("2024-01-05T10:00:00.250Z").toInstant()),
+                    engine.aggregate(snapshot, List.of(TIME), TEXT, "COUNT").stream()
+                            .map(r -> r.get("combined_selects")).filter(Objects::nonNull).findFirst().orElseThrow());
+        } finally {
+            TimeZone.setDefault(previous);
+        }
+    }
+
+    @Test
+    void averageRoundsLikeNumericDivision() {
+        assertEquals(new BigDecimal("1.5000000000000000"), ColumnarAnalyticsEngine.average(new BigDecimal(3), 2));
+        assertEquals(new BigDecimal("3.3333333333333333"), ColumnarAnalyticsEngine.average(new BigDecimal("10.00"), 3));
+        assertEquals(new BigDecimal("0.00000000000000000000"), ColumnarAnalyticsEngine.average(BigDecimal.ZERO, 2));
+        assertEquals(new BigDecimal("0.66666666666666666667"), ColumnarAnalyticsEngine.average(new BigDecimal(2), 3));
+    }
+
+    @Test
+    void samplerComparesValuesInAnyOrder() {
+        List<Map<String, Object>> sql = List.of(result("a", new BigDecimal("2.0")), result("b", 1L));
+
+        assertTrue(QueryService.sameRows(sql, List.of(result("b", 1L), result("a", new BigDecimal("2")))));
+        assertFalse(QueryService.sameRows(sql, List.of(result("a", 2L), result("b", 2L))));
+        assertFalse(QueryService.sameRows(sql, List.of(result("a", 2L), result("a", 1L))));
+    }
+
+    private ColumnarSnapshot snapshot(List<Map<String, Object>> rows) {
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(form);
+        snapshot.append(rows);
+        return snapshot;
+    }
+
+    private Object only(ColumnarSnapshot snapshot, List<String> groupBy, String target, String op) {
+        List<Map<String, Object>> rows = engine.aggregate(snapshot, groupBy, target, op);
+        assertEquals(1, rows.size());
+        return rows.get(0).get("result");
+    }
+
+    private static Map<String, Object> row(long id, String column, Object value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("user_id", 100L + id);
+        row.put(column, value);
+        return row;
+    }
+
+    private static Map<String, Object> result(Object group, Object value) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("combined_selects", group);
+        row.put("result", value);
+        return row;
+    }
+
+    private static Map<Object, Object> byGroup(List<Map<String, Object>> rows) {
+        Map<Object, Object> byGroup = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            byGroup.put(row.get("combined_selects"), row.get("result"));
+        }
+        return byGroup;
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.dto.SubmissionDraft;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.Page;
+import org.example.backend.model.Question;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DraftServiceTest {
+
+    private static final String UPSERT = "INSERT INTO submission_drafts";
+    private static final TypeReference<LinkedHashMap<String, Object>> ANSWERS = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DraftService drafts;
+
+    // The submission_drafts row of form 10, user 5, as the upsert would leave it
+    private final Map<String, Object> stored = new LinkedHashMap<>();
+    private Integer storedPage;
+    private boolean exists;
+
+    @BeforeEach
+    void setUp() {
+        Page page = new Page();
+        page.setId(1L);
+        for (long id = 1; id <= 3; id++) {
+            Question question = new Question();
+            question.setId(id);
+            question.setText("Q" + id);
+            question.setEncoding("SHORT_TEXT");
+            question.setPage(page);
+            page.getQuestions().add(question);
+        }
+        Form form = new Form();
+        form.setId(10L);
+        form.setPages(List.of(page));
+        page.setForm(form);
+        FormDefinitionCache formDefinitionCache = mock(FormDefinitionCache.class);
+        when(formDefinitionCache.get(10L)).thenReturn(FormDefinition.of(form, 1));
+
+        when(jdbcTemplate.update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any())).thenAnswer(invocation -> {
+            upsert(invocation.getArgument(3), invocation.getArgument(4));
+            return 1;
+        });
+        when(jdbcTemplate.query(startsWith("SELECT answers"), ArgumentMatchers.<RowMapper<SubmissionDraft>>any(), eq(10L), eq(5L)))
+                .thenAnswer(invocation -> select());
+
+        drafts = new DraftService(jdbcTemplate, objectMapper, formDefinitionCache, meterRegistry, 30);
+    }
+
+    @Test
+    void savesAreCoalescedIntoOneWrite() {
+        drafts.save(10L, 5L, Map.of("question_1", "a"), 1, false);
+        drafts.save(10L, 5L, Map.of("question_1", "ab"), null, false);
+        drafts.save(10L, 5L, Map.of("question_2", "x"), 2, false);
+
+        drafts.flushPending();
+        drafts.flushPending();
+
+        verify(jdbcTemplate, times(1)).update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any());
+        assertEquals(Map.of("question_1", "ab", "question_2", "x"), stored);
+        assertEquals(2, storedPage);
+        assertEquals(3, meterRegistry.counter("form.drafts.saves").count());
+        assertEquals(1, meterRegistry.counter("form.drafts.writes").count());
+    }
+
+    @Test
+    void loadMergesPendingPatchesOverStoredRow() {
+        drafts.save(10L, 5L, Map.of("question_1", "old", "question_2", "kept"), 1, true);
+        drafts.save(10L, 5L, Map.of("question_1", "new"), 2, false);
+
+        SubmissionDraft draft = drafts.load(10L, 5L);
+
+        assertEquals(Map.of("question_1", "new", "question_2", "kept"), draft.answers());
+        assertEquals(2, draft.page());
+        assertNull(drafts.load(10L, 6L));
+    }
+
+    @Test
+    void unknownQuestionIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> drafts.save(10L, 5L, Map.of("question_9", "x"), null, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> drafts.save(10L, 5L, Map.of("comment", "x"), null, false));
+    }
+
+    @Test
+    void failedWriteKeepsPatchForNextFlush() {
+        doThrow(new QueryTimeoutException("timeout")).doAnswer(invocation -> {
+            upsert(invocation.getArgument(3), invocation.getArgument(4));
+            return 1;
+        }).when(jdbcTemplate).update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any());
+        drafts.save(10L, 5L, Map.of("question_1", "a"), null, false);
+
+        drafts.flushPending();
+        assertEquals(Map.of("question_1", "a"), drafts.load(10L, 5L).answers());
+        drafts.flushPending();
+
+        assertEquals(Map.of("question_1", "a"), stored);
+    }
+
+    @Test
+    void saveDuringWriteIsFlushedNextTime() {
+        doAnswer(invocation -> {
+            upsert(invocation.getArgument(3), invocation.getArgument(4));
+            // Arrives while the first write is in flight
+            drafts.save(10L, 5L, Map.of("question_2", "late"), null, false);
+            return 1;
+        }).doAnswer(invocation -> {
+            upsert(invocation.getArgument(3), invocation.getArgument(4));
+            return 1;
+        }).when(jdbcTemplate).update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any());
+        drafts.save(10L, 5L, Map.of("question_1", "a"), null, false);
+
+        drafts.flushPending();
+        assertEquals(Map.of("question_1", "a"), stored);
+        drafts.flushPending();
+
+        assertEquals(Map.of("question_1", "a", "question_2", "late"), stored);
+    }
+
+    @Test
+    void loadWaitsForWriteInFlightInsteadOfMissingThePatch() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            upsert(invocation.getArgument(3), invocation.getArgument(4));
+            return 1;
+        }).when(jdbcTemplate).update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any());
+        drafts.save(10L, 5L, Map.of("question_1", "a"), null, false);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> flush = pool.submit(drafts::flushPending);
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            Future<SubmissionDraft> load = pool.submit(() -> drafts.load(10L, 5L));
+            Thread.sleep(50);
+            assertFalse(load.isDone());
+
+            release.countDown();
+            flush.get(5, TimeUnit.SECONDS);
+            assertEquals(Map.of("question_1", "a"), load.get(5, TimeUnit.SECONDS).answers());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void discardDropsPendingAndStoredDraft() {
+        drafts.save(10L, 5L, Map.of("question_1", "a"), null, false);
+
+        drafts.discard(10L, 5L);
+        drafts.flushPending();
+
+        verify(jdbcTemplate).update(startsWith("DELETE FROM submission_drafts"), eq(10L), eq(5L));
+        verify(jdbcTemplate, never()).update(startsWith(UPSERT), eq(10L), eq(5L), anyString(), any());
+    }
+
+    private synchronized void upsert(String answers, Integer page) throws Exception {
+        stored.putAll(objectMapper.readValue(answers, ANSWERS));
+        storedPage = page != null ? page : storedPage;
+        exists = true;
+    }
+
+    private synchronized List<SubmissionDraft> select() {
+        return exists ? List.of(new SubmissionDraft(new LinkedHashMap<>(stored), storedPage)) : List.of();
+    }
+}
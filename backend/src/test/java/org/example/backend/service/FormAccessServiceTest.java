@@ -0,0 +1,126 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.config.DataSourceRouting;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.model.User;
+import org.example.backend.repository.FormRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class FormAccessServiceTest {
+
+    private static final long OWNER = 1L;
+    private static final long SHARED = 2L;
+    private static final long OTHER = 3L;
+
+    private FormRepository formRepository;
+    private FormAccessService access;
+    private FormDefinition form;
+
+    @BeforeEach
+    void setUp() {
+        formRepository = mock(FormRepository.class);
+        access = access(60_000);
+
+        User owner = new User();
+        owner.setId(OWNER);
+        Form entity = new Form();
+        entity.setId(10L);
+        entity.setOwner(owner);
+        form = FormDefinition.of(entity, 1);
+    }
+
+    @Test
+    void neverSharedFormIsOpenToEveryone() {
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of());
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(false));
+
+        assertTrue(access.canFill(form, OTHER));
+        assertFalse(access.canFill(form, null));
+    }
+
+    @Test
+    void sharedFormAdmitsOnlyOwnerAndGrantedUsers() {
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of(SHARED));
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(true));
+
+        assertTrue(access.canFill(form, OWNER));
+        assertTrue(access.canFill(form, SHARED));
+        assertFalse(access.canFill(form, OTHER));
+    }
+
+    @Test
+    void aclIsLoadedFromPrimary() {
+        when(formRepository.findAllowedUserIds(10L)).thenAnswer(invocation -> {
+            assertTrue(DataSourceRouting.isPinnedToPrimary());
+            return List.of(SHARED);
+        });
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(true));
+
+        assertTrue(access.canFill(form, SHARED));
+        assertFalse(DataSourceRouting.isPinnedToPrimary());
+    }
+
+    @Test
+    void revokingLastUserKeepsFormRestricted() {
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of(SHARED));
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(true));
+        assertTrue(access.canFill(form, SHARED));
+
+        access.onRevoked(10L, List.of(SHARED));
+
+        assertFalse(access.canFill(form, SHARED));
+        assertFalse(access.canFill(form, OTHER));
+        assertTrue(access.canFill(form, OWNER));
+    }
+
+    @Test
+    void firstGrantRestrictsCachedOpenForm() {
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of());
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(false));
+        assertTrue(access.canFill(form, OTHER));
+
+        access.onGranted(10L, List.of(SHARED));
+
+        assertTrue(access.canFill(form, SHARED));
+        assertFalse(access.canFill(form, OTHER));
+    }
+
+    @Test
+    void freshAclIsNotReloaded() {
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of(SHARED));
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(true));
+
+        assertTrue(access.canFill(form, SHARED));
+        assertTrue(access.canFill(form, SHARED));
+
+        verify(formRepository, times(1)).findAllowedUserIds(10L);
+    }
+
+    @Test
+    void revocationByAnotherInstanceIsPickedUpOnceExpired() {
+        access = access(0);
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of(SHARED));
+        when(formRepository.findRestrictedById(10L)).thenReturn(Optional.of(true));
+        assertTrue(access.canFill(form, SHARED));
+
+        when(formRepository.findAllowedUserIds(10L)).thenReturn(List.of());
+
+        assertFalse(access.canFill(form, SHARED));
+    }
+
+    private FormAccessService access(long ttlMs) {
+        return new FormAccessService(formRepository, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 100, ttlMs);
+    }
+}
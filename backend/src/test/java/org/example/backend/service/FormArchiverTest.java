@@ -0,0 +1,27 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class FormArchiverTest {
+
+    @Test
+    void archivingNeedsAnAbsoluteDirectory() {
+        assertThrows(IllegalStateException.class, () -> archiver(true, "archive"));
+        assertDoesNotThrow(() -> archiver(true, "/var/lib/forms/archive"));
+        assertDoesNotThrow(() -> archiver(false, "archive"));
+    }
+
+    private static FormArchiver archiver(boolean enabled, String directory) {
+        return new FormArchiver(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class),
+                new ArchivedResponseStore(directory), mock(TablePerFormResponseStore.class),
+                mock(FormDefinitionCache.class), mock(ColumnarAnalyticsEngine.class), new SimpleMeterRegistry(),
+                enabled, 65536, 5000, 5000);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.example.backend.repository.FormRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FormDefinitionCacheTest {
+
+    private final FormRepository formRepository = mock(FormRepository.class);
+    private Form form;
+
+    @BeforeEach
+    void setUp() {
+        form = new Form();
+        form.setId(10L);
+        form.setTitle("Survey");
+        when(formRepository.findByIdWithPagesAndQuestions(10L)).thenAnswer(invocation -> Optional.ofNullable(form));
+    }
+
+    @Test
+    void freshSnapshotIsServedFromMemory() {
+        FormDefinitionCache cache = cache(60_000);
+
+        FormDefinition first = cache.get(10L);
+        form.setTitle("Edited elsewhere");
+
+        assertSame(first, cache.get(10L));
+        verify(formRepository, times(1)).findByIdWithPagesAndQuestions(10L);
+    }
+
+    @Test
+    void expiredSnapshotIsKeptWhenUnchanged() {
+        FormDefinitionCache cache = cache(0);
+
+        FormDefinition first = cache.get(10L);
+
+        assertSame(first, cache.get(10L));
+        verify(formRepository, times(2)).findByIdWithPagesAndQuestions(10L);
+    }
+
+    @Test
+    void changeByAnotherInstanceIsPickedUpWithNewVersion() {
+        FormDefinitionCache cache = cache(0);
+        FormDefinition first = cache.get(10L);
+
+        form.setTitle("Edited elsewhere");
+        FormDefinition second = cache.get(10L);
+
+        assertEquals("Edited elsewhere", second.getForm().getTitle());
+        assertNotEquals(first.getVersion(), second.getVersion());
+        assertSame(second, cache.get(10L));
+    }
+
+    @Test
+    void formDeletedByAnotherInstanceIsDropped() {
+        FormDefinitionCache cache = cache(0);
+        long version = cache.get(10L).getVersion();
+
+        form = null;
+        assertNull(cache.get(10L));
+
+        form = new Form();
+        form.setId(10L);
+        form.setTitle("Survey");
+        assertNotEquals(version, cache.get(10L).getVersion());
+    }
+
+    private FormDefinitionCache cache(long ttlMs) {
+        return new FormDefinitionCache(formRepository, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 1 << 20, ttlMs);
+    }
+}
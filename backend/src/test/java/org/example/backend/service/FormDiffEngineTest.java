@@ -0,0 +1,142 @@
+package org.example.backend.service;
+
+import org.example.backend.dto.FormChangeSet;
+import org.example.backend.model.Form;
+import org.example.backend.model.Page;
+import org.example.backend.model.Question;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormDiffEngineTest {
+
+    private final FormDiffEngine engine = new FormDiffEngine();
+
+    @Test
+    void unchangedFormProducesNoChanges() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text"), question(11L, "Age", "text")));
+        Form updated = form(page(1L, 0, question(10L, "Name", "text"), question(11L, "Age", "text")));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertTrue(changes.getChangedQuestionIds().isEmpty());
+        assertTrue(changes.getRemovedQuestionIds().isEmpty());
+        assertTrue(changes.getMovedQuestionIds().isEmpty());
+        assertEquals(0, changes.getAddedQuestionCount());
+        assertEquals(Set.of(10L, 11L), FormDiffEngine.questionIds(existing));
+    }
+
+    @Test
+    void editedQuestionKeepsItsIdAndIsFoundInItsPage() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text")));
+        Question renamed = question(10L, "Full name", "text");
+        renamed.setDataType("shortText");
+        Form updated = form(page(1L, 0, renamed));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertEquals(List.of(10L), changes.getChangedQuestionIds());
+        assertEquals(List.of(10L), changes.getRetypedQuestionIds());
+        Question stored = only(existing.getPages().get(0));
+        assertEquals("Full name", stored.getText());
+        // Rehashed after the edit, so set lookups still work
+        assertTrue(existing.getPages().get(0).getQuestions().contains(stored));
+    }
+
+    @Test
+    void removedAndNewQuestionsAreReported() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text"), question(11L, "Age", "text")));
+        Form updated = form(page(1L, 0, question(10L, "Name", "text"), question(null, "Email", "text")));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertEquals(List.of(11L), changes.getRemovedQuestionIds());
+        assertEquals(1, changes.getAddedQuestionCount());
+        assertEquals(Set.of("Name", "Email"), texts(existing.getPages().get(0)));
+    }
+
+    @Test
+    void questionMovesBetweenPagesWithItsId() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text")), page(2L, 1, question(20L, "Age", "text")));
+        Form updated = form(page(1L, 0), page(2L, 1, question(20L, "Age", "text"), question(10L, "Name", "text")));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertEquals(List.of(10L), changes.getMovedQuestionIds());
+        assertTrue(changes.getRemovedQuestionIds().isEmpty());
+        assertTrue(existing.getPages().get(0).getQuestions().isEmpty());
+        assertEquals(Set.of("Name", "Age"), texts(existing.getPages().get(1)));
+        assertEquals(2L, existing.getPages().get(1).getQuestions().stream()
+                .filter(q -> q.getId() == 10L).findFirst().orElseThrow().getPage().getId());
+    }
+
+    @Test
+    void removedPageAndReorderedPageAreReported() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text")), page(2L, 1, question(20L, "Age", "text")));
+        Form updated = form(page(2L, 0, question(20L, "Age", "text")), page(null, 1, question(null, "New", "text")));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertEquals(List.of(1L), changes.getRemovedPageIds());
+        assertEquals(List.of(2L), changes.getReorderedPageIds());
+        assertEquals(List.of(10L), changes.getRemovedQuestionIds());
+        assertEquals(1, changes.getAddedPageCount());
+        assertEquals(1, changes.getAddedQuestionCount());
+        assertEquals(2, existing.getPages().size());
+    }
+
+    @Test
+    void idsOfAnotherFormAreTreatedAsNew() {
+        Form existing = form(page(1L, 0, question(10L, "Name", "text")));
+        Form updated = form(page(1L, 0, question(10L, "Name", "text"), question(999L, "Foreign", "text")));
+
+        FormChangeSet changes = engine.apply(existing, updated);
+
+        assertEquals(1, changes.getAddedQuestionCount());
+        Question added = existing.getPages().get(0).getQuestions().stream()
+                .filter(q -> "Foreign".equals(q.getText())).findFirst().orElseThrow();
+        assertEquals(null, added.getId());
+    }
+
+    private static Form form(Page... pages) {
+        Form form = new Form();
+        form.setPages(List.of(pages));
+        for (Page page : pages) {
+            page.setForm(form);
+        }
+        return form;
+    }
+
+    private static Page page(Long id, int index, Question... questions) {
+        Page page = new Page();
+        page.setId(id);
+        page.setPageIndex(index);
+        for (Question q : questions) {
+            q.setPage(page);
+            page.getQuestions().add(q);
+        }
+        return page;
+    }
+
+    private static Question question(Long id, String text, String type) {
+        Question q = new Question();
+        q.setId(id);
+        q.setText(text);
+        q.setType(type);
+        return q;
+    }
+
+    private static Question only(Page page) {
+        assertEquals(1, page.getQuestions().size());
+        return page.getQuestions().iterator().next();
+    }
+
+    private static Set<String> texts(Page page) {
+        return page.getQuestions().stream().map(Question::getText).collect(Collectors.toSet());
+    }
+}
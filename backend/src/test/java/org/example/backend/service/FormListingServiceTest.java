@@ -0,0 +1,87 @@
+package org.example.backend.service;
+
+import org.example.backend.dto.FormSummary;
+import org.example.backend.dto.PagedResponse;
+import org.example.backend.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FormListingServiceTest {
+
+    private static final String COUNT = "SELECT COUNT(*) FROM form f WHERE f.owner_id = ?";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final FormListingService listing = new FormListingService();
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(listing, "jdbcTemplate", jdbcTemplate);
+        user.setId(5L);
+        when(jdbcTemplate.queryForObject(startsWith(COUNT), eq(Long.class), eq(5L))).thenReturn(12L);
+    }
+
+    @Test
+    void partlyFilledPageGivesTheTotalAway() {
+        returnsForms(2);
+
+        PagedResponse<FormSummary> result = listing.listForms(user, FormListingService.Filter.ALL, 1, 10, null, null);
+
+        assertEquals(12, result.totalElements());
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class), eq(5L));
+    }
+
+    @Test
+    void fullPageIsCountedSeparately() {
+        returnsForms(10);
+
+        assertEquals(12, listing.listForms(user, FormListingService.Filter.ALL, 0, 10, null, null).totalElements());
+    }
+
+    @Test
+    void pagePastTheEndStillReportsTheTotal() {
+        returnsForms(0);
+
+        PagedResponse<FormSummary> result = listing.listForms(user, FormListingService.Filter.ALL, 5, 10, null, null);
+
+        assertEquals(List.of(), result.content());
+        assertEquals(12, result.totalElements());
+        assertEquals(2, result.totalPages());
+    }
+
+    @Test
+    void countsAreJoinedOnThePagedFormsOnly() {
+        returnsForms(0);
+
+        listing.listForms(user, FormListingService.Filter.ALL, 0, 10, "title", "desc");
+        listing.listForms(user, FormListingService.Filter.ALL, 0, 10, "questionCount", null);
+
+        verify(jdbcTemplate).query(matches("WITH paged AS \\(SELECT f\\.id FROM form f WHERE .* LIMIT \\? OFFSET \\?\\) SELECT .*"),
+                ArgumentMatchers.<RowMapper<FormSummary>>any(), eq(5L), eq(10), eq(0L));
+        verify(jdbcTemplate).query(matches("WITH paged AS \\(SELECT f\\.id FROM form f CROSS JOIN LATERAL .* qc WHERE .*"),
+                ArgumentMatchers.<RowMapper<FormSummary>>any(), eq(5L), eq(10), eq(0L));
+    }
+
+    @Test
+    void unknownSortKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> listing.listForms(user, FormListingService.Filter.ALL, 0, 10, "owner_id; --", null));
+    }
+
+    private void returnsForms(int count) {
+        FormSummary form = new FormSummary(1L, "Form", null, false, true, false, 1, 2, 3L, null);
+        when(jdbcTemplate.query(startsWith("WITH paged AS"), ArgumentMatchers.<RowMapper<FormSummary>>any(),
+                eq(5L), eq(10), anyLong())).thenReturn(Collections.nCopies(count, form));
+    }
+}
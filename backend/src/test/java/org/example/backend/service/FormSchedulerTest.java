@@ -0,0 +1,52 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class FormSchedulerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FormScheduler scheduler = new FormScheduler(jdbcTemplate, mock(FormDefinitionCache.class),
+            meterRegistry, 1, 120_000);
+
+    @Test
+    void sameDeadlineIsScheduledOnce() {
+        Instant closesAt = Instant.now().plusSeconds(3600);
+
+        scheduler.schedule(1L, null, closesAt);
+        scheduler.schedule(1L, null, closesAt);
+        scheduler.schedule(1L, closesAt, closesAt);
+
+        assertEquals(2, pending());
+    }
+
+    @Test
+    void firedDeadlineCanBeScheduledAgain() throws InterruptedException {
+        Instant opensAt = Instant.now().minusSeconds(5);
+
+        scheduler.schedule(1L, opensAt, null);
+        Thread.sleep(5);
+        scheduler.tick();
+        verify(jdbcTemplate).queryForList(startsWith("UPDATE form SET is_active = true"), eq(Long.class),
+                any(Timestamp.class), eq(1L));
+        assertEquals(0, pending());
+
+        scheduler.schedule(1L, opensAt, null);
+        assertEquals(1, pending());
+    }
+
+    private double pending() {
+        return meterRegistry.get("form.schedule.pending").gauge().value();
+    }
+}
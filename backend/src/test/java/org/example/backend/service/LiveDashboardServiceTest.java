@@ -0,0 +1,157 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.dto.ReportRequest;
+import org.example.backend.model.FormDefinition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LiveDashboardServiceTest {
+
+    private static final ReportRequest REPORT =
+            new ReportRequest(List.of("question_1"), "question_2", "count", "bar", null, null);
+
+    private final ResponseStore store = mock(ResponseStore.class);
+    private final QueryService queryService = mock(QueryService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LiveDashboardService dashboards;
+
+    @BeforeEach
+    void setUp() {
+        FormDefinition definition = mock(FormDefinition.class);
+        FormDefinitionCache formDefinitionCache = mock(FormDefinitionCache.class);
+        when(formDefinitionCache.get(1L)).thenReturn(definition);
+        ResponseStoreRegistry responseStores = mock(ResponseStoreRegistry.class);
+        when(responseStores.forForm(definition)).thenReturn(store);
+        when(store.watermark(1L)).thenReturn(new ResponseStore.Watermark(3, 30));
+        when(queryService.runAggregatedQuery(eq(1L), eq(List.of("question_1")), eq("question_2"), eq("count"),
+                eq("bar"), isNull(), isNull())).thenReturn(List.of(Map.of("question_1", "a", "value", 3)));
+
+        dashboards = new LiveDashboardService(responseStores, formDefinitionCache, queryService, new ObjectMapper(),
+                meterRegistry, 60_000, 2, 3_600_000) {
+            @Override
+            SseEmitter newEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+    }
+
+    @Test
+    void subscriberIsCountedOnceWhenRemovedTwice() {
+        RecordingEmitter broken = (RecordingEmitter) dashboards.subscribe(1L, null);
+        RecordingEmitter healthy = (RecordingEmitter) dashboards.subscribe(1L, null);
+        broken.broken = true;
+
+        // The failed send unsubscribes it, then the container's error and completion callbacks do again
+        dashboards.tick();
+
+        assertEquals(1, gauge("form.live.subscribers"));
+        assertEquals(1, healthy.events.size());
+        assertTrue(healthy.events.get(0).startsWith("event:responses"));
+
+        healthy.completion.run();
+        healthy.completion.run();
+        assertEquals(0, gauge("form.live.subscribers"));
+        assertEquals(0, gauge("form.live.forms"));
+    }
+
+    @Test
+    void subscribersBeyondTheLimitAreTurnedAway() {
+        assertNotNull(dashboards.subscribe(1L, null));
+        assertNotNull(dashboards.subscribe(1L, REPORT));
+
+        assertNull(dashboards.subscribe(1L, null));
+        assertEquals(2, gauge("form.live.subscribers"));
+    }
+
+    @Test
+    void unchangedViewsAreNeitherQueriedNorSent() {
+        RecordingEmitter emitter = (RecordingEmitter) dashboards.subscribe(1L, REPORT);
+        dashboards.tick();
+        assertEquals(List.of("responses", "aggregate"), emitter.names());
+
+        // Same watermark: nothing to query or send
+        dashboards.markAllDirty();
+        dashboards.tick();
+        assertEquals(2, emitter.events.size());
+        verify(queryService, times(1)).runAggregatedQuery(anyLong(), anyList(), anyString(), anyString(),
+                anyString(), isNull(), isNull());
+
+        // New responses that leave the report as it was: only the count goes out
+        when(store.watermark(1L)).thenReturn(new ResponseStore.Watermark(4, 31));
+        dashboards.markAllDirty();
+        dashboards.tick();
+        assertEquals(List.of("responses", "aggregate", "responses"), emitter.names());
+        verify(queryService, times(2)).runAggregatedQuery(anyLong(), anyList(), anyString(), anyString(),
+                anyString(), isNull(), isNull());
+    }
+
+    @Test
+    void newSubscriberGetsTheLastStateRightAway() {
+        dashboards.subscribe(1L, REPORT);
+        dashboards.tick();
+
+        RecordingEmitter late = (RecordingEmitter) dashboards.subscribe(1L, REPORT);
+
+        assertEquals(List.of("responses", "aggregate"), late.names());
+        assertTrue(late.events.get(0).contains("\"responses\":3"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    /** Records what is sent and, like the servlet container, runs the callbacks when completed with an error. */
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        Runnable completion;
+        Consumer<Throwable> error;
+        boolean broken;
+
+        @Override
+        public void onCompletion(Runnable callback) {
+            completion = callback;
+        }
+
+        @Override
+        public void onTimeout(Runnable callback) {
+        }
+
+        @Override
+        public void onError(Consumer<Throwable> callback) {
+            error = callback;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error.accept(ex);
+            completion.run();
+        }
+
+        List<String> names() {
+            return events.stream().map(event -> event.substring("event:".length(), event.indexOf('\n'))).toList();
+        }
+    }
+}
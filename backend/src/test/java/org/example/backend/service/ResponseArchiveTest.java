@@ -0,0 +1,132 @@
+package org.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseArchiveTest {
+
+    private static final String[] NAMES = {"ID", "user_id", "question_1", "question_2", "question_3", "question_4", "question_5"};
+    private static final int[] TYPES = {Types.BIGINT, Types.BIGINT, Types.NUMERIC, Types.BOOLEAN, Types.DATE,
+            Types.TIMESTAMP_WITH_TIMEZONE, Types.VARCHAR};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEveryTypeAcrossRowGroups() throws Exception {
+        Instant submitted = Instant.parse("2024-03-01T12:30:45.123456Z");
+        List<Object[]> rows = List.of(
+                new Object[]{1L, 7L, new BigDecimal("1.50"), true, java.sql.Date.valueOf("2024-02-29"),
+                        Timestamp.from(submitted), "héllo"},
+                new Object[]{2L, null, null, null, null, null, null},
+                new Object[]{5L, 8L, new BigDecimal("-3"), false, java.sql.Date.valueOf("1999-12-31"),
+                        Timestamp.from(submitted.plusSeconds(60)), ""});
+        Path file = dir.resolve("form_1.arch");
+
+        long written = ResponseArchive.write(resultSet(rows), file, 2);
+
+        ResponseArchive.Reader reader = ResponseArchive.open(file);
+        assertEquals(3, written);
+        assertEquals(3, reader.getRowCount());
+        assertEquals(5, reader.getMaxId());
+        assertEquals(List.of("id", "user_id", "question_1", "question_2", "question_3", "question_4", "question_5"),
+                reader.getColumns());
+
+        List<Integer> groups = new ArrayList<>();
+        reader.forEachGroup(group -> groups.add(group.size()));
+        assertEquals(List.of(2, 1), groups);
+
+        List<Map<String, Object>> read = reader.readAll();
+        Map<String, Object> first = read.get(0);
+        assertEquals(1L, first.get("id"));
+        assertEquals(7L, first.get("user_id"));
+        assertEquals(new BigDecimal("1.50"), first.get("question_1"));
+        assertEquals(true, first.get("question_2"));
+        assertEquals(LocalDate.of(2024, 2, 29), first.get("question_3"));
+        assertEquals(OffsetDateTime.ofInstant(submitted, ZoneOffset.UTC), first.get("question_4"));
+        assertEquals("héllo", first.get("question_5"));
+
+        Map<String, Object> empty = read.get(1);
+        assertEquals(2L, empty.get("id"));
+        for (String column : List.of("user_id", "question_1", "question_2", "question_3", "question_4", "question_5")) {
+            assertNull(empty.get(column), column);
+        }
+
+        assertEquals(new BigDecimal("-3"), read.get(2).get("question_1"));
+        assertEquals(false, read.get(2).get("question_2"));
+        assertEquals("", read.get(2).get("question_5"));
+    }
+
+    @Test
+    void emptyResultSetStillOpens() throws Exception {
+        Path file = dir.resolve("form_2.arch");
+
+        assertEquals(0, ResponseArchive.write(resultSet(List.of()), file, 10));
+
+        ResponseArchive.Reader reader = ResponseArchive.open(file);
+        assertEquals(0, reader.getRowCount());
+        assertEquals(List.of(), reader.readAll());
+    }
+
+    @Test
+    void truncatedFileIsNotReadAsAnArchive() throws Exception {
+        Path file = dir.resolve("form_3.arch");
+        ResponseArchive.write(resultSet(List.<Object[]>of(new Object[]{1L, 7L, null, null, null, null, "x"})), file, 10);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 6);
+        }
+
+        assertThrows(IOException.class, () -> ResponseArchive.open(file));
+        assertFalse(Files.exists(dir.resolve("form_3.arch.tmp")));
+    }
+
+    // Just enough of a JDBC result set for ResponseArchive.write
+    private static ResultSet resultSet(List<Object[]> rows) {
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> NAMES.length;
+                    case "getColumnLabel" -> NAMES[(int) args[0] - 1];
+                    case "getColumnType" -> TYPES[(int) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        int[] cursor = {-1};
+        Object[] last = {null};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) {
+                        return meta;
+                    }
+                    if (method.getName().equals("next")) {
+                        return ++cursor[0] < rows.size();
+                    }
+                    if (method.getName().equals("wasNull")) {
+                        return last[0] == null;
+                    }
+                    Object value = rows.get(cursor[0])[(int) args[0] - 1];
+                    last[0] = value;
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : value;
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getBigDecimal", "getDate", "getTimestamp", "getString" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
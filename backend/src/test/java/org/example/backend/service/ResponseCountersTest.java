@@ -0,0 +1,74 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.model.Form;
+import org.example.backend.model.FormDefinition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ResponseCountersTest {
+
+    private static final String UPSERT = "INSERT INTO response_counters (form_id, responses)";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ResponseStore store = mock(ResponseStore.class);
+    private ResponseCounters counters;
+    private FormDefinition form;
+
+    @BeforeEach
+    void setUp() {
+        Form entity = new Form();
+        entity.setId(10L);
+        form = FormDefinition.of(entity, 1);
+
+        ResponseStoreRegistry responseStores = mock(ResponseStoreRegistry.class);
+        when(responseStores.forForm(form)).thenReturn(store);
+        FormDefinitionCache formDefinitionCache = mock(FormDefinitionCache.class);
+        when(formDefinitionCache.get(10L)).thenReturn(form);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(jdbcTemplate.queryForList(startsWith("SELECT form_id"), eq(Long.class), any()))
+                .thenReturn(List.of(10L));
+
+        counters = new ResponseCounters(jdbcTemplate, responseStores, formDefinitionCache, transactionTemplate,
+                new SimpleMeterRegistry(), 50);
+    }
+
+    @Test
+    void responseCountedWhileReconcilingIsNotFlushedAgain() {
+        counters.reserve(form);
+        when(store.watermark(10L)).thenAnswer(invocation -> {
+            // Committed just before the exact count, so the count includes it
+            counters.reserve(form);
+            return new ResponseStore.Watermark(2, 2);
+        });
+
+        counters.reconcile();
+        counters.flush();
+
+        // Only the delta flushed before reconciling; a second one would double-count
+        verify(jdbcTemplate, times(1)).update(startsWith(UPSERT), eq(10L), eq(1L));
+    }
+
+    @Test
+    void failedReconcileLeavesDeltaToNextFlush() {
+        when(store.watermark(10L)).thenAnswer(invocation -> {
+            counters.reserve(form);
+            throw new IllegalStateException("store unavailable");
+        });
+
+        counters.reconcile();
+        counters.flush();
+
+        verify(jdbcTemplate).update(startsWith(UPSERT), eq(10L), eq(1L));
+    }
+}
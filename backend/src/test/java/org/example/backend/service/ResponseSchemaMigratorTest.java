@@ -0,0 +1,103 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class ResponseSchemaMigratorTest {
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    // Migrations are queued but never run, so they stay pending
+    private final ResponseSchemaMigrator migrator = new ResponseSchemaMigrator(mock(JdbcTemplate.class),
+            mock(PlatformTransactionManager.class), task -> { }, new SimpleMeterRegistry(), 100, 1, 10, 50, 30_000);
+
+    @Test
+    void submissionWithoutPendingMigrationDoesNotWait() {
+        assertDoesNotThrow(() -> migrator.awaitPending(1L));
+    }
+
+    @Test
+    void submissionGivesUpWithRetryHintWhileColumnsArePending() {
+        migrator.addColumns(1L, "form_1", Map.of("question_5", "TEXT"));
+
+        ResponseSchemaMigrator.SchemaChangePendingException e = assertThrows(
+                ResponseSchemaMigrator.SchemaChangePendingException.class, () -> migrator.awaitPending(1L));
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> migrator.awaitPending(2L));
+    }
+
+    @Test
+    void failedMigrationIsRetriedWithLaterColumns() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doThrow(new BadSqlGrammarException("alter", "ALTER TABLE form_1", new SQLException("disk full")))
+                .doNothing()
+                .when(jdbcTemplate).execute(startsWith("ALTER TABLE"));
+        ResponseSchemaMigrator migrator = new ResponseSchemaMigrator(jdbcTemplate,
+                mock(PlatformTransactionManager.class), queued::add, new SimpleMeterRegistry(), 100, 1, 10, 50, 30_000);
+
+        CompletableFuture<Void> first = migrator.addColumns(1L, "form_1", Map.of("question_5", "TEXT"));
+        runQueued();
+        assertTrue(first.isCompletedExceptionally());
+
+        // Answers to question_5 would fail on the missing column, so submissions are told to come back
+        ResponseSchemaMigrator.SchemaChangePendingException e = assertThrows(
+                ResponseSchemaMigrator.SchemaChangePendingException.class, () -> migrator.awaitPending(1L));
+        assertEquals(30, e.getRetryAfterSeconds());
+
+        // The next edit adds the failed column too
+        CompletableFuture<Void> second = migrator.addColumns(1L, "form_1", Map.of("question_6", "BIGINT"));
+        runQueued();
+        second.join();
+
+        verify(jdbcTemplate).execute("ALTER TABLE form_1 ADD COLUMN IF NOT EXISTS question_5 TEXT, "
+                + "ADD COLUMN IF NOT EXISTS question_6 BIGINT");
+        assertDoesNotThrow(() -> migrator.awaitPending(1L));
+    }
+
+    @Test
+    void scheduledRetryAddsFailedColumns() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doThrow(new BadSqlGrammarException("alter", "ALTER TABLE form_1", new SQLException("disk full")))
+                .doNothing()
+                .when(jdbcTemplate).execute(startsWith("ALTER TABLE"));
+        ResponseSchemaMigrator migrator = new ResponseSchemaMigrator(jdbcTemplate,
+                mock(PlatformTransactionManager.class), queued::add, new SimpleMeterRegistry(), 100, 1, 10, 50, 30_000);
+        migrator.addColumns(1L, "form_1", Map.of("question_5", "TEXT"));
+        runQueued();
+
+        migrator.retryFailed();
+        runQueued();
+
+        verify(jdbcTemplate, times(2)).execute("ALTER TABLE form_1 ADD COLUMN IF NOT EXISTS question_5 TEXT");
+        assertDoesNotThrow(() -> migrator.awaitPending(1L));
+        migrator.retryFailed();
+        assertTrue(queued.isEmpty());
+    }
+
+    @Test
+    void recognisesMissingColumnErrors() {
+        assertTrue(ResponseSchemaMigrator.isUndefinedColumn(new BadSqlGrammarException("insert", "INSERT",
+                new SQLException("column \"question_5\" does not exist", "42703"))));
+        assertFalse(ResponseSchemaMigrator.isUndefinedColumn(new BadSqlGrammarException("insert", "INSERT",
+                new SQLException("relation \"form_1\" does not exist", "42P01"))));
+    }
+
+    private void runQueued() {
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+    }
+}
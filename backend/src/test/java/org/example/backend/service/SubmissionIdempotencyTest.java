@@ -0,0 +1,122 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SubmissionIdempotencyTest {
+
+    private static final String SELECT = "SELECT response_id, request_hash FROM submission_idempotency";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void bloomFilterHoldsEveryKeyAndFewOthers() {
+        SubmissionIdempotency.BloomFilter filter = new SubmissionIdempotency.BloomFilter(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.put(SubmissionIdempotency.fingerprint(1L, key, "k"));
+        }
+
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(SubmissionIdempotency.fingerprint(1L, key, "k")));
+        }
+        int falsePositives = 0;
+        for (long key = 10_000; key < 110_000; key++) {
+            if (filter.mightContain(SubmissionIdempotency.fingerprint(1L, key, "k"))) {
+                falsePositives++;
+            }
+        }
+        // 1% expected; allow for the spread of 100k trials
+        assertTrue(falsePositives < 1_500, "false positives " + falsePositives);
+    }
+
+    @Test
+    void tinyFilterStillWorks() {
+        SubmissionIdempotency.BloomFilter filter = new SubmissionIdempotency.BloomFilter(1, 0.5);
+
+        filter.put(42L);
+
+        assertTrue(filter.mightContain(42L));
+    }
+
+    @Test
+    void fingerprintDependsOnFormUserAndKey() {
+        Set<Long> fingerprints = new HashSet<>(List.of(
+                SubmissionIdempotency.fingerprint(1L, 2L, "key"),
+                SubmissionIdempotency.fingerprint(2L, 1L, "key"),
+                SubmissionIdempotency.fingerprint(1L, 3L, "key"),
+                SubmissionIdempotency.fingerprint(1L, 2L, "kez"),
+                SubmissionIdempotency.fingerprint(1L, 2L, "")));
+
+        assertEquals(5, fingerprints.size());
+        assertEquals(SubmissionIdempotency.fingerprint(1L, 2L, "key"), SubmissionIdempotency.fingerprint(1L, 2L, "key"));
+    }
+
+    @Test
+    void unseenKeyIsAnsweredWithoutQuery() {
+        SubmissionIdempotency idempotency = idempotency(24);
+
+        assertNull(idempotency.replay(1L, 2L, "fresh", 7));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void completedKeyReplaysFromMemory() {
+        SubmissionIdempotency idempotency = idempotency(24);
+
+        idempotency.complete(1L, 2L, "key", 7, 99L);
+
+        assertEquals(99L, idempotency.replay(1L, 2L, "key", 7));
+        verify(jdbcTemplate, never()).queryForList(startsWith(SELECT), eq(1L), eq(2L), eq("key"));
+    }
+
+    @Test
+    void keyReusedForDifferentSubmissionIsRejected() {
+        SubmissionIdempotency idempotency = idempotency(24);
+        idempotency.complete(1L, 2L, "key", 7, 99L);
+
+        assertThrows(SubmissionIdempotency.IdempotencyKeyMismatchException.class,
+                () -> idempotency.replay(1L, 2L, "key", 8));
+    }
+
+    @Test
+    void storedKeyIsCheckedAgainstItsHash() {
+        SubmissionIdempotency idempotency = idempotency(24);
+        when(jdbcTemplate.queryForList(startsWith(SELECT), eq(1L), eq(2L), eq("key")))
+                .thenReturn(List.of(Map.of("response_id", 99L, "request_hash", 7)));
+
+        assertEquals(99L, idempotency.stored(1L, 2L, "key", 7));
+        assertThrows(SubmissionIdempotency.IdempotencyKeyMismatchException.class,
+                () -> idempotency.stored(1L, 2L, "key", 8));
+    }
+
+    @Test
+    void keysAreForgottenAfterTwoRotations() {
+        // A zero TTL rotates the filters and expires recent keys on every purge
+        SubmissionIdempotency idempotency = idempotency(0);
+        idempotency.complete(1L, 2L, "key", 7, 99L);
+
+        idempotency.purge();
+        // Still in the previous filter, but no longer in memory: the table is asked
+        assertNull(idempotency.replay(1L, 2L, "key", 7));
+        verify(jdbcTemplate).queryForList(startsWith(SELECT), eq(1L), eq(2L), eq("key"));
+
+        idempotency.purge();
+        assertNull(idempotency.replay(1L, 2L, "key", 7));
+        verify(jdbcTemplate, times(1)).queryForList(startsWith(SELECT), eq(1L), eq(2L), eq("key"));
+    }
+
+    private SubmissionIdempotency idempotency(long ttlHours) {
+        return new SubmissionIdempotency(jdbcTemplate, new SimpleMeterRegistry(), ttlHours, 10_000, 0.01, 1000);
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimingWheelTest {
+
+    // Not aligned to any level, so cascades happen part-way through a turn
+    private static final long START = 12_345;
+
+    @Test
+    void deadlineFiresOnTheTickItFallsIn() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, START * 10);
+
+        wheel.add(START * 10 + 25, "a");
+
+        assertEquals(List.of(), wheel.advance(START * 10 + 29));
+        assertEquals(List.of("a"), wheel.advance(START * 10 + 30));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesCascadeDownEveryLevel() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, START);
+        long[] ticks = {START + 5, START + 64 * 3 + 5, START + 64 * 64 * 2 + 17, START + 64L * 64 * 64 * 5 + 3};
+        for (long tick : ticks) {
+            wheel.add(tick, "t" + tick);
+        }
+        assertEquals(4, wheel.size());
+
+        for (int i = 0; i < ticks.length; i++) {
+            assertEquals(List.of(), wheel.advance(ticks[i] - 1), "before " + ticks[i]);
+            assertEquals(List.of("t" + ticks[i]), wheel.advance(ticks[i]), "at " + ticks[i]);
+            assertEquals(ticks.length - i - 1, wheel.size());
+        }
+    }
+
+    @Test
+    void deadlineBeyondTheTopLevelWaitsInOverflow() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, START);
+        long range = 1L << 24;
+        long far = START + range + 1000;
+        wheel.add(far, "far");
+        wheel.add(START + range - 1, "edge");
+
+        assertEquals(List.of(), wheel.advance(START + range - 2));
+        assertEquals(List.of("edge"), wheel.advance(START + range - 1));
+        assertEquals(List.of(), wheel.advance(far - 1));
+        assertEquals(List.of("far"), wheel.advance(far));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, START * 1000);
+
+        wheel.add(0, "past");
+        wheel.add(START * 1000, "now");
+
+        assertEquals(List.of(), wheel.advance(START * 1000 + 999));
+        assertEquals(2, wheel.advance(START * 1000 + 1000).size());
+    }
+
+    @Test
+    void jumpingManyTicksReturnsEverythingDue() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, START);
+        for (int i = 1; i <= 5000; i++) {
+            wheel.add(START + i * 97L, i);
+        }
+
+        assertEquals(2500, wheel.advance(START + 2500 * 97L).size());
+        assertEquals(2500, wheel.size());
+        assertEquals(2500, wheel.advance(START + 5000 * 97L).size());
+    }
+}
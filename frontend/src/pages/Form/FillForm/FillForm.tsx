@@ -1,7 +1,7 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { useParams, useNavigate } from 'react-router-dom';
 import { Form, Input, Radio, Checkbox, Button, Spin, Alert, message } from 'antd';
-import { fetchFormDataForFillForm, submitFormData } from '../services/formApi';
+import { fetchFormDataForFillForm, submitFormData, getDraft, saveDraft } from '../services/formApi';
 import type { Form as FormType } from '@services/apiService';
 import './FillForm.css';
 
@@ -15,6 +15,11 @@ const FillForm: React.FC = () => {
   const [submitting, setSubmitting] = useState(false);
   const [answers, setAnswers] = useState<Record<number, any>>({});
 
+  // Answers and page as last sent to the draft autosave
+  const savedAnswers = useRef<Record<number, any>>({});
+  const savedPage = useRef<number | null>(null);
+  const draftLoaded = useRef(false);
+
   // const
   const [form] = Form.useForm();
 
@@ -42,11 +47,56 @@ const FillForm: React.FC = () => {
             });
           });
           setAnswers(defaultAnswers);
+          savedAnswers.current = defaultAnswers;
+
+          // Resume from the saved draft, if any
+          return getDraft(formId).then(draft => {
+            if (!draft) return;
+            const restored: Record<number, any> = {};
+            Object.entries(draft.answers).forEach(([field, answer]) => {
+              restored[Number(field.replace('question_', ''))] = answer;
+            });
+            setAnswers(prev => ({ ...prev, ...restored }));
+            form.setFieldsValue(draft.answers);
+            savedAnswers.current = { ...defaultAnswers, ...restored };
+            if (draft.page !== null) {
+              savedPage.current = draft.page;
+              setCurrentPage(Math.min(draft.page, a.pages.length - 1));
+            }
+          }).catch(e => console.error('Failed to load draft:', e));
         })
         .catch(e => setError(e.message))
-        .finally(() => setLoading(false));
+        .finally(() => {
+          draftLoaded.current = true;
+          setLoading(false);
+        });
   }, [formId]);
 
+  // Send only the answers changed since the last autosave; the server coalesces
+  // them unless flush is set, which happens on page changes
+  const autosave = (flush: boolean) => {
+    if (!formId || !draftLoaded.current) return;
+    const changed: Record<string, any> = {};
+    Object.entries(answers).forEach(([questionId, answer]) => {
+      if (savedAnswers.current[Number(questionId)] !== answer) {
+        changed[`question_${questionId}`] = answer;
+      }
+    });
+    if (Object.keys(changed).length === 0 && savedPage.current === currentPage) return;
+    savedAnswers.current = { ...answers };
+    savedPage.current = currentPage;
+    saveDraft(formId, changed, currentPage, flush).catch(e => console.error('Failed to autosave draft:', e));
+  };
+
+  useEffect(() => {
+    const timer = setTimeout(() => autosave(false), 2000);
+    return () => clearTimeout(timer);
+  }, [answers]);
+
+  useEffect(() => {
+    autosave(true);
+  }, [currentPage]);
+
   if (loading) return <div className="fill--form__loading"><Spin /></div>;
   if (error || !data) return <Alert message={error || 'Form not found'} type="error" />;
 
@@ -100,6 +150,8 @@ const FillForm: React.FC = () => {
         formattedData[`question_${questionId}`] = answer;
       });
 
+      // The submission replaces the draft, so stop autosaving it
+      draftLoaded.current = false;
       await submitFormData(formId, formattedData);
 
       message.success('Form submitted successfully!');
@@ -107,6 +159,13 @@ const FillForm: React.FC = () => {
       // Navigate back to forms list or home
       navigate('/panel');
     } catch (err: any) {
+      draftLoaded.current = true;
+      const fieldErrors: { field: string; message: string }[] = err.response?.data?.errors ?? [];
+      if (fieldErrors.length) {
+        form.setFields(fieldErrors.map(e => ({ name: e.field, errors: [e.message] })));
+        message.error(fieldErrors.map(e => e.message).join('\n'));
+        return;
+      }
       message.error('Failed to submit form. Please check all required fields.');
       if (Array.isArray(err.errorFields) && err.errorFields.length) {
         const fld = err.errorFields[0].name[0] as string;
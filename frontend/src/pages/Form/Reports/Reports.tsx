@@ -10,7 +10,9 @@ import {
   getReport,            // → server endpoint that actually runs the aggregation
   Field ,
   FormDetails,                // → TypeScript interface for a “field” object
-  getFormDetails
+  getFormDetails,
+  subscribeLive,
+  LiveCounts
 } from './services/forumService';
 import ChartRenderer from './ChartRenderer';        
 
@@ -61,6 +63,8 @@ const ReportsPage: React.FC = () => {
   const [chartType,  setChartType]  = useState<ChartType>('table'); // current viz mode
   const [loading,    setLoading]    = useState(false);       // disables button & shows spinner
   const [formDetails, setFormDetails] = useState<FormDetails | null>(null); // form metadata
+  const [liveCounts, setLiveCounts] = useState<LiveCounts | null>(null);   // pushed by the server
+  const [liveReport, setLiveReport] = useState<any | null>(null);          // report kept live after “Generate”
 
   const [form] = Form.useForm();                             // AntD form instance for reset/get
 
@@ -90,6 +94,12 @@ const ReportsPage: React.FC = () => {
     loadForumInfo();
   }, [forumId]);                                             
 
+  // Live response count, plus the generated report's rows whenever they change
+  useEffect(() => {
+    if (!forumId) return;
+    return subscribeLive(forumId, liveReport, setLiveCounts, rows => setReportData(extractArray(rows)));
+  }, [forumId, liveReport]);
+
   const onFinish = async (vals: any) => {                    
     if (!forumId) return;
 
@@ -103,6 +113,7 @@ const ReportsPage: React.FC = () => {
 
       setReportData(extractArray(res));                      // shove data into state
       setChartType(chartModel);                              
+      setLiveReport({ ...rest, chartType: chartModel });
     } catch (error) {
       console.error(error);
       message.error('Failed to generate report');
@@ -136,6 +147,11 @@ const ReportsPage: React.FC = () => {
         <Text type="secondary" style={{ display: 'block', marginBottom: 16 }}>
           {formDetails?.description || 'No description available'}
         </Text>
+        {liveCounts && (
+          <Text type="secondary" style={{ display: 'block', marginBottom: 16 }}>
+            responses: {liveCounts.responses} (live)
+          </Text>
+        )}
 
         <Form
           form={form}
@@ -1,4 +1,5 @@
 import { baseURL } from '@consts/api.ts';
+import { JWT_TOKEN_KEY } from '@consts/localStorage.ts';
 import api from "@utils/api"
 
 export interface Field {
@@ -123,25 +124,84 @@ export const getReport = async (
   }
   else{
       
-      let fields: Field[] = await getForumFields(forumId);
-      fields = cleanFields(suitableFields(fields));
-      const fieldMap: Record<string, number> = Object.fromEntries(fields.map(f => [f.name, f.id]));
-      const { groupBy, target, func, chartType } = params;
-      const mappedGroupBy = groupBy.map(name => "question_" + fieldMap[name]);
-
-      const mappedTarget = "question_"+fieldMap[target];
-
-      const apiParams = {
-        groupBy: mappedGroupBy,
-        target: mappedTarget,
-        func,
-        chartType
-      };
+      const apiParams = await toQueryParams(forumId, params);
       console.log('API Params:', apiParams);
-      return api.post(`${baseURL}/form/${forumId}/query`, {groupBy: mappedGroupBy, target: mappedTarget, func: func.toUpperCase(), chartType}).then(res => ({ data: res.data }))
+      return api.post(`${baseURL}/form/${forumId}/query`, apiParams).then(res => ({ data: res.data }))
   }
 }
 
+// Maps field names picked in the UI to the question columns the backend aggregates on
+async function toQueryParams(
+  forumId: string,
+  params: { groupBy: string[]; target: string; func: string; chartType: string }
+) {
+  let fields: Field[] = await getForumFields(forumId);
+  fields = cleanFields(suitableFields(fields));
+  const fieldMap: Record<string, number> = Object.fromEntries(fields.map(f => [f.name, f.id]));
+  const { groupBy, target, func, chartType } = params;
+  return {
+    groupBy: groupBy.map(name => "question_" + fieldMap[name]),
+    target: "question_" + fieldMap[target],
+    func: func.toUpperCase(),
+    chartType
+  };
+}
+
+export interface LiveCounts {
+  formId: number;
+  responses: number;
+  lastResponseId: number;
+}
+
+/**
+ * Subscribe to live updates of a form over server-sent events: the response
+ * count, and the rows of `report` whenever they change. Uses fetch rather
+ * than EventSource so the JWT can go in the Authorization header. Returns a
+ * function that closes the stream.
+ */
+export function subscribeLive(
+  forumId: string,
+  report: { groupBy: string[]; target: string; func: string; chartType: string } | null,
+  onCounts: (counts: LiveCounts) => void,
+  onAggregate: (rows: Record<string, any>[]) => void
+): () => void {
+  const controller = new AbortController();
+  (async () => {
+    const query = new URLSearchParams();
+    if (report) {
+      const mapped = await toQueryParams(forumId, report);
+      mapped.groupBy.forEach(g => query.append('groupBy', g));
+      query.set('target', mapped.target);
+      query.set('func', mapped.func);
+      query.set('chartType', mapped.chartType);
+    }
+    const res = await fetch(`${baseURL}/form/${forumId}/live?${query}`, {
+      headers: { Authorization: `Bearer ${localStorage.getItem(JWT_TOKEN_KEY)}`, Accept: 'text/event-stream' },
+      signal: controller.signal,
+    });
+    if (!res.ok || !res.body) throw new Error(`Live updates unavailable (${res.status})`);
+    const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) break;
+      buffer += value;
+      let end;
+      while ((end = buffer.indexOf('\n\n')) >= 0) {
+        const block = buffer.slice(0, end);
+        buffer = buffer.slice(end + 2);
+        const name = block.match(/^event:(.*)$/m)?.[1]?.trim();
+        const data = block.split('\n').filter(l => l.startsWith('data:')).map(l => l.slice(5)).join('\n');
+        if (name === 'responses') onCounts(JSON.parse(data));
+        if (name === 'aggregate') onAggregate(JSON.parse(data));
+      }
+    }
+  })().catch(e => {
+    if (e.name !== 'AbortError') console.error('Live updates stopped:', e);
+  });
+  return () => controller.abort();
+}
+
 
 // Mock function to simulate backend aggregation logic when not connected to backend
 
@@ -3,6 +3,8 @@ import {
   getFormData as getFormDataFromService,
   getFormDataForFillForm as getFormDataFillFormFromService,
   submitFormData as submitFormDataFromService,
+  getDraft,
+  saveDraft,
   getAllUsers,
   getFormUsers,
   addUsersToForm,
@@ -47,7 +49,7 @@ export async function submitFormData(formId: string, data: Record<string, any>):
   }
 }
 
-export { getAllUsers, getFormUsers, addUsersToForm, addUserToForm, removeUserFromForm };
+export { getAllUsers, getFormUsers, addUsersToForm, addUserToForm, removeUserFromForm, getDraft, saveDraft };
 
 // Sample form data for development/testing
 export const sampleFormData: FormData = {
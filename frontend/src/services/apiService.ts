@@ -383,6 +383,31 @@ export async function submitFormData(formId: string, data: Record<string, any>):
   }
 }
 
+export interface SubmissionDraft {
+  answers: Record<string, any>;
+  page: number | null;
+}
+
+/**
+ * Load the saved draft of a form, or null if there is none
+ */
+export async function getDraft(formId: string): Promise<SubmissionDraft | null> {
+  const response = await api.get(`/form/${formId}/draft`);
+  return response.status === 204 ? null : response.data;
+}
+
+/**
+ * Autosave changed answers; the server coalesces saves unless flush is set
+ */
+export async function saveDraft(
+  formId: string,
+  answers: Record<string, any>,
+  page: number,
+  flush: boolean
+): Promise<void> {
+  await api.put(`/form/${formId}/draft`, { answers, page, flush });
+}
+
 // ============================================================================
 // REPORTS AND ANALYTICS API
 // ============================================================================